@@ -42,6 +42,7 @@ class Person(BaseModel):
     hairColor: Optional[HairColor] = None
     nationality: Optional[Country] = None
     location: Location
+    version: Optional[int] = None
 
 class PersonInput(BaseModel):
     name: str
@@ -58,6 +59,7 @@ class PeopleResponse(BaseModel):
     pageSize: Optional[int] = None
     totalPages: Optional[int] = None
     totalCount: Optional[int] = None
+    totalCountApproximate: Optional[bool] = None
 
 class FilterCondition(BaseModel):
     field: str
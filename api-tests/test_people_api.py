@@ -2,6 +2,10 @@ import pytest
 import requests
 import uuid
 import json
+import gzip
+import zlib
+import time
+from concurrent.futures import ThreadPoolExecutor
 from models import (
     PersonInput, Person, PeopleResponse, FilterCriteria,
     EyeColor, HairColor, Country, Coordinates, Location, ErrorResponse
@@ -45,6 +49,53 @@ def test_pagination():
     assert data.totalCount == 15
     assert data.totalPages == 2
 
+def test_count_modes():
+    resp = requests.get(f"{BASE_URL}/people?countMode=none", verify=False)
+    assert resp.status_code == 200
+    data = PeopleResponse.model_validate(resp.json())
+    assert data.totalCount is None
+    assert data.totalPages is None
+
+    # small tables are always counted exactly, even when an estimate is requested
+    resp = requests.get(f"{BASE_URL}/people?countMode=estimate", verify=False)
+    assert resp.status_code == 200
+    data = PeopleResponse.model_validate(resp.json())
+    assert data.totalCount == 15
+    assert data.totalCountApproximate is False
+
+    resp = requests.post(f"{BASE_URL}/people/search?countMode=estimate", json={"filters": [
+        {"field": "eyeColor", "operator": "eq", "value": "BLUE"}
+    ]}, verify=False)
+    assert resp.status_code == 200
+    data = PeopleResponse.model_validate(resp.json())
+    assert data.totalCount == 15
+
+    resp = requests.get(f"{BASE_URL}/people?countMode=approximately", verify=False)
+    assert_error(resp, 400)
+
+def test_stats_counts():
+    resp = requests.get(f"{BASE_URL}/people/stats/counts", verify=False)
+    assert resp.status_code == 200
+    data = resp.json()
+    assert data["total"] == 15
+    assert data["eyeColor"]["BLUE"] == 15
+    assert data["eyeColor"]["RED"] == 0
+    assert data["hairColor"]["GREEN"] == 0
+
+def test_search_facets():
+    resp = requests.post(f"{BASE_URL}/people/search?pageSize=0&facets=eyeColor,nationality", json={"filters": [
+        {"field": "coordinates.x", "operator": "lt", "value": "5"}
+    ]}, verify=False)
+    assert resp.status_code == 200
+    facets = resp.json()["facets"]
+    assert facets["eyeColor"]["BLUE"] == 5
+    assert facets["eyeColor"]["RED"] == 0
+    assert sum(facets["nationality"].values()) == 0
+    assert "hairColor" not in facets
+
+    resp = requests.post(f"{BASE_URL}/people/search?facets=height", json={}, verify=False)
+    assert_error(resp, 400)
+
 def test_invalid_page_size():
     resp = requests.get(f"{BASE_URL}/people?pageSize=-1", verify=False)
     assert_error(resp, 422)
@@ -208,6 +259,129 @@ def test_patch_person():
     assert updated.id == p.id
     assert updated.eyeColor == p.eyeColor
 
+def test_conditional_requests():
+    p = create_person({"name": f"Tag_{uuid.uuid4().hex[:6]}", "coordinates": {"x": 0, "y": 0}, "eyeColor": "BLUE", "location": {"x": 0, "y": 0, "z": 0}})
+    resp = requests.get(f"{BASE_URL}/people/{p.id}", verify=False)
+    assert resp.status_code == 200
+    tag = resp.headers["ETag"]
+    resp = requests.get(f"{BASE_URL}/people/{p.id}", headers={"If-None-Match": tag}, verify=False)
+    assert resp.status_code == 304
+
+    resp = requests.get(f"{BASE_URL}/people", verify=False)
+    assert resp.headers["ETag"].startswith("W/")
+    resp = requests.get(f"{BASE_URL}/people", headers={"If-None-Match": resp.headers["ETag"]}, verify=False)
+    assert resp.status_code == 304
+
+    resp = requests.patch(f"{BASE_URL}/people/{p.id}", json={"name": "Tagged"}, headers={"If-Match": tag}, verify=False)
+    assert resp.status_code == 200
+    assert resp.headers["ETag"] != tag
+    resp = requests.patch(f"{BASE_URL}/people/{p.id}", json={"name": "Stale"}, headers={"If-Match": tag}, verify=False)
+    assert_error(resp, 412)
+
+def test_get_person_after_patch():
+    p = create_person({"name": f"Hot_{uuid.uuid4().hex[:6]}", "coordinates": {"x": 0, "y": 0}, "eyeColor": "BLUE", "location": {"x": 0, "y": 0, "z": 0}})
+    # the second read is served from the cache
+    for _ in range(2):
+        cached = requests.get(f"{BASE_URL}/people/{p.id}", verify=False)
+        assert cached.json()["name"] == p.name
+    patched = requests.patch(f"{BASE_URL}/people/{p.id}", json={"name": "Cooled"}, verify=False)
+    assert patched.status_code == 200
+    resp = requests.get(f"{BASE_URL}/people/{p.id}", verify=False)
+    assert resp.json() == patched.json()
+    assert resp.json()["version"] != cached.json()["version"]
+    assert resp.headers["ETag"] != cached.headers["ETag"]
+    requests.delete(f"{BASE_URL}/people/{p.id}", verify=False)
+    assert requests.get(f"{BASE_URL}/people/{p.id}", verify=False).status_code == 404
+
+def test_get_person_after_bulk_delete():
+    location = {"x": 31, "y": 41, "z": 59, "name": f"Cached_{uuid.uuid4().hex[:6]}"}
+    by_location = create_person({"name": "CachedByLoc", "coordinates": {"x": 0, "y": 0}, "eyeColor": "BLUE", "location": location})
+    by_nationality = create_person({"name": "CachedByNat", "coordinates": {"x": 0, "y": 0}, "eyeColor": "BLUE", "nationality": "NORTH_KOREA", "location": {"x": 0, "y": 0, "z": 0}})
+    for person in (by_location, by_nationality):
+        for _ in range(2):
+            assert requests.get(f"{BASE_URL}/people/{person.id}", verify=False).status_code == 200
+
+    assert requests.delete(f"{BASE_URL}/people/location", json=location, verify=False).status_code == 204
+    assert requests.get(f"{BASE_URL}/people/{by_location.id}", verify=False).status_code == 404
+    assert requests.delete(f"{BASE_URL}/people/nationality/NORTH_KOREA", verify=False).status_code == 204
+    assert requests.get(f"{BASE_URL}/people/{by_nationality.id}", verify=False).status_code == 404
+
+def test_changes_feed():
+    resp = requests.get(f"{BASE_URL}/people/changes", params={"limit": 1000}, verify=False)
+    assert resp.status_code == 200
+    token = resp.json()["next"]
+    while resp.json()["hasMore"]:
+        resp = requests.get(f"{BASE_URL}/people/changes", params={"since": token, "limit": 1000}, verify=False)
+        token = resp.json()["next"]
+
+    p = create_person({"name": f"Feed_{uuid.uuid4().hex[:6]}", "coordinates": {"x": 0, "y": 0}, "eyeColor": "BLUE", "location": {"x": 0, "y": 0, "z": 0}})
+    requests.patch(f"{BASE_URL}/people/{p.id}", json={"name": "Fed"}, verify=False)
+    requests.delete(f"{BASE_URL}/people/{p.id}", verify=False)
+
+    resp = requests.get(f"{BASE_URL}/people/changes", params={"since": token}, verify=False)
+    assert resp.status_code == 200
+    types = [c["type"] for c in resp.json()["changes"] if c["personId"] == p.id]
+    assert types == ["CREATED", "UPDATED", "DELETED"]
+
+    assert_error(requests.get(f"{BASE_URL}/people/changes", params={"since": "nope"}, verify=False), 400)
+
+def test_changes_feed_after_prune():
+    if not pytest.PEOPLE_DB_DSN:
+        pytest.skip("PEOPLE_DB_DSN is not set")
+    psycopg = pytest.importorskip("psycopg")
+    create_person({"name": f"Pruned_{uuid.uuid4().hex[:6]}", "coordinates": {"x": 0, "y": 0}, "eyeColor": "BLUE", "location": {"x": 0, "y": 0, "z": 0}})
+    # what the scheduled prune does once everything is past the retention period
+    with psycopg.connect(pytest.PEOPLE_DB_DSN) as db:
+        db.execute("""
+            UPDATE people_changes_horizon h SET txid = newest.txid, seq = newest.seq
+            FROM (SELECT txid, seq FROM people_changes ORDER BY txid DESC, seq DESC LIMIT 1) newest
+            WHERE h.id = 1 AND (newest.txid, newest.seq) > (h.txid, h.seq)""")
+        db.execute("DELETE FROM people_changes WHERE (txid, seq) <= (SELECT txid, seq FROM people_changes_horizon WHERE id = 1)")
+
+    assert_error(requests.get(f"{BASE_URL}/people/changes", params={"since": "0-0"}, verify=False), 410)
+
+    resp = requests.get(f"{BASE_URL}/people/changes", verify=False)
+    assert resp.status_code == 200
+    token = resp.json()["next"]
+    p = create_person({"name": f"AfterPrune_{uuid.uuid4().hex[:6]}", "coordinates": {"x": 0, "y": 0}, "eyeColor": "BLUE", "location": {"x": 0, "y": 0, "z": 0}})
+    resp = requests.get(f"{BASE_URL}/people/changes", params={"since": token}, verify=False)
+    assert resp.status_code == 200
+    assert [c["type"] for c in resp.json()["changes"] if c["personId"] == p.id] == ["CREATED"]
+
+def read_stream_event(stream, person_id: int, wanted: str) -> str:
+    """Reads events up to `wanted` for the person and returns its id."""
+    event, event_id = None, None
+    for line in stream.iter_lines(decode_unicode=True):
+        if line.startswith("event:"):
+            event = line[len("event:"):].strip()
+        elif line.startswith("id:"):
+            event_id = line[len("id:"):].strip()
+        elif line.startswith("data:") and event == wanted and json.loads(line[len("data:"):])["personId"] == person_id:
+            return event_id
+    pytest.fail(f"stream ended without the {wanted} event")
+
+def test_change_stream():
+    headers = {"Accept": "text/event-stream"}
+    with requests.get(f"{BASE_URL}/people/stream", headers=headers, stream=True, timeout=10, verify=False) as stream:
+        assert stream.status_code == 200
+        p = create_person({"name": f"Stream_{uuid.uuid4().hex[:6]}", "coordinates": {"x": 0, "y": 0}, "eyeColor": "BLUE", "location": {"x": 0, "y": 0, "z": 0}})
+        created_id = read_stream_event(stream, p.id, "CREATED")
+    assert created_id
+
+    # changes made while disconnected arrive after reconnecting with Last-Event-ID
+    requests.patch(f"{BASE_URL}/people/{p.id}", json={"name": "Streamed"}, verify=False)
+    headers["Last-Event-ID"] = created_id
+    with requests.get(f"{BASE_URL}/people/stream", headers=headers, stream=True, timeout=10, verify=False) as stream:
+        assert stream.status_code == 200
+        assert read_stream_event(stream, p.id, "UPDATED")
+
+    # an id that is not a log position cannot be resumed from: the client is told to start over
+    headers["Last-Event-ID"] = "nope"
+    with requests.get(f"{BASE_URL}/people/stream", headers=headers, stream=True, timeout=10, verify=False) as stream:
+        assert stream.status_code == 200
+        assert any(line[len("event:"):].strip() == "RESYNC"
+                   for line in stream.iter_lines(decode_unicode=True) if line.startswith("event:"))
+
 def test_delete_person():
     p = create_person({"name": f"Del_{uuid.uuid4().hex[:6]}", "coordinates": {"x": 0, "y": 0}, "eyeColor": "BLUE", "location": {"x": 0, "y": 0, "z": 0}})
     resp = requests.delete(f"{BASE_URL}/people/{p.id}", verify=False)
@@ -315,6 +489,14 @@ def test_search_people_with_callback():
     assert len(people) == 1
     assert people[0]["name"] == "CallbackTest_Final"
 
+    resp = requests.get(task_info["resultsUrl"], params={"page": 0, "pageSize": 5}, verify=False)
+    assert resp.status_code == 200
+    assert resp.json()["totalCount"] == 1
+    assert [p["name"] for p in resp.json()["people"]] == ["CallbackTest_Final"]
+
+    resp = requests.get(f"{BASE_URL}/people/search/results/task-unknown", verify=False)
+    assert_error(resp, 404)
+
 
 def test_location_greater():
     create_person({"name": "Low_Loc", "coordinates": {"x": 0, "y": 0}, "eyeColor": "BLUE", "location": {"x": 1, "y": 1, "z": 1}})
@@ -335,6 +517,306 @@ def test_invalid_nationality():
     resp = requests.delete(f"{BASE_URL}/people/nationality/INVALID", verify=False)
     assert_error(resp, 400)
 
+# API field -> column of people; enums are stored as smallint codes in alphabetical order of their names
+SEARCH_COLUMNS = {
+    "id": "id",
+    "name": "name",
+    "creationDate": "creation_date",
+    "coordinates.x": "coordinates_x",
+    "coordinates.y": "coordinates_y",
+    "height": "height",
+    "eyeColor": "eyecolor",
+    "hairColor": "haircolor",
+    "nationality": "nationality",
+    "location.x": "location_x",
+    "location.y": "location_y",
+    "location.z": "location_z",
+    "location.name": "location_name",
+}
+SQL_OPERATORS = {"eq": "=", "ne": "<>", "gt": ">", "gte": ">=", "lt": "<", "lte": "<="}
+ENUMS = {"eyeColor": EyeColor, "hairColor": HairColor, "nationality": Country}
+
+def sql_value(field: str, value):
+    if field in ENUMS:
+        return (sorted(e.value for e in ENUMS[field]).index(value) + 1) * 10
+    return value
+
+def search_all_pages(rules: list, sort_by: str, sort_order: str, page_size: int) -> list:
+    ids, page = [], 0
+    while True:
+        resp = requests.post(f"{BASE_URL}/people/search",
+                             params={"sortBy": sort_by, "sortOrder": sort_order, "page": page, "pageSize": page_size},
+                             json={"filters": rules}, verify=False)
+        assert resp.status_code == 200, resp.text
+        people = resp.json()["people"]
+        ids += [p["id"] for p in people]
+        if len(people) < page_size:
+            return ids
+        page += 1
+
+def test_columnar_engine_matches_sql():
+    """Every field, operator, sort order and page boundary against the same query run in PostgreSQL.
+    Run against a server with -Dpeople.read.engine=columnar to check the in-memory engine; under SQL it
+    still checks the JPA path."""
+    if not pytest.PEOPLE_DB_DSN:
+        pytest.skip("PEOPLE_DB_DSN is not set")
+    psycopg = pytest.importorskip("psycopg")
+    tag = uuid.uuid4().hex[:6]
+    heights = [None, 1.5, 1.75, 2.0]
+    eyes = ["RED", "BLUE", "YELLOW", "ORANGE"]
+    hairs = [None, "GREEN", "RED", "YELLOW", "ORANGE", "BROWN"]
+    countries = [None, "CHINA", "INDIA", "ITALY", "NORTH_KOREA"]
+    location_names = [None, "Alpha", "beta", "Gamma"]
+    people = [create_person({
+        # repeated values make id break ties
+        "name": f"Columnar_{tag}_{i % 7}",
+        "coordinates": {"x": i % 5, "y": -(i % 3)},
+        "height": heights[i % 4],
+        "eyeColor": eyes[(i // 2) % 4],
+        "hairColor": hairs[i % 6],
+        "nationality": countries[i % 5],
+        "location": {"x": i % 4, "y": (i % 3) * 2 ** 40, "z": -(i % 6), "name": location_names[(i // 3) % 4]},
+    }) for i in range(30)]
+    low, high = people[0].id, people[-1].id
+    middle = people[13]
+    samples = {
+        "id": middle.id,
+        "name": middle.name,
+        "creationDate": middle.creationDate,
+        "coordinates.x": middle.coordinates.x,
+        "coordinates.y": middle.coordinates.y,
+        "height": 1.75,
+        "eyeColor": "ORANGE",
+        "hairColor": "GREEN",
+        "nationality": "INDIA",
+        "location.x": middle.location.x,
+        "location.y": middle.location.y,
+        "location.z": middle.location.z,
+        "location.name": "Alpha",
+    }
+    # the columnar copy re-reads changed rows in the background once a second and leaves searches to SQL until then
+    time.sleep(3)
+    in_range = [{"field": "id", "operator": "gte", "value": str(low)}, {"field": "id", "operator": "lte", "value": str(high)}]
+
+    with psycopg.connect(pytest.PEOPLE_DB_DSN) as db:
+        def expected(field, op, value, sort_by, sort_order):
+            where, params = "id BETWEEN %s AND %s", [low, high]
+            if field is not None:
+                cast = "::real" if field == "height" else "::timestamptz" if field == "creationDate" else ""
+                where += f" AND {SEARCH_COLUMNS[field]} {SQL_OPERATORS[op]} %s{cast}"
+                params.append(sql_value(field, value))
+            order = "id" if sort_by == "id" else f"{SEARCH_COLUMNS[sort_by]} {sort_order}, id"
+            rows = db.execute(f"SELECT id FROM people WHERE {where} ORDER BY {order} {sort_order}", params).fetchall()
+            return [row[0] for row in rows]
+
+        for field, value in samples.items():
+            api_value = value.isoformat() if field == "creationDate" else str(value)
+            for op in SQL_OPERATORS:
+                rule = {"field": field, "operator": op, "value": api_value}
+                for sort_order in ("asc", "desc"):
+                    actual = search_all_pages(in_range + [rule], "id", sort_order, 7)
+                    assert actual == expected(field, op, value, "id", sort_order), f"{field} {op} {api_value} {sort_order}"
+
+        # page sizes that split ties and land the top-k heap on either side of half the rows
+        for sort_by in SEARCH_COLUMNS:
+            for sort_order in ("asc", "desc"):
+                want = expected(None, None, None, sort_by, sort_order)
+                for page_size in (4, 13, 30):
+                    actual = search_all_pages(in_range, sort_by, sort_order, page_size)
+                    assert actual == want, f"sorted by {sort_by} {sort_order}, pages of {page_size}"
+
+def search_count(rules: list) -> int:
+    resp = requests.post(f"{BASE_URL}/people/search", params={"pageSize": 0, "countMode": "exact"},
+                         json={"filters": rules}, verify=False)
+    assert resp.status_code == 200, resp.text
+    return resp.json()["totalCount"]
+
+def sql_count(db, rules: list) -> int:
+    where = " AND ".join(f"{SEARCH_COLUMNS[r['field']]} {SQL_OPERATORS[r['operator']]} %s" for r in rules) or "TRUE"
+    return db.execute(f"SELECT count(*) FROM people WHERE {where}",
+                      [sql_value(r["field"], r["value"]) for r in rules]).fetchone()[0]
+
+def assert_enum_counts_match(db):
+    rule_sets = [[]]
+    for field, enum in ENUMS.items():
+        for value in enum:
+            rule_sets.append([{"field": field, "operator": "eq", "value": value.value}])
+            rule_sets.append([{"field": field, "operator": "ne", "value": value.value}])
+    rule_sets += [
+        [{"field": "eyeColor", "operator": "eq", "value": "BLUE"}, {"field": "hairColor", "operator": "ne", "value": "RED"}],
+        [{"field": "eyeColor", "operator": "ne", "value": "RED"}, {"field": "nationality", "operator": "eq", "value": "INDIA"},
+         {"field": "hairColor", "operator": "eq", "value": "GREEN"}],
+        [{"field": "nationality", "operator": "ne", "value": "CHINA"}, {"field": "nationality", "operator": "ne", "value": "ITALY"}],
+    ]
+    for rules in rule_sets:
+        assert search_count(rules) == sql_count(db, rules), rules
+
+def test_enum_counts_match_sql():
+    """Enum-only counts (the in-memory bitmaps, unless disabled) against count(*) in PostgreSQL, after API
+    writes and after rows written straight to the table so that chunks cross the array/bitmap threshold."""
+    if not pytest.PEOPLE_DB_DSN:
+        pytest.skip("PEOPLE_DB_DSN is not set")
+    psycopg = pytest.importorskip("psycopg")
+    people = [create_person({
+        "name": f"Bitmap_{i}", "coordinates": {"x": i, "y": i}, "eyeColor": ["RED", "BLUE", "ORANGE"][i % 3],
+        "hairColor": [None, "GREEN", "BROWN"][i % 3], "nationality": [None, "INDIA", "CHINA", "ITALY"][i % 4],
+        "location": {"x": i, "y": i, "z": i},
+    }) for i in range(12)]
+    for p in people[:4]:
+        assert requests.patch(f"{BASE_URL}/people/{p.id}", json={"eyeColor": "YELLOW", "nationality": "NORTH_KOREA"},
+                              verify=False).status_code == 200
+    for p in people[4:7]:
+        assert requests.delete(f"{BASE_URL}/people/{p.id}", verify=False).status_code == 204
+    # changed rows are re-read in the background once a second; counts go to SQL until then
+    time.sleep(3)
+
+    # ids far above the sequence: 2100 on each side of a chunk boundary and 4200 in one chunk, past the
+    # 4096-id array limit; the node learns about them from the same notifications other nodes send
+    chunk = 65536
+    ids = list(range(3 * chunk - 2100, 3 * chunk + 2100)) + list(range(40 * chunk, 40 * chunk + 4200))
+    with psycopg.connect(pytest.PEOPLE_DB_DSN, autocommit=True) as db:
+        assert_enum_counts_match(db)
+        try:
+            db.execute("""
+                INSERT INTO people (id, name, coordinates_x, coordinates_y, creation_date, eyecolor, haircolor,
+                                    nationality, location_x, location_y, location_z, version)
+                SELECT id, 'Bitmap_bulk', 0, 0, now(), (id %% 4 + 1) * 10,
+                       CASE WHEN id %% 6 = 0 THEN NULL ELSE (id %% 5 + 1) * 10 END,
+                       CASE WHEN id %% 7 = 0 THEN NULL ELSE (id %% 4 + 1) * 10 END, 0, 0, 0, 0
+                FROM unnest(%s::bigint[]) AS id""", [ids])
+            db.execute("SELECT pg_notify('people_changes', 'api-tests|RESYNC||')")
+            time.sleep(5)
+            assert_enum_counts_match(db)
+
+            # updates, and deletes that take the dense chunk back below half the limit
+            updated, deleted = ids[:500], ids[-2200:]
+            db.execute("UPDATE people SET eyecolor = 20, nationality = NULL WHERE id = ANY(%s)", [updated])
+            db.execute("DELETE FROM people WHERE id = ANY(%s)", [deleted])
+            db.execute("""
+                SELECT pg_notify('people_changes', 'api-tests|' || type || '|' || id || '|')
+                FROM (SELECT 'UPDATED' AS type, unnest(%s::bigint[]) AS id
+                      UNION ALL SELECT 'DELETED', unnest(%s::bigint[])) changes""", [updated, deleted])
+            time.sleep(3)
+            assert_enum_counts_match(db)
+        finally:
+            db.execute("DELETE FROM people WHERE id = ANY(%s)", [ids])
+            db.execute("SELECT pg_notify('people_changes', 'api-tests|RESYNC||')")
+
+PAGE_FIELDS = ["people", "page", "pageSize", "totalPages", "totalCount", "totalCountApproximate", "facets"]
+PERSON_FIELDS = ["id", "name", "coordinates", "creationDate", "height", "eyeColor", "hairColor", "nationality", "location", "version"]
+
+def test_page_fields_match_mapper_output():
+    name = f"Fields_{uuid.uuid4().hex[:6]}"
+    p = create_person({"name": name, "coordinates": {"x": 3, "y": 4}, "eyeColor": "BLUE", "height": 1.5,
+                       "location": {"x": 1, "y": 2, "z": 3, "name": "Fieldtown"}})
+
+    resp = requests.get(f"{BASE_URL}/people?pageSize=5&countMode=estimate", verify=False)
+    assert resp.status_code == 200
+    body = resp.json()
+    assert list(body) == PAGE_FIELDS
+    assert body["totalCountApproximate"] is False
+    assert body["facets"] is None
+    for person in body["people"]:
+        assert list(person) == PERSON_FIELDS
+        assert list(person["coordinates"]) == ["x", "y"]
+        if person["location"] is not None:
+            assert list(person["location"]) == ["x", "y", "z", "name"]
+
+    resp = requests.post(f"{BASE_URL}/people/search?facets=eyeColor,hairColor", json={"filters": [
+        {"field": "name", "operator": "eq", "value": name}
+    ]}, verify=False)
+    assert resp.status_code == 200
+    body = resp.json()
+    assert list(body) == PAGE_FIELDS
+    assert list(body["facets"]) == ["eyeColor", "hairColor"]
+    assert body["facets"]["eyeColor"]["BLUE"] == 1
+    # a single person is still written by the object mapper; the page must hold the very same object
+    single = requests.get(f"{BASE_URL}/people/{p.id}", verify=False).json()
+    assert body["people"] == [single]
+    assert list(body["people"][0]) == list(single)
+    assert single["hairColor"] is None
+    assert single["version"] == 0
+
+def test_cbor_responses():
+    cbor2 = pytest.importorskip("cbor2")
+    cbor = {"Accept": "application/cbor"}
+    name = f"Cbor_{uuid.uuid4().hex[:6]}"
+    # 1.5 is exact as a float32, so the CBOR and JSON heights compare equal
+    create_person({"name": name, "coordinates": {"x": 5, "y": 6}, "eyeColor": "RED", "height": 1.5,
+                   "location": {"x": 1, "y": 2, "z": 3, "name": "Binarytown"}})
+
+    url = f"{BASE_URL}/people/search?facets=eyeColor"
+    criteria = {"filters": [{"field": "name", "operator": "eq", "value": name}]}
+    resp = requests.post(url, json=criteria, headers=cbor, verify=False)
+    assert resp.status_code == 200
+    assert resp.headers["Content-Type"].startswith("application/cbor")
+    page = cbor2.loads(resp.content)
+    expected = requests.post(url, json=criteria, verify=False).json()
+    assert page == expected
+    assert list(page) == list(expected)
+    assert list(page["people"][0]) == list(expected["people"][0])
+
+    resp = requests.get(f"{BASE_URL}/people/-1", headers=cbor, verify=False)
+    assert resp.status_code == 400
+    assert resp.headers["Content-Type"].startswith("application/cbor")
+    error = cbor2.loads(resp.content)
+    assert error["code"] == 400
+    assert list(error) == list(requests.get(f"{BASE_URL}/people/-1", verify=False).json())
+
+def raw_body(url: str, encoding: str) -> requests.Response:
+    resp = requests.get(url, headers={"Accept-Encoding": encoding}, stream=True, verify=False)
+    resp.raw_bytes = resp.raw.read(decode_content=False)
+    return resp
+
+def test_response_compression():
+    for i in range(40):
+        create_person({"name": f"Packed_{i}_{uuid.uuid4().hex}", "coordinates": {"x": i, "y": i}, "eyeColor": "BLUE",
+                       "location": {"x": i, "y": i, "z": i, "name": f"Compression city {i}"}})
+    url = f"{BASE_URL}/people?pageSize=100&sortBy=id"
+    identity = raw_body(url, "identity")
+    assert identity.status_code == 200
+    assert "Content-Encoding" not in identity.headers
+    assert len(identity.raw_bytes) > 8192
+
+    gzipped = raw_body(url, "gzip")
+    assert gzipped.headers["Content-Encoding"] == "gzip"
+    assert len(gzipped.raw_bytes) < len(identity.raw_bytes)
+    assert gzip.decompress(gzipped.raw_bytes) == identity.raw_bytes
+
+    deflated = raw_body(url, "deflate")
+    assert deflated.headers["Content-Encoding"] == "deflate"
+    assert zlib.decompress(deflated.raw_bytes) == identity.raw_bytes
+
+    # below the threshold the body goes out as it is
+    small = raw_body(f"{BASE_URL}/people?pageSize=1", "gzip, deflate")
+    assert small.status_code == 200
+    assert "Content-Encoding" not in small.headers
+    assert len(small.raw_bytes) < 8192
+    assert json.loads(small.raw_bytes)["pageSize"] == 1
+
+def test_load_shedding_drops_bulk_first():
+    if not pytest.PEOPLE_DB_DSN:
+        pytest.skip("PEOPLE_DB_DSN is not set")
+    psycopg = pytest.importorskip("psycopg")
+    p = create_person({"name": f"Shed_{uuid.uuid4().hex[:6]}", "coordinates": {"x": 0, "y": 0}, "eyeColor": "BLUE", "location": {"x": 0, "y": 0, "z": 0}})
+    # cached, so reading it needs no database
+    for _ in range(2):
+        assert requests.get(f"{BASE_URL}/people/{p.id}", verify=False).status_code == 200
+
+    nowhere = {"x": -424242, "y": -424242, "z": -424242, "name": f"Shed_{uuid.uuid4().hex[:6]}"}
+    with ThreadPoolExecutor(max_workers=64) as pool, psycopg.connect(pytest.PEOPLE_DB_DSN) as db:
+        # bulk deletes wait on the lock and hold their slots until they fill the bulk share of the limit
+        db.execute("LOCK TABLE people IN ACCESS EXCLUSIVE MODE")
+        deletes = [pool.submit(requests.delete, f"{BASE_URL}/people/location", json=nowhere, verify=False) for _ in range(60)]
+        time.sleep(1)
+        shed = [f.result() for f in deletes if f.done()]
+        assert shed and all(r.status_code == 503 for r in shed)
+        assert all("Retry-After" in r.headers for r in shed)
+        # single-person reads may use the whole limit, so they still get through
+        assert requests.get(f"{BASE_URL}/people/{p.id}", verify=False).status_code == 200
+        db.commit()
+    assert all(f.result().status_code in (204, 404, 503, 504) for f in deletes)
+
 def create_person(data: dict) -> Person:
     resp = requests.post(f"{BASE_URL}/people", json=data, verify=False)
     assert resp.status_code == 201, f"Failed to create person: {resp.status_code} {resp.text}"
@@ -1,19 +1,16 @@
 package ru.ifmo.soa.demographyservice.client;
 
-import org.springframework.http.HttpEntity;
-import org.springframework.http.HttpHeaders;
-import org.springframework.http.MediaType;
 import org.springframework.stereotype.Component;
 import org.springframework.web.client.RestTemplate;
-import ru.ifmo.soa.demographyservice.client.model.PeopleSearchRequest;
-import ru.ifmo.soa.demographyservice.dto.PeopleResponseDto;
+import ru.ifmo.soa.demographyservice.dto.PeopleCountsDto;
+
+import java.util.Map;
 
 @Component
 public class PeopleApiClient implements PeopleClient {
 
   private static final String BASE_URL = "http://people-service/api/v1";
-  private static final String GET_PEOPLE = BASE_URL + "/people?page=0&pageSize=1";
-  private static final String SEARCH_PEOPLE = BASE_URL + "/people/search?page=0&pageSize=1";
+  private static final String GET_COUNTS = BASE_URL + "/people/stats/counts";
 
   private final RestTemplate restTemplate;
 
@@ -22,16 +19,20 @@ public class PeopleApiClient implements PeopleClient {
   }
 
   public long getCountByField(String field, String value) {
-    var request = new PeopleSearchRequest(
-      java.util.List.of(new PeopleSearchRequest.FilterRule(field, "eq", value))
-    );
-
-    var response = restTemplate.postForObject(SEARCH_PEOPLE, request, PeopleResponseDto.class);
-    return response != null ? response.totalCount() : 0L;
+    var response = restTemplate.getForObject(GET_COUNTS, PeopleCountsDto.class);
+    if (response == null) {
+      return 0L;
+    }
+    Map<String, Long> counts = switch (field) {
+      case "eyeColor" -> response.eyeColor();
+      case "hairColor" -> response.hairColor();
+      default -> throw new IllegalArgumentException("Unsupported field: " + field);
+    };
+    return counts != null ? counts.getOrDefault(value, 0L) : 0L;
   }
 
   public long getTotalCount() {
-    var response = restTemplate.getForObject(GET_PEOPLE, PeopleResponseDto.class);
-    return response != null ? response.totalCount() : 0L;
+    var response = restTemplate.getForObject(GET_COUNTS, PeopleCountsDto.class);
+    return response != null ? response.total() : 0L;
   }
 }
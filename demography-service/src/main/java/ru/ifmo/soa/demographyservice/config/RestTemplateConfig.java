@@ -15,6 +15,7 @@ import org.springframework.http.client.ClientHttpRequestInterceptor;
 import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
 import org.springframework.http.converter.HttpMessageConverter;
 import org.springframework.http.converter.StringHttpMessageConverter;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
 import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
 import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
 import org.springframework.web.client.RestTemplate;
@@ -52,6 +53,8 @@ public class RestTemplateConfig {
       MappingJackson2HttpMessageConverter jsonConverter = new MappingJackson2HttpMessageConverter();
       jsonConverter.setObjectMapper(objectMapper);
       List<HttpMessageConverter<?>> messageConverters = new ArrayList<>();
+      // first, so that application/cbor leads the Accept header; people-service answers in CBOR then
+      messageConverters.add(new MappingJackson2CborHttpMessageConverter());
       messageConverters.add(jsonConverter);
       messageConverters.add(new StringHttpMessageConverter());
 
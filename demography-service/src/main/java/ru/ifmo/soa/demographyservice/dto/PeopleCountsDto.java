@@ -2,5 +2,7 @@ package ru.ifmo.soa.demographyservice.dto;
 
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 
+import java.util.Map;
+
 @JsonIgnoreProperties(ignoreUnknown = true)
-public record PeopleResponseDto(Long totalCount) {}
+public record PeopleCountsDto(long total, Map<String, Long> eyeColor, Map<String, Long> hairColor) {}
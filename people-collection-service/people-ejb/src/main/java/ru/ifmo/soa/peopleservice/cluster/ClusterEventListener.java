@@ -0,0 +1,124 @@
+package ru.ifmo.soa.peopleservice.cluster;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import jakarta.ejb.Singleton;
+import jakarta.ejb.Startup;
+import jakarta.enterprise.concurrent.ManagedThreadFactory;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+
+import javax.naming.InitialContext;
+import javax.naming.NamingException;
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * Keeps one dedicated connection in {@code LISTEN} mode and forwards notifications from other nodes
+ * to {@link ClusterEvents}. After a lost connection a {@code RESYNC} event is dispatched, because
+ * notifications sent while disconnected are gone.
+ * <p>
+ * The connection comes from {@code people.cluster.listen-datasource}, meant to be a non-JTA datasource of one
+ * connection, so the listener neither holds a connection of the application pool for the node's lifetime
+ * nor takes part in transactions. Without it the listener falls back to the application datasource and says
+ * so once. It runs on a container-managed thread.
+ */
+@Singleton
+@Startup
+public class ClusterEventListener {
+
+  private static final Logger LOG = Logger.getLogger(ClusterEventListener.class.getName());
+
+  private static final int POLL_TIMEOUT_MS = 1000;
+  private static final long MAX_BACKOFF_MS = 30_000;
+  private static final String LISTEN_DATASOURCE =
+    System.getProperty("people.cluster.listen-datasource", "java:jboss/datasources/PeopleServiceListenDS");
+
+  @Resource(lookup = "java:jboss/datasources/PeopleServiceDS")
+  private DataSource dataSource;
+
+  @Resource(lookup = "java:comp/DefaultManagedThreadFactory")
+  private ManagedThreadFactory threads;
+
+  private ExecutorService executor;
+  private volatile boolean running;
+
+  @PostConstruct
+  public void start() {
+    running = true;
+    executor = Executors.newSingleThreadExecutor(threads);
+    executor.submit(() -> listen(listenDataSource()));
+  }
+
+  @PreDestroy
+  public void stop() {
+    running = false;
+    executor.shutdownNow();
+    try {
+      executor.awaitTermination(POLL_TIMEOUT_MS * 2L, TimeUnit.MILLISECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private DataSource listenDataSource() {
+    try {
+      return InitialContext.doLookup(LISTEN_DATASOURCE);
+    } catch (NamingException e) {
+      LOG.warning("No datasource " + LISTEN_DATASOURCE + " (people.cluster.listen-datasource), "
+        + "listening for cluster events on a connection of the application pool");
+      return dataSource;
+    }
+  }
+
+  private void listen(DataSource source) {
+    long backoff = POLL_TIMEOUT_MS;
+    boolean disconnected = false;
+    while (running) {
+      try (Connection connection = source.getConnection()) {
+        try (Statement statement = connection.createStatement()) {
+          statement.execute("LISTEN " + ClusterEvents.CHANNEL);
+        }
+        PGConnection pgConnection = connection.unwrap(PGConnection.class);
+        LOG.info("Listening for cluster events on channel " + ClusterEvents.CHANNEL);
+        if (disconnected) {
+          ClusterEvents.dispatch(PersonChangeEvent.resync());
+          disconnected = false;
+        }
+        backoff = POLL_TIMEOUT_MS;
+        while (running) {
+          PGNotification[] notifications = pgConnection.getNotifications(POLL_TIMEOUT_MS);
+          if (notifications == null) {
+            continue;
+          }
+          for (PGNotification notification : notifications) {
+            PersonChangeEvent event = PersonChangeEvent.decode(notification.getParameter());
+            if (event != null && !event.isLocal()) {
+              ClusterEvents.dispatch(event);
+            }
+          }
+        }
+      } catch (SQLException e) {
+        if (!running) {
+          return;
+        }
+        disconnected = true;
+        LOG.warning("Cluster event connection lost, retrying in " + backoff + " ms: " + e.getMessage());
+        try {
+          Thread.sleep(backoff);
+        } catch (InterruptedException ie) {
+          Thread.currentThread().interrupt();
+          return;
+        }
+        backoff = Math.min(backoff * 2, MAX_BACKOFF_MS);
+      }
+    }
+  }
+}
@@ -0,0 +1,69 @@
+package ru.ifmo.soa.peopleservice.cluster;
+
+import jakarta.annotation.Resource;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.transaction.Status;
+import jakarta.transaction.Synchronization;
+import jakarta.transaction.TransactionSynchronizationRegistry;
+import ru.ifmo.soa.peopleservice.entities.Country;
+import ru.ifmo.soa.peopleservice.entities.Person;
+
+/**
+ * Publishes collection changes from the write beans. {@code NOTIFY} is transactional, so other nodes
+ * see the event only once the write commits; local subscribers are called after commit as well.
+ */
+@ApplicationScoped
+public class ClusterEventPublisher {
+
+  @PersistenceContext
+  private EntityManager em;
+
+  @Resource(lookup = "java:comp/TransactionSynchronizationRegistry")
+  private TransactionSynchronizationRegistry transactionRegistry;
+
+  public void created(Person person) {
+    publish(PersonChangeEvent.of(PersonChangeEvent.Type.CREATED, person.getId(), nameOf(person.getNationality())));
+  }
+
+  public void updated(Person person) {
+    publish(PersonChangeEvent.of(PersonChangeEvent.Type.UPDATED, person.getId(), nameOf(person.getNationality())));
+  }
+
+  public void deleted(Long personId) {
+    publish(PersonChangeEvent.of(PersonChangeEvent.Type.DELETED, personId, null));
+  }
+
+  public void nationalityDeleted(Country nationality) {
+    publish(PersonChangeEvent.of(PersonChangeEvent.Type.NATIONALITY_DELETED, null, nameOf(nationality)));
+  }
+
+  public void publish(PersonChangeEvent event) {
+    em.createNativeQuery("SELECT 1 FROM pg_notify(:channel, :payload)")
+      .setParameter("channel", ClusterEvents.CHANNEL)
+      .setParameter("payload", event.encode())
+      .getSingleResult();
+
+    if (transactionRegistry.getTransactionStatus() != Status.STATUS_ACTIVE) {
+      ClusterEvents.dispatch(event);
+      return;
+    }
+    transactionRegistry.registerInterposedSynchronization(new Synchronization() {
+      @Override
+      public void beforeCompletion() {
+      }
+
+      @Override
+      public void afterCompletion(int status) {
+        if (status == Status.STATUS_COMMITTED) {
+          ClusterEvents.dispatch(event);
+        }
+      }
+    });
+  }
+
+  private static String nameOf(Country country) {
+    return country != null ? country.name() : null;
+  }
+}
@@ -0,0 +1,42 @@
+package ru.ifmo.soa.peopleservice.cluster;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * In-process hub for {@link PersonChangeEvent}s. Local commits and notifications from other nodes
+ * both end up here, so per-node caches (in people-ejb and people-web alike) subscribe in one place.
+ */
+public final class ClusterEvents {
+
+  private static final Logger LOG = Logger.getLogger(ClusterEvents.class.getName());
+
+  public static final String CHANNEL = "people_changes";
+  public static final String NODE_ID = UUID.randomUUID().toString();
+
+  private static final List<PersonChangeListener> listeners = new CopyOnWriteArrayList<>();
+
+  private ClusterEvents() {
+  }
+
+  public static void subscribe(PersonChangeListener listener) {
+    listeners.add(listener);
+  }
+
+  public static void unsubscribe(PersonChangeListener listener) {
+    listeners.remove(listener);
+  }
+
+  static void dispatch(PersonChangeEvent event) {
+    for (PersonChangeListener listener : listeners) {
+      try {
+        listener.onChange(event);
+      } catch (RuntimeException e) {
+        LOG.log(Level.WARNING, "Change listener failed on " + event.type(), e);
+      }
+    }
+  }
+}
@@ -0,0 +1,60 @@
+package ru.ifmo.soa.peopleservice.cluster;
+
+import java.io.Serial;
+import java.io.Serializable;
+
+/**
+ * Change of the people collection, shared between nodes as a {@code NOTIFY} payload.
+ * Listeners treat it as an invalidation hint: it says what changed, not the new state.
+ */
+public record PersonChangeEvent(String origin, Type type, Long personId, String nationality) implements Serializable {
+
+  @Serial
+  private static final long serialVersionUID = 1L;
+
+  private static final String SEPARATOR = "|";
+
+  public enum Type {
+    CREATED, UPDATED, DELETED, NATIONALITY_DELETED,
+    /** Notifications may have been lost, every derived state must be rebuilt. */
+    RESYNC
+  }
+
+  public static PersonChangeEvent of(Type type, Long personId, String nationality) {
+    return new PersonChangeEvent(ClusterEvents.NODE_ID, type, personId, nationality);
+  }
+
+  public static PersonChangeEvent resync() {
+    return of(Type.RESYNC, null, null);
+  }
+
+  public boolean isLocal() {
+    return ClusterEvents.NODE_ID.equals(origin);
+  }
+
+  public String encode() {
+    return origin + SEPARATOR + type + SEPARATOR
+      + (personId != null ? personId : "") + SEPARATOR
+      + (nationality != null ? nationality : "");
+  }
+
+  public static PersonChangeEvent decode(String payload) {
+    if (payload == null) {
+      return null;
+    }
+    String[] parts = payload.split("\\|", -1);
+    if (parts.length < 4) {
+      return null;
+    }
+    try {
+      return new PersonChangeEvent(
+        parts[0],
+        Type.valueOf(parts[1]),
+        parts[2].isEmpty() ? null : Long.valueOf(parts[2]),
+        parts[3].isEmpty() ? null : parts[3]
+      );
+    } catch (IllegalArgumentException e) {
+      return null;
+    }
+  }
+}
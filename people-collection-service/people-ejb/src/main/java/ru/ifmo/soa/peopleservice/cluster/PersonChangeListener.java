@@ -0,0 +1,6 @@
+package ru.ifmo.soa.peopleservice.cluster;
+
+@FunctionalInterface
+public interface PersonChangeListener {
+  void onChange(PersonChangeEvent event);
+}
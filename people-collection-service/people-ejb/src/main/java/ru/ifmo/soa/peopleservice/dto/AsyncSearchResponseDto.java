@@ -16,11 +16,13 @@ public class AsyncSearchResponseDto implements Serializable {
   private String taskId;
   private String message;
   private String estimatedCompletion;
+  private String resultsUrl;
 
-  public AsyncSearchResponseDto(String taskId, String message, String estimatedCompletion) {
+  public AsyncSearchResponseDto(String taskId, String message, String estimatedCompletion, String resultsUrl) {
     this.taskId = taskId;
     this.message = message;
     this.estimatedCompletion = estimatedCompletion;
+    this.resultsUrl = resultsUrl;
   }
 
   public String getTaskId() {
@@ -46,4 +48,12 @@ public class AsyncSearchResponseDto implements Serializable {
   public void setEstimatedCompletion(String estimatedCompletion) {
     this.estimatedCompletion = estimatedCompletion;
   }
+
+  public String getResultsUrl() {
+    return resultsUrl;
+  }
+
+  public void setResultsUrl(String resultsUrl) {
+    this.resultsUrl = resultsUrl;
+  }
 }
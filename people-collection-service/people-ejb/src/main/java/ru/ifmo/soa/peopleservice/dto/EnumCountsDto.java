@@ -0,0 +1,60 @@
+package ru.ifmo.soa.peopleservice.dto;
+
+import jakarta.xml.bind.annotation.XmlAccessType;
+import jakarta.xml.bind.annotation.XmlAccessorType;
+import jakarta.xml.bind.annotation.XmlRootElement;
+
+import java.io.Serial;
+import java.io.Serializable;
+import java.util.Map;
+
+@XmlRootElement(name = "EnumCounts")
+@XmlAccessorType(XmlAccessType.FIELD)
+public class EnumCountsDto implements Serializable {
+
+  @Serial private static final long serialVersionUID = 1L;
+
+  private long total;
+  private Map<String, Long> eyeColor;
+  private Map<String, Long> hairColor;
+  private Map<String, Long> nationality;
+
+  public EnumCountsDto(long total, Map<String, Long> eyeColor, Map<String, Long> hairColor, Map<String, Long> nationality) {
+    this.total = total;
+    this.eyeColor = eyeColor;
+    this.hairColor = hairColor;
+    this.nationality = nationality;
+  }
+
+  public long getTotal() {
+    return total;
+  }
+
+  public void setTotal(long total) {
+    this.total = total;
+  }
+
+  public Map<String, Long> getEyeColor() {
+    return eyeColor;
+  }
+
+  public void setEyeColor(Map<String, Long> eyeColor) {
+    this.eyeColor = eyeColor;
+  }
+
+  public Map<String, Long> getHairColor() {
+    return hairColor;
+  }
+
+  public void setHairColor(Map<String, Long> hairColor) {
+    this.hairColor = hairColor;
+  }
+
+  public Map<String, Long> getNationality() {
+    return nationality;
+  }
+
+  public void setNationality(Map<String, Long> nationality) {
+    this.nationality = nationality;
+  }
+}
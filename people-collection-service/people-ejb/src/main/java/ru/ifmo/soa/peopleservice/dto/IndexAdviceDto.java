@@ -0,0 +1,70 @@
+package ru.ifmo.soa.peopleservice.dto;
+
+import jakarta.xml.bind.annotation.XmlAccessType;
+import jakarta.xml.bind.annotation.XmlAccessorType;
+import jakarta.xml.bind.annotation.XmlRootElement;
+
+import java.io.Serial;
+import java.io.Serializable;
+import java.util.List;
+
+@XmlRootElement(name = "IndexAdvice")
+@XmlAccessorType(XmlAccessType.FIELD)
+public class IndexAdviceDto implements Serializable {
+
+  @Serial private static final long serialVersionUID = 1L;
+
+  private List<String> equalityFilters;
+  private List<String> rangeFilters;
+  private String sortBy;
+  private long searches;
+  private String suggestedIndex;
+
+  public IndexAdviceDto(List<String> equalityFilters, List<String> rangeFilters, String sortBy, long searches, String suggestedIndex) {
+    this.equalityFilters = equalityFilters;
+    this.rangeFilters = rangeFilters;
+    this.sortBy = sortBy;
+    this.searches = searches;
+    this.suggestedIndex = suggestedIndex;
+  }
+
+  public List<String> getEqualityFilters() {
+    return equalityFilters;
+  }
+
+  public void setEqualityFilters(List<String> equalityFilters) {
+    this.equalityFilters = equalityFilters;
+  }
+
+  public List<String> getRangeFilters() {
+    return rangeFilters;
+  }
+
+  public void setRangeFilters(List<String> rangeFilters) {
+    this.rangeFilters = rangeFilters;
+  }
+
+  public String getSortBy() {
+    return sortBy;
+  }
+
+  public void setSortBy(String sortBy) {
+    this.sortBy = sortBy;
+  }
+
+  public long getSearches() {
+    return searches;
+  }
+
+  public void setSearches(long searches) {
+    this.searches = searches;
+  }
+
+  public String getSuggestedIndex() {
+    return suggestedIndex;
+  }
+
+  public void setSuggestedIndex(String suggestedIndex) {
+    this.suggestedIndex = suggestedIndex;
+  }
+}
@@ -7,6 +7,7 @@ import jakarta.xml.bind.annotation.XmlRootElement;
 import java.io.Serial;
 import java.io.Serializable;
 import java.util.List;
+import java.util.Map;
 
 @XmlRootElement(name = "PeopleResponse")
 @XmlAccessorType(XmlAccessType.FIELD)
@@ -19,6 +20,8 @@ public class PeopleResponseDto implements Serializable {
   private Integer pageSize;
   private Integer totalPages;
   private Long totalCount;
+  private Boolean totalCountApproximate;
+  private Map<String, Map<String, Long>> facets;
 
   public PeopleResponseDto(List<PersonDto> people, Integer page, Integer pageSize, Integer totalPages, Long totalCount) {
     this.people = people;
@@ -67,4 +70,20 @@ public class PeopleResponseDto implements Serializable {
   public void setTotalCount(Long totalCount) {
     this.totalCount = totalCount;
   }
+
+  public Boolean getTotalCountApproximate() {
+    return totalCountApproximate;
+  }
+
+  public void setTotalCountApproximate(Boolean totalCountApproximate) {
+    this.totalCountApproximate = totalCountApproximate;
+  }
+
+  public Map<String, Map<String, Long>> getFacets() {
+    return facets;
+  }
+
+  public void setFacets(Map<String, Map<String, Long>> facets) {
+    this.facets = facets;
+  }
 }
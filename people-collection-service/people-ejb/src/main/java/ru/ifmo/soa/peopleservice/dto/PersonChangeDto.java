@@ -0,0 +1,83 @@
+package ru.ifmo.soa.peopleservice.dto;
+
+import jakarta.xml.bind.annotation.XmlAccessType;
+import jakarta.xml.bind.annotation.XmlAccessorType;
+import jakarta.xml.bind.annotation.XmlRootElement;
+import jakarta.xml.bind.annotation.adapters.XmlJavaTypeAdapter;
+import ru.ifmo.soa.peopleservice.util.datetime.OffsetDateTimeAdapter;
+
+import java.io.Serial;
+import java.io.Serializable;
+import java.time.OffsetDateTime;
+
+/**
+ * One entry of the change log. Entries say which person changed, not how; {@code version} is the person's
+ * version after the change, {@code null} for deletions. {@code position} is the token that reads on from
+ * just after this entry.
+ */
+@XmlRootElement(name = "PersonChange")
+@XmlAccessorType(XmlAccessType.FIELD)
+public class PersonChangeDto implements Serializable {
+
+  @Serial private static final long serialVersionUID = 1L;
+
+  private String type;
+  private Long personId;
+  private Long version;
+
+  @XmlJavaTypeAdapter(OffsetDateTimeAdapter.class)
+  private OffsetDateTime changedAt;
+
+  private String position;
+
+  public PersonChangeDto() {
+  }
+
+  public PersonChangeDto(String type, Long personId, Long version, OffsetDateTime changedAt, String position) {
+    this.type = type;
+    this.personId = personId;
+    this.version = version;
+    this.changedAt = changedAt;
+    this.position = position;
+  }
+
+  public String getType() {
+    return type;
+  }
+
+  public void setType(String type) {
+    this.type = type;
+  }
+
+  public Long getPersonId() {
+    return personId;
+  }
+
+  public void setPersonId(Long personId) {
+    this.personId = personId;
+  }
+
+  public Long getVersion() {
+    return version;
+  }
+
+  public void setVersion(Long version) {
+    this.version = version;
+  }
+
+  public OffsetDateTime getChangedAt() {
+    return changedAt;
+  }
+
+  public void setChangedAt(OffsetDateTime changedAt) {
+    this.changedAt = changedAt;
+  }
+
+  public String getPosition() {
+    return position;
+  }
+
+  public void setPosition(String position) {
+    this.position = position;
+  }
+}
@@ -0,0 +1,53 @@
+package ru.ifmo.soa.peopleservice.dto;
+
+import jakarta.xml.bind.annotation.XmlAccessType;
+import jakarta.xml.bind.annotation.XmlAccessorType;
+import jakarta.xml.bind.annotation.XmlRootElement;
+
+import java.io.Serial;
+import java.io.Serializable;
+import java.util.List;
+
+@XmlRootElement(name = "PersonChanges")
+@XmlAccessorType(XmlAccessType.FIELD)
+public class PersonChangesDto implements Serializable {
+
+  @Serial private static final long serialVersionUID = 1L;
+
+  private List<PersonChangeDto> changes;
+  private String next;
+  private Boolean hasMore;
+
+  public PersonChangesDto() {
+  }
+
+  public PersonChangesDto(List<PersonChangeDto> changes, String next, Boolean hasMore) {
+    this.changes = changes;
+    this.next = next;
+    this.hasMore = hasMore;
+  }
+
+  public List<PersonChangeDto> getChanges() {
+    return changes;
+  }
+
+  public void setChanges(List<PersonChangeDto> changes) {
+    this.changes = changes;
+  }
+
+  public String getNext() {
+    return next;
+  }
+
+  public void setNext(String next) {
+    this.next = next;
+  }
+
+  public Boolean getHasMore() {
+    return hasMore;
+  }
+
+  public void setHasMore(Boolean hasMore) {
+    this.hasMore = hasMore;
+  }
+}
@@ -29,10 +29,34 @@ public class PersonDto implements Serializable {
   private String hairColor;
   private String nationality;
   @NotNull private LocationDto location;
+  private Long version;
 
   public PersonDto() {
   }
 
+  /**
+   * One row of a query that selects straight into the DTO. Embedded values come as their columns and are
+   * {@code null} when all of them are, as Hibernate loads them; enums are kept by name.
+   */
+  public PersonDto(Long id, String name, Integer coordinatesX, Integer coordinatesY, OffsetDateTime creationDate,
+                   Float height, Enum<?> eyeColor, Enum<?> hairColor, Enum<?> nationality,
+                   Integer locationX, Long locationY, Integer locationZ, String locationName, Long version) {
+    this.id = id;
+    this.name = name;
+    if (coordinatesX != null || coordinatesY != null) {
+      this.coordinates = new CoordinatesDto(coordinatesX, coordinatesY);
+    }
+    this.creationDate = creationDate;
+    this.height = height;
+    this.eyeColor = eyeColor != null ? eyeColor.name() : null;
+    this.hairColor = hairColor != null ? hairColor.name() : null;
+    this.nationality = nationality != null ? nationality.name() : null;
+    if (locationX != null || locationY != null || locationZ != null || locationName != null) {
+      this.location = new LocationDto(locationX, locationY, locationZ, locationName);
+    }
+    this.version = version;
+  }
+
   public Long getId() {
     return id;
   }
@@ -104,4 +128,12 @@ public class PersonDto implements Serializable {
   public void setLocation(LocationDto location) {
     this.location = location;
   }
+
+  public Long getVersion() {
+    return version;
+  }
+
+  public void setVersion(Long version) {
+    this.version = version;
+  }
 }
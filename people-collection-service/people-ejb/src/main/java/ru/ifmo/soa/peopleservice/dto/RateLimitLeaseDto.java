@@ -0,0 +1,59 @@
+package ru.ifmo.soa.peopleservice.dto;
+
+import jakarta.xml.bind.annotation.XmlAccessType;
+import jakarta.xml.bind.annotation.XmlAccessorType;
+import jakarta.xml.bind.annotation.XmlRootElement;
+
+import java.io.Serial;
+import java.io.Serializable;
+
+@XmlRootElement(name = "RateLimitLease")
+@XmlAccessorType(XmlAccessType.FIELD)
+public class RateLimitLeaseDto implements Serializable {
+
+  @Serial private static final long serialVersionUID = 1L;
+
+  private long granted;
+  private long remaining;
+  private long secondsToRefill;
+  private long secondsToReset;
+
+  public RateLimitLeaseDto(long granted, long remaining, long secondsToRefill, long secondsToReset) {
+    this.granted = granted;
+    this.remaining = remaining;
+    this.secondsToRefill = secondsToRefill;
+    this.secondsToReset = secondsToReset;
+  }
+
+  public long getGranted() {
+    return granted;
+  }
+
+  public void setGranted(long granted) {
+    this.granted = granted;
+  }
+
+  public long getRemaining() {
+    return remaining;
+  }
+
+  public void setRemaining(long remaining) {
+    this.remaining = remaining;
+  }
+
+  public long getSecondsToRefill() {
+    return secondsToRefill;
+  }
+
+  public void setSecondsToRefill(long secondsToRefill) {
+    this.secondsToRefill = secondsToRefill;
+  }
+
+  public long getSecondsToReset() {
+    return secondsToReset;
+  }
+
+  public void setSecondsToReset(long secondsToReset) {
+    this.secondsToReset = secondsToReset;
+  }
+}
@@ -2,9 +2,11 @@ package ru.ifmo.soa.peopleservice.ejb.remote;
 
 import jakarta.ejb.Remote;
 import ru.ifmo.soa.peopleservice.dto.PeopleResponseDto;
+import ru.ifmo.soa.peopleservice.util.CallContext;
+import ru.ifmo.soa.peopleservice.util.CountMode;
 import ru.ifmo.soa.peopleservice.util.Result;
 
 @Remote
 public interface GetAllPeopleRemote {
-  Result<PeopleResponseDto> getAllPeople(String sortBy, String sortOrder, Integer page, Integer pageSize);
+  Result<PeopleResponseDto> getAllPeople(String sortBy, String sortOrder, Integer page, Integer pageSize, CountMode countMode, CallContext context);
 }
@@ -0,0 +1,11 @@
+package ru.ifmo.soa.peopleservice.ejb.remote;
+
+import jakarta.ejb.Remote;
+import ru.ifmo.soa.peopleservice.dto.EnumCountsDto;
+import ru.ifmo.soa.peopleservice.util.CallContext;
+import ru.ifmo.soa.peopleservice.util.Result;
+
+@Remote
+public interface GetEnumCountsRemote {
+  Result<EnumCountsDto> getEnumCounts(CallContext context);
+}
@@ -0,0 +1,11 @@
+package ru.ifmo.soa.peopleservice.ejb.remote;
+
+import jakarta.ejb.Remote;
+import ru.ifmo.soa.peopleservice.dto.PersonChangesDto;
+import ru.ifmo.soa.peopleservice.util.CallContext;
+import ru.ifmo.soa.peopleservice.util.Result;
+
+@Remote
+public interface GetPersonChangesRemote {
+  Result<PersonChangesDto> getChanges(String since, Integer limit, CallContext context);
+}
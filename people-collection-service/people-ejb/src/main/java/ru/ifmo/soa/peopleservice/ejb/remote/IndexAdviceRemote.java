@@ -0,0 +1,13 @@
+package ru.ifmo.soa.peopleservice.ejb.remote;
+
+import jakarta.ejb.Remote;
+import ru.ifmo.soa.peopleservice.dto.IndexAdviceDto;
+import ru.ifmo.soa.peopleservice.util.CallContext;
+import ru.ifmo.soa.peopleservice.util.Result;
+
+import java.util.List;
+
+@Remote
+public interface IndexAdviceRemote {
+  Result<List<IndexAdviceDto>> getIndexAdvice(CallContext context);
+}
@@ -0,0 +1,10 @@
+package ru.ifmo.soa.peopleservice.ejb.remote;
+
+import jakarta.ejb.Remote;
+import ru.ifmo.soa.peopleservice.dto.RateLimitLeaseDto;
+import ru.ifmo.soa.peopleservice.util.Result;
+
+@Remote
+public interface RateLimitLeaseRemote {
+  Result<RateLimitLeaseDto> acquire(String clientKey, long minimum, long desired, long capacity, long refillPerMinute);
+}
@@ -3,8 +3,12 @@ package ru.ifmo.soa.peopleservice.ejb.remote;
 import jakarta.ejb.Remote;
 import ru.ifmo.soa.peopleservice.dto.PeopleResponseDto;
 import ru.ifmo.soa.peopleservice.dto.FilterCriteriaDto;
+import ru.ifmo.soa.peopleservice.util.CallContext;
+import ru.ifmo.soa.peopleservice.util.CountMode;
 import ru.ifmo.soa.peopleservice.util.Result;
 
+import java.util.List;
+
 @Remote
 public interface SearchPeopleRemote {
   Result<PeopleResponseDto> searchPeople(
@@ -12,6 +16,9 @@ public interface SearchPeopleRemote {
     String sortBy,
     String sortOrder,
     Integer page,
-    Integer pageSize
+    Integer pageSize,
+    CountMode countMode,
+    List<String> facets,
+    CallContext context
   );
 }
@@ -0,0 +1,21 @@
+package ru.ifmo.soa.peopleservice.ejb.remote;
+
+import jakarta.ejb.Remote;
+import ru.ifmo.soa.peopleservice.dto.FilterCriteriaDto;
+import ru.ifmo.soa.peopleservice.dto.PeopleResponseDto;
+import ru.ifmo.soa.peopleservice.util.CallContext;
+import ru.ifmo.soa.peopleservice.util.CountMode;
+import ru.ifmo.soa.peopleservice.util.Result;
+
+import java.util.List;
+
+@Remote
+public interface SearchSnapshotRemote {
+  /**
+   * Runs the search once, keeps its ordered ids under {@code taskId}, and returns page {@code page} of them,
+   * counted as {@code countMode} asks.
+   */
+  Result<PeopleResponseDto> createSnapshot(String taskId, FilterCriteriaDto filterCriteria, String sortBy, String sortOrder, Integer page, Integer pageSize, CountMode countMode, List<String> facets, CallContext context);
+
+  Result<PeopleResponseDto> getSnapshotPage(String taskId, Integer page, Integer pageSize, CallContext context);
+}
@@ -2,11 +2,16 @@ package ru.ifmo.soa.peopleservice.ejb.remote;
 
 import jakarta.ejb.Remote;
 import ru.ifmo.soa.peopleservice.dto.PersonDto;
+import ru.ifmo.soa.peopleservice.util.CallContext;
 import ru.ifmo.soa.peopleservice.util.Result;
 
 import java.util.Map;
 
 @Remote
 public interface UpdatePersonRemote {
-  Result<PersonDto> updatePerson(Long id, Map<String, Object> updates);
+  /**
+   * @param expectedVersion the version the client last saw (from {@code If-Match}), or {@code null} to update
+   *                        whatever is current
+   */
+  Result<PersonDto> updatePerson(Long id, Map<String, Object> updates, Long expectedVersion, CallContext context);
 }
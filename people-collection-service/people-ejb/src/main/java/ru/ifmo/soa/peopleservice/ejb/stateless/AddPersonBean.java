@@ -3,6 +3,7 @@ package ru.ifmo.soa.peopleservice.ejb.stateless;
 import jakarta.ejb.Stateless;
 import jakarta.inject.Inject;
 import jakarta.transaction.Transactional;
+import ru.ifmo.soa.peopleservice.cluster.ClusterEventPublisher;
 import ru.ifmo.soa.peopleservice.dto.PersonDto;
 import ru.ifmo.soa.peopleservice.dto.PersonInputDto;
 import ru.ifmo.soa.peopleservice.ejb.remote.AddPersonRemote;
@@ -12,7 +13,12 @@ import ru.ifmo.soa.peopleservice.entities.HairColor;
 import ru.ifmo.soa.peopleservice.entities.Person;
 import ru.ifmo.soa.peopleservice.exceptions.*;
 import ru.ifmo.soa.peopleservice.mapper.PersonMapper;
+import ru.ifmo.soa.peopleservice.repository.ChangeLogRepository;
+import ru.ifmo.soa.peopleservice.repository.EnumCountsRepository;
 import ru.ifmo.soa.peopleservice.repository.PersonRepository;
+import ru.ifmo.soa.peopleservice.repository.QueryDeadline;
+import ru.ifmo.soa.peopleservice.repository.ReadRouting;
+import ru.ifmo.soa.peopleservice.util.CallContext;
 import ru.ifmo.soa.peopleservice.util.Result;
 
 import java.time.OffsetDateTime;
@@ -22,11 +28,17 @@ import java.time.OffsetDateTime;
 public class AddPersonBean implements AddPersonRemote {
 
   @Inject private PersonRepository repository;
+  @Inject private QueryDeadline deadline;
+  @Inject private ReadRouting routing;
   @Inject private PersonMapper mapper;
+  @Inject private EnumCountsRepository counts;
+  @Inject private ChangeLogRepository changes;
+  @Inject private ClusterEventPublisher events;
 
   @Override
-  public Result<PersonDto> addPerson(PersonInputDto personInput) {
+  public Result<PersonDto> addPerson(PersonInputDto personInput, CallContext context) {
     try {
+      deadline.start(context);
       validatePersonInput(personInput);
       if (repository.isStorageFull()) {
         throw new InsufficientStorageException("Server storage capacity exceeded");
@@ -37,9 +49,13 @@ public class AddPersonBean implements AddPersonRemote {
       }
       entity.setCreationDate(OffsetDateTime.now());
       repository.save(entity);
+      counts.added(entity);
+      changes.created(entity);
+      routing.wrote(context);
+      events.created(entity);
       return new Result.Success<>(mapper.toDto(entity));
     } catch (Exception e) {
-      return new Result.Error<>(e);
+      return new Result.Error<>(deadline.translate(e));
     }
   }
 
@@ -3,35 +3,50 @@ package ru.ifmo.soa.peopleservice.ejb.stateless;
 import jakarta.ejb.Stateless;
 import jakarta.inject.Inject;
 import jakarta.transaction.Transactional;
+import ru.ifmo.soa.peopleservice.cluster.ClusterEventPublisher;
 import ru.ifmo.soa.peopleservice.ejb.remote.DeletePeopleByNationalityRemote;
 import ru.ifmo.soa.peopleservice.entities.Country;
 import ru.ifmo.soa.peopleservice.exceptions.BadRequestException;
 import ru.ifmo.soa.peopleservice.exceptions.NotFoundException;
+import ru.ifmo.soa.peopleservice.repository.EnumCountsRepository;
 import ru.ifmo.soa.peopleservice.repository.PersonRepository;
+import ru.ifmo.soa.peopleservice.repository.QueryDeadline;
+import ru.ifmo.soa.peopleservice.repository.ReadRouting;
+import ru.ifmo.soa.peopleservice.util.CallContext;
 import ru.ifmo.soa.peopleservice.util.Result;
 
+import java.util.List;
+
 @Stateless
 @Transactional
 public class DeletePeopleByNationalityBean implements DeletePeopleByNationalityRemote {
 
   @Inject private PersonRepository repository;
+  @Inject private QueryDeadline deadline;
+  @Inject private ReadRouting routing;
+  @Inject private EnumCountsRepository counts;
+  @Inject private ClusterEventPublisher events;
 
   @Override
-  public Result<Void> deletePeopleByNationality(String nationality) {
+  public Result<Void> deletePeopleByNationality(String nationality, CallContext context) {
     try {
+      deadline.start(context);
       try {
         Country country = Country.valueOf(nationality);
-        int deleted = repository.deleteByNationality(country);
-        if (deleted == 0) {
+        List<EnumCountsRepository.Removed> deleted = repository.deleteByNationality(country);
+        if (deleted.isEmpty()) {
           throw new NotFoundException("No people found with the specified nationality");
         }
+        counts.removed(deleted);
+        routing.wrote(context);
+        events.nationalityDeleted(country);
       } catch (IllegalArgumentException e) {
         throw new BadRequestException("Provided nationality parameter is invalid");
       }
 
       return new Result.Success<>(null);
     } catch (Exception e) {
-      return new Result.Error<>(e);
+      return new Result.Error<>(deadline.translate(e));
     }
   }
 }
@@ -3,9 +3,15 @@ package ru.ifmo.soa.peopleservice.ejb.stateless;
 import jakarta.ejb.Stateless;
 import jakarta.inject.Inject;
 import jakarta.transaction.Transactional;
+import ru.ifmo.soa.peopleservice.cluster.ClusterEventPublisher;
 import ru.ifmo.soa.peopleservice.ejb.remote.DeletePersonRemote;
 import ru.ifmo.soa.peopleservice.exceptions.BadRequestException;
+import ru.ifmo.soa.peopleservice.repository.ChangeLogRepository;
+import ru.ifmo.soa.peopleservice.repository.EnumCountsRepository;
 import ru.ifmo.soa.peopleservice.repository.PersonRepository;
+import ru.ifmo.soa.peopleservice.repository.QueryDeadline;
+import ru.ifmo.soa.peopleservice.repository.ReadRouting;
+import ru.ifmo.soa.peopleservice.util.CallContext;
 import ru.ifmo.soa.peopleservice.util.Result;
 
 @Stateless
@@ -13,19 +19,29 @@ import ru.ifmo.soa.peopleservice.util.Result;
 public class DeletePersonBean implements DeletePersonRemote {
 
   @Inject private PersonRepository repository;
+  @Inject private QueryDeadline deadline;
+  @Inject private ReadRouting routing;
+  @Inject private EnumCountsRepository counts;
+  @Inject private ChangeLogRepository changes;
+  @Inject private ClusterEventPublisher events;
 
   @Override
-  public Result<Void> deletePerson(Long id) {
+  public Result<Void> deletePerson(Long id, CallContext context) {
     try {
+      deadline.start(context);
       if (id == null || id <= 0) {
         throw new BadRequestException("Provided ID parameter is invalid");
       }
       var person = repository.findById(id);
       repository.delete(person);
+      counts.removed(person);
+      changes.deleted(id);
+      routing.wrote(context);
+      events.deleted(id);
 
       return new Result.Success<>(null);
     } catch (Exception e) {
-      return new Result.Error<>(e);
+      return new Result.Error<>(deadline.translate(e));
     }
   }
 }
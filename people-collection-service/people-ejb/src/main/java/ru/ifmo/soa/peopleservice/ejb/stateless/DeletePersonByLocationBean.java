@@ -3,10 +3,17 @@ package ru.ifmo.soa.peopleservice.ejb.stateless;
 import jakarta.ejb.Stateless;
 import jakarta.inject.Inject;
 import jakarta.transaction.Transactional;
+import ru.ifmo.soa.peopleservice.cluster.ClusterEventPublisher;
 import ru.ifmo.soa.peopleservice.ejb.remote.DeletePersonByLocationRemote;
 import ru.ifmo.soa.peopleservice.entities.Location;
+import ru.ifmo.soa.peopleservice.entities.Person;
 import ru.ifmo.soa.peopleservice.exceptions.NotFoundException;
+import ru.ifmo.soa.peopleservice.repository.ChangeLogRepository;
+import ru.ifmo.soa.peopleservice.repository.EnumCountsRepository;
 import ru.ifmo.soa.peopleservice.repository.PersonRepository;
+import ru.ifmo.soa.peopleservice.repository.QueryDeadline;
+import ru.ifmo.soa.peopleservice.repository.ReadRouting;
+import ru.ifmo.soa.peopleservice.util.CallContext;
 import ru.ifmo.soa.peopleservice.util.Result;
 
 @Stateless
@@ -14,18 +21,28 @@ import ru.ifmo.soa.peopleservice.util.Result;
 public class DeletePersonByLocationBean implements DeletePersonByLocationRemote {
 
   @Inject private PersonRepository repository;
+  @Inject private QueryDeadline deadline;
+  @Inject private ReadRouting routing;
+  @Inject private EnumCountsRepository counts;
+  @Inject private ChangeLogRepository changes;
+  @Inject private ClusterEventPublisher events;
 
   @Override
-  public Result<Void> deletePersonByLocation(Location location) {
+  public Result<Void> deletePersonByLocation(Location location, CallContext context) {
     try {
-      int deleted = repository.deleteByLocation(location);
-      if (deleted == 0) {
+      deadline.start(context);
+      Person deleted = repository.deleteByLocation(location);
+      if (deleted == null) {
         throw new NotFoundException("No person found with the specified location");
       }
+      counts.removed(deleted);
+      changes.deleted(deleted.getId());
+      routing.wrote(context);
+      events.deleted(deleted.getId());
 
       return new Result.Success<>(null);
     } catch (Exception e) {
-      return new Result.Error<>(e);
+      return new Result.Error<>(deadline.translate(e));
     }
   }
 }
@@ -6,11 +6,14 @@ import jakarta.transaction.Transactional;
 import ru.ifmo.soa.peopleservice.dto.PeopleResponseDto;
 import ru.ifmo.soa.peopleservice.dto.PersonDto;
 import ru.ifmo.soa.peopleservice.ejb.remote.GetAllPeopleRemote;
-import ru.ifmo.soa.peopleservice.entities.Person;
 import ru.ifmo.soa.peopleservice.exceptions.BadRequestException;
 import ru.ifmo.soa.peopleservice.exceptions.SemanticException;
-import ru.ifmo.soa.peopleservice.mapper.PersonMapper;
 import ru.ifmo.soa.peopleservice.repository.PersonRepository;
+import ru.ifmo.soa.peopleservice.repository.QueryDeadline;
+import ru.ifmo.soa.peopleservice.repository.ReadRouting;
+import ru.ifmo.soa.peopleservice.repository.TotalCount;
+import ru.ifmo.soa.peopleservice.util.CallContext;
+import ru.ifmo.soa.peopleservice.util.CountMode;
 import ru.ifmo.soa.peopleservice.util.PathResolver;
 import ru.ifmo.soa.peopleservice.util.Result;
 
@@ -28,11 +31,13 @@ public class GetAllPeopleBean implements GetAllPeopleRemote {
   );
 
   @Inject private PersonRepository repository;
-  @Inject private PersonMapper mapper;
+  @Inject private QueryDeadline deadline;
+  @Inject private ReadRouting routing;
 
   @Override
-  public Result<PeopleResponseDto> getAllPeople(String sortBy, String sortOrder, Integer page, Integer pageSize) {
+  public Result<PeopleResponseDto> getAllPeople(String sortBy, String sortOrder, Integer page, Integer pageSize, CountMode countMode, CallContext context) {
     try {
+      routing.startReadOnly(context);
       if (sortBy != null && !ALLOWED_SORT_FIELDS.contains(sortBy)) {
         throw new BadRequestException("Invalid sortBy field: " + sortBy);
       }
@@ -40,14 +45,18 @@ public class GetAllPeopleBean implements GetAllPeopleRemote {
       if (page < 0) throw new SemanticException("Page number cannot be negative");
 
       PathResolver.SortInfo sortInfo = new PathResolver.SortInfo(sortBy, sortOrder);
-      List<Person> people = repository.findAll(page, pageSize, sortInfo);
-      long totalCount = repository.countAll();
-      int totalPages = (int) Math.ceil((double) totalCount / pageSize);
-      List<PersonDto> dtos = mapper.toDtoList(people);
-
-      return new Result.Success<>(new PeopleResponseDto(dtos, page, pageSize, totalPages, totalCount));
+      List<PersonDto> dtos = repository.findAll(page, pageSize, sortInfo);
+      TotalCount total = repository.count(null, countMode);
+
+      PeopleResponseDto response = new PeopleResponseDto(dtos, page, pageSize, null, null);
+      if (total != null) {
+        response.setTotalCount(total.value());
+        response.setTotalPages((int) Math.ceil((double) total.value() / pageSize));
+        response.setTotalCountApproximate(total.approximate());
+      }
+      return new Result.Success<>(response);
     } catch (Exception e) {
-      return new Result.Error<>(e);
+      return new Result.Error<>(deadline.translate(e));
     }
   }
 }
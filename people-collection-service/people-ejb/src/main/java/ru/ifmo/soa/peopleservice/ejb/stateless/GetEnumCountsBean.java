@@ -0,0 +1,50 @@
+package ru.ifmo.soa.peopleservice.ejb.stateless;
+
+import jakarta.ejb.Stateless;
+import jakarta.inject.Inject;
+import jakarta.transaction.Transactional;
+import ru.ifmo.soa.peopleservice.dto.EnumCountsDto;
+import ru.ifmo.soa.peopleservice.ejb.remote.GetEnumCountsRemote;
+import ru.ifmo.soa.peopleservice.entities.Country;
+import ru.ifmo.soa.peopleservice.entities.EyeColor;
+import ru.ifmo.soa.peopleservice.entities.HairColor;
+import ru.ifmo.soa.peopleservice.repository.EnumCountsRepository;
+import ru.ifmo.soa.peopleservice.repository.QueryDeadline;
+import ru.ifmo.soa.peopleservice.util.CallContext;
+import ru.ifmo.soa.peopleservice.util.Result;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+@Stateless
+@Transactional
+public class GetEnumCountsBean implements GetEnumCountsRemote {
+
+  @Inject private EnumCountsRepository repository;
+  @Inject private QueryDeadline deadline;
+
+  @Override
+  public Result<EnumCountsDto> getEnumCounts(CallContext context) {
+    try {
+      deadline.start(context);
+      Map<String, Map<String, Long>> counts = repository.findAll();
+      long total = counts.getOrDefault(EnumCountsRepository.TOTAL, Map.of()).getOrDefault("", 0L);
+      return new Result.Success<>(new EnumCountsDto(
+        total,
+        byValue(EyeColor.values(), counts.get(EnumCountsRepository.EYE_COLOR)),
+        byValue(HairColor.values(), counts.get(EnumCountsRepository.HAIR_COLOR)),
+        byValue(Country.values(), counts.get(EnumCountsRepository.NATIONALITY))
+      ));
+    } catch (Exception e) {
+      return new Result.Error<>(deadline.translate(e));
+    }
+  }
+
+  private static Map<String, Long> byValue(Enum<?>[] values, Map<String, Long> counts) {
+    Map<String, Long> result = new LinkedHashMap<>();
+    for (Enum<?> value : values) {
+      result.put(value.name(), counts == null ? 0L : counts.getOrDefault(value.name(), 0L));
+    }
+    return result;
+  }
+}
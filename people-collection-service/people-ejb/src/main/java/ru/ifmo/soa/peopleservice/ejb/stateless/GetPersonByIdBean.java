@@ -8,6 +8,9 @@ import ru.ifmo.soa.peopleservice.ejb.remote.GetPersonByIdRemote;
 import ru.ifmo.soa.peopleservice.exceptions.BadRequestException;
 import ru.ifmo.soa.peopleservice.mapper.PersonMapper;
 import ru.ifmo.soa.peopleservice.repository.PersonRepository;
+import ru.ifmo.soa.peopleservice.repository.QueryDeadline;
+import ru.ifmo.soa.peopleservice.repository.ReadRouting;
+import ru.ifmo.soa.peopleservice.util.CallContext;
 import ru.ifmo.soa.peopleservice.util.Result;
 
 @Stateless
@@ -15,11 +18,14 @@ import ru.ifmo.soa.peopleservice.util.Result;
 public class GetPersonByIdBean implements GetPersonByIdRemote {
 
   @Inject private PersonRepository repository;
+  @Inject private QueryDeadline deadline;
+  @Inject private ReadRouting routing;
   @Inject private PersonMapper mapper;
 
   @Override
-  public Result<PersonDto> getPersonById(Long id) {
+  public Result<PersonDto> getPersonById(Long id, CallContext context) {
     try {
+      routing.startReadOnly(context);
       if (id == null || id <= 0) {
         throw new BadRequestException("Provided ID parameter is invalid");
       }
@@ -27,7 +33,7 @@ public class GetPersonByIdBean implements GetPersonByIdRemote {
 
       return new Result.Success<>(mapper.toDto(person));
     } catch (Exception e) {
-      return new Result.Error<>(e);
+      return new Result.Error<>(deadline.translate(e));
     }
   }
 }
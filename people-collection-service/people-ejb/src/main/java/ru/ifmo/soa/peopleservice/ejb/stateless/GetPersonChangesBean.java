@@ -0,0 +1,75 @@
+package ru.ifmo.soa.peopleservice.ejb.stateless;
+
+import jakarta.ejb.Schedule;
+import jakarta.ejb.Stateless;
+import jakarta.inject.Inject;
+import jakarta.transaction.Transactional;
+import ru.ifmo.soa.peopleservice.dto.PersonChangesDto;
+import ru.ifmo.soa.peopleservice.ejb.remote.GetPersonChangesRemote;
+import ru.ifmo.soa.peopleservice.exceptions.BadRequestException;
+import ru.ifmo.soa.peopleservice.repository.ChangeLogRepository;
+import ru.ifmo.soa.peopleservice.repository.QueryDeadline;
+import ru.ifmo.soa.peopleservice.repository.Shards;
+import ru.ifmo.soa.peopleservice.util.CallContext;
+import ru.ifmo.soa.peopleservice.util.Result;
+
+import java.util.logging.Logger;
+
+/**
+ * Pages through the change log. Reads always go to the primary: the log is only complete up to the oldest
+ * transaction still running there.
+ */
+@Stateless
+@Transactional
+public class GetPersonChangesBean implements GetPersonChangesRemote {
+
+  private static final Logger LOG = Logger.getLogger(GetPersonChangesBean.class.getName());
+  private static final int MAX_LIMIT = Integer.getInteger("people.changes.max-limit", 1000);
+  private static final long RETENTION_SECONDS = Long.getLong("people.changes.retention-seconds", 7 * 24 * 3600);
+  /** {@code since} for a client that wants only changes from now on. */
+  private static final String NOW = "now";
+
+  @Inject private ChangeLogRepository changes;
+  @Inject private QueryDeadline deadline;
+
+  @Override
+  public Result<PersonChangesDto> getChanges(String since, Integer limit, CallContext context) {
+    try {
+      deadline.start(context);
+      if (limit == null || limit <= 0 || limit > MAX_LIMIT) {
+        throw new BadRequestException("Limit must be between 1 and " + MAX_LIMIT);
+      }
+      // only a token the client brings can have been pruned away; without one, read what is kept
+      ChangeLogRepository.Page page;
+      if (since == null || since.isBlank()) {
+        page = changes.readFromStart(limit);
+      } else if (NOW.equals(since.strip())) {
+        page = changes.readFromEnd();
+      } else {
+        page = changes.read(ChangeLogRepository.Position.parse(since.strip()), limit);
+      }
+      return new Result.Success<>(new PersonChangesDto(page.changes(), page.next().toString(), page.hasMore()));
+    } catch (Exception e) {
+      return new Result.Error<>(deadline.translate(e));
+    }
+  }
+
+  @Schedule(minute = "*/10", hour = "*", persistent = false)
+  public void pruneChanges() {
+    int deleted = changes.prune(RETENTION_SECONDS);
+    if (deleted > 0) {
+      LOG.fine("Pruned " + deleted + " change log entries");
+    }
+  }
+
+  /**
+   * With shards, moves the entries written on the shards into the log (see {@link ChangeLogRepository#relay}).
+   * Every node does this; a node that copies entries another node has just copied changes nothing.
+   */
+  @Schedule(second = "*", minute = "*", hour = "*", persistent = false)
+  public void relayShardChanges() {
+    for (int shard = 0; shard < Shards.locations().size(); shard++) {
+      changes.relay(shard);
+    }
+  }
+}
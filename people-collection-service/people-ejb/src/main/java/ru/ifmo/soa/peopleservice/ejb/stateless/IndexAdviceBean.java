@@ -0,0 +1,31 @@
+package ru.ifmo.soa.peopleservice.ejb.stateless;
+
+import jakarta.ejb.Stateless;
+import jakarta.inject.Inject;
+import jakarta.transaction.Transactional;
+import ru.ifmo.soa.peopleservice.dto.IndexAdviceDto;
+import ru.ifmo.soa.peopleservice.ejb.remote.IndexAdviceRemote;
+import ru.ifmo.soa.peopleservice.repository.IndexAdvisor;
+import ru.ifmo.soa.peopleservice.repository.QueryDeadline;
+import ru.ifmo.soa.peopleservice.util.CallContext;
+import ru.ifmo.soa.peopleservice.util.Result;
+
+import java.util.List;
+
+@Stateless
+@Transactional
+public class IndexAdviceBean implements IndexAdviceRemote {
+
+  @Inject private IndexAdvisor advisor;
+  @Inject private QueryDeadline deadline;
+
+  @Override
+  public Result<List<IndexAdviceDto>> getIndexAdvice(CallContext context) {
+    try {
+      deadline.start(context);
+      return new Result.Success<>(advisor.advise());
+    } catch (Exception e) {
+      return new Result.Error<>(deadline.translate(e));
+    }
+  }
+}
@@ -0,0 +1,63 @@
+package ru.ifmo.soa.peopleservice.ejb.stateless;
+
+import jakarta.ejb.Schedule;
+import jakarta.ejb.Stateless;
+import jakarta.inject.Inject;
+import jakarta.transaction.Transactional;
+import ru.ifmo.soa.peopleservice.dto.RateLimitLeaseDto;
+import ru.ifmo.soa.peopleservice.ejb.remote.RateLimitLeaseRemote;
+import ru.ifmo.soa.peopleservice.exceptions.BadRequestException;
+import ru.ifmo.soa.peopleservice.repository.RateLimitRepository;
+import ru.ifmo.soa.peopleservice.util.Result;
+
+import java.util.logging.Logger;
+
+/**
+ * Hands out batches of tokens from the bucket shared by all people-web instances.
+ * Nodes spend a lease locally and come back only when it runs out.
+ */
+@Stateless
+@Transactional
+public class RateLimitLeaseBean implements RateLimitLeaseRemote {
+
+  private static final Logger LOG = Logger.getLogger(RateLimitLeaseBean.class.getName());
+  private static final long IDLE_BUCKET_SECONDS = 600;
+
+  @Inject private RateLimitRepository repository;
+
+  @Override
+  public Result<RateLimitLeaseDto> acquire(String clientKey, long minimum, long desired, long capacity, long refillPerMinute) {
+    try {
+      if (clientKey == null || clientKey.isEmpty()) {
+        throw new BadRequestException("Client key is required");
+      }
+      if (minimum <= 0 || desired < minimum || capacity <= 0 || refillPerMinute <= 0) {
+        throw new BadRequestException("Invalid lease parameters");
+      }
+      double tokensPerSecond = refillPerMinute / 60.0;
+      double available = repository.refill(clientKey, capacity, tokensPerSecond);
+      long granted = available >= minimum ? Math.min(desired, (long) Math.floor(available)) : 0;
+      if (granted > 0) {
+        repository.consume(clientKey, granted);
+      }
+      double left = available - granted;
+      long secondsToRefill = granted > 0 ? 0 : secondsUntil(minimum - left, tokensPerSecond);
+      long secondsToReset = secondsUntil(capacity - left, tokensPerSecond);
+      return new Result.Success<>(new RateLimitLeaseDto(granted, (long) Math.floor(left), secondsToRefill, secondsToReset));
+    } catch (Exception e) {
+      return new Result.Error<>(e);
+    }
+  }
+
+  @Schedule(minute = "*/5", hour = "*", persistent = false)
+  public void deleteIdleBuckets() {
+    int deleted = repository.deleteIdle(IDLE_BUCKET_SECONDS);
+    if (deleted > 0) {
+      LOG.fine("Deleted " + deleted + " idle rate limit buckets");
+    }
+  }
+
+  private static long secondsUntil(double missingTokens, double tokensPerSecond) {
+    return missingTokens <= 0 ? 0 : (long) Math.ceil(missingTokens / tokensPerSecond);
+  }
+}
@@ -7,11 +7,16 @@ import ru.ifmo.soa.peopleservice.dto.PeopleResponseDto;
 import ru.ifmo.soa.peopleservice.dto.FilterCriteriaDto;
 import ru.ifmo.soa.peopleservice.dto.PersonDto;
 import ru.ifmo.soa.peopleservice.ejb.remote.SearchPeopleRemote;
-import ru.ifmo.soa.peopleservice.entities.Person;
 import ru.ifmo.soa.peopleservice.exceptions.BadRequestException;
 import ru.ifmo.soa.peopleservice.exceptions.SemanticException;
-import ru.ifmo.soa.peopleservice.mapper.PersonMapper;
+import ru.ifmo.soa.peopleservice.repository.IndexAdvisor;
 import ru.ifmo.soa.peopleservice.repository.PersonRepository;
+import ru.ifmo.soa.peopleservice.repository.QueryCostGuard;
+import ru.ifmo.soa.peopleservice.repository.QueryDeadline;
+import ru.ifmo.soa.peopleservice.repository.ReadRouting;
+import ru.ifmo.soa.peopleservice.repository.TotalCount;
+import ru.ifmo.soa.peopleservice.util.CallContext;
+import ru.ifmo.soa.peopleservice.util.CountMode;
 import ru.ifmo.soa.peopleservice.util.PathResolver;
 import ru.ifmo.soa.peopleservice.util.Result;
 
@@ -22,32 +27,54 @@ import java.util.Set;
 @Transactional
 public class SearchPeopleBean implements SearchPeopleRemote {
 
-  private static final Set<String> ALLOWED_SORT_FIELDS = Set.of(
+  static final Set<String> ALLOWED_SORT_FIELDS = Set.of(
     "id", "name", "creationDate", "coordinates.x", "coordinates.y",
     "height", "eyeColor", "hairColor", "nationality",
     "location.x", "location.y", "location.z", "location.name"
   );
 
+  static final Set<String> ALLOWED_FACETS = Set.of("eyeColor", "hairColor", "nationality");
+
   @Inject private PersonRepository repository;
-  @Inject private PersonMapper mapper;
+  @Inject private QueryDeadline deadline;
+  @Inject private ReadRouting routing;
+  @Inject private QueryCostGuard costGuard;
+  @Inject private IndexAdvisor indexAdvisor;
 
   @Override
-  public Result<PeopleResponseDto> searchPeople(FilterCriteriaDto filterCriteria, String sortBy, String sortOrder, Integer page, Integer pageSize) {
+  public Result<PeopleResponseDto> searchPeople(FilterCriteriaDto filterCriteria, String sortBy, String sortOrder, Integer page, Integer pageSize, CountMode countMode, List<String> facets, CallContext context) {
     try {
+      routing.startReadOnly(context);
       if (sortBy != null && !ALLOWED_SORT_FIELDS.contains(sortBy)) {
         throw new BadRequestException("Invalid sortBy field: " + sortBy);
       }
       if (pageSize < 0) throw new SemanticException("Page size cannot be negative");
       if (page < 0) throw new SemanticException("Page number cannot be negative");
+      if (facets != null) {
+        for (String facet : facets) {
+          if (!ALLOWED_FACETS.contains(facet)) {
+            throw new BadRequestException("Invalid facet: " + facet);
+          }
+        }
+      }
 
       PathResolver.SortInfo sortInfo = new PathResolver.SortInfo(sortBy, sortOrder);
-      List<Person> people = repository.findWithFilters(filterCriteria, page, pageSize, sortInfo);
-      long totalCount = repository.countWithFilters(filterCriteria);
-      int totalPages = pageSize == 0 ? 0 : (int) Math.ceil((double) totalCount / pageSize);
-      List<PersonDto> dtos = mapper.toDtoList(people);
-      return new Result.Success<>(new PeopleResponseDto(dtos, page, pageSize, totalPages, totalCount));
+      indexAdvisor.record(filterCriteria, sortInfo);
+      QueryCostGuard.Verdict verdict = costGuard.check(filterCriteria, sortInfo, page, pageSize);
+      List<PersonDto> dtos = repository.findWithFilters(filterCriteria, page, pageSize, sortInfo);
+      TotalCount total = repository.count(filterCriteria, verdict.countMode(countMode));
+      PeopleResponseDto response = new PeopleResponseDto(dtos, page, pageSize, null, null);
+      if (total != null) {
+        response.setTotalCount(total.value());
+        response.setTotalPages(pageSize == 0 ? 0 : (int) Math.ceil((double) total.value() / pageSize));
+        response.setTotalCountApproximate(total.approximate());
+      }
+      if (facets != null && !facets.isEmpty()) {
+        response.setFacets(repository.countFacets(filterCriteria, facets.stream().distinct().toList()));
+      }
+      return new Result.Success<>(response);
     } catch (Exception e) {
-      return new Result.Error<>(e);
+      return new Result.Error<>(deadline.translate(e));
     }
   }
 }
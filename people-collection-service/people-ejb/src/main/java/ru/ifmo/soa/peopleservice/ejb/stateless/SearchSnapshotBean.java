@@ -0,0 +1,131 @@
+package ru.ifmo.soa.peopleservice.ejb.stateless;
+
+import jakarta.ejb.Schedule;
+import jakarta.ejb.Stateless;
+import jakarta.inject.Inject;
+import jakarta.transaction.Transactional;
+import ru.ifmo.soa.peopleservice.dto.FilterCriteriaDto;
+import ru.ifmo.soa.peopleservice.dto.PeopleResponseDto;
+import ru.ifmo.soa.peopleservice.ejb.remote.SearchSnapshotRemote;
+import ru.ifmo.soa.peopleservice.exceptions.BadRequestException;
+import ru.ifmo.soa.peopleservice.exceptions.SemanticException;
+import ru.ifmo.soa.peopleservice.repository.IndexAdvisor;
+import ru.ifmo.soa.peopleservice.repository.PersonRepository;
+import ru.ifmo.soa.peopleservice.repository.QueryCostGuard;
+import ru.ifmo.soa.peopleservice.repository.QueryDeadline;
+import ru.ifmo.soa.peopleservice.repository.SearchSnapshotRepository;
+import ru.ifmo.soa.peopleservice.repository.TotalCount;
+import ru.ifmo.soa.peopleservice.util.CallContext;
+import ru.ifmo.soa.peopleservice.util.CountMode;
+import ru.ifmo.soa.peopleservice.util.PathResolver;
+import ru.ifmo.soa.peopleservice.util.Result;
+
+import java.util.List;
+import java.util.logging.Logger;
+
+/**
+ * Result snapshots of async searches. The filter runs once, selecting ids only; pages are then read by
+ * position from the snapshot. Both go to the primary, which holds the snapshots.
+ * <p>
+ * A snapshot holds at most {@code people.search.snapshot.max-rows} ids, and only those up to the end of the
+ * requested page when reading them all is above the search cost budget ({@link QueryCostGuard}). A snapshot
+ * cut short is flagged with {@code totalCountApproximate}: its pages then give the number of ids kept, a lower
+ * bound of the matches, while the first page, sent to the callback, counts the matches as {@code countMode}
+ * asks.
+ */
+@Stateless
+@Transactional
+public class SearchSnapshotBean implements SearchSnapshotRemote {
+
+  private static final Logger LOG = Logger.getLogger(SearchSnapshotBean.class.getName());
+  private static final int MAX_ROWS = Integer.getInteger("people.search.snapshot.max-rows", 100000);
+  private static final long TTL_SECONDS = Long.getLong("people.search.snapshot.ttl-seconds", 300);
+  private static final int MAX_PAGE_SIZE = Integer.getInteger("people.search.snapshot.max-page-size", 1000);
+
+  @Inject private PersonRepository repository;
+  @Inject private SearchSnapshotRepository snapshots;
+  @Inject private QueryDeadline deadline;
+  @Inject private IndexAdvisor indexAdvisor;
+  @Inject private QueryCostGuard costGuard;
+
+  @Override
+  public Result<PeopleResponseDto> createSnapshot(String taskId, FilterCriteriaDto filterCriteria, String sortBy, String sortOrder,
+                                                  Integer page, Integer pageSize, CountMode countMode, List<String> facets,
+                                                  CallContext context) {
+    try {
+      deadline.start(context);
+      if (sortBy != null && !SearchPeopleBean.ALLOWED_SORT_FIELDS.contains(sortBy)) {
+        throw new BadRequestException("Invalid sortBy field: " + sortBy);
+      }
+      validatePage(page, pageSize);
+      if (facets != null) {
+        for (String facet : facets) {
+          if (!SearchPeopleBean.ALLOWED_FACETS.contains(facet)) {
+            throw new BadRequestException("Invalid facet: " + facet);
+          }
+        }
+      }
+
+      PathResolver.SortInfo sortInfo = new PathResolver.SortInfo(sortBy, sortOrder);
+      indexAdvisor.record(filterCriteria, sortInfo);
+      int maxRows = costGuard.snapshotRows(filterCriteria, sortInfo, page, pageSize, MAX_ROWS);
+      List<Long> ids = repository.findIdsWithFilters(filterCriteria, sortInfo, maxRows + 1);
+      boolean truncated = ids.size() > maxRows;
+      snapshots.create(taskId, truncated ? ids.subList(0, maxRows) : ids, truncated, TTL_SECONDS);
+      PeopleResponseDto response = page(taskId, page, pageSize);
+      if (countMode == CountMode.NONE) {
+        response.setTotalCount(null);
+        response.setTotalPages(null);
+        response.setTotalCountApproximate(null);
+      } else if (truncated) {
+        // a snapshot cut short only bounds the total from below; an exact count is downgraded like a costly search
+        TotalCount total = repository.count(filterCriteria, maxRows < MAX_ROWS && countMode == CountMode.EXACT ? CountMode.ESTIMATE : countMode);
+        response.setTotalCount(total.value());
+        response.setTotalPages(pageSize == 0 ? 0 : (int) Math.ceil((double) total.value() / pageSize));
+        response.setTotalCountApproximate(total.approximate());
+      }
+      if (facets != null && !facets.isEmpty()) {
+        response.setFacets(repository.countFacets(filterCriteria, facets.stream().distinct().toList()));
+      }
+      return new Result.Success<>(response);
+    } catch (Exception e) {
+      return new Result.Error<>(deadline.translate(e));
+    }
+  }
+
+  @Override
+  public Result<PeopleResponseDto> getSnapshotPage(String taskId, Integer page, Integer pageSize, CallContext context) {
+    try {
+      deadline.start(context);
+      if (taskId == null || taskId.isBlank()) {
+        throw new BadRequestException("Task id is required");
+      }
+      validatePage(page, pageSize);
+      if (pageSize > MAX_PAGE_SIZE) throw new SemanticException("Page size cannot exceed " + MAX_PAGE_SIZE);
+      return new Result.Success<>(page(taskId, page, pageSize));
+    } catch (Exception e) {
+      return new Result.Error<>(deadline.translate(e));
+    }
+  }
+
+  @Schedule(minute = "*", hour = "*", persistent = false)
+  public void deleteExpiredSnapshots() {
+    int deleted = snapshots.deleteExpired(TTL_SECONDS);
+    if (deleted > 0) {
+      LOG.fine("Deleted " + deleted + " expired search snapshots");
+    }
+  }
+
+  private PeopleResponseDto page(String taskId, int page, int pageSize) {
+    SearchSnapshotRepository.Page snapshot = snapshots.page(taskId, page, pageSize);
+    PeopleResponseDto response = new PeopleResponseDto(repository.findByIds(snapshot.ids()), page, pageSize,
+      pageSize == 0 ? 0 : (int) Math.ceil((double) snapshot.total() / pageSize), snapshot.total());
+    response.setTotalCountApproximate(snapshot.truncated());
+    return response;
+  }
+
+  private static void validatePage(Integer page, Integer pageSize) {
+    if (page == null || page < 0) throw new SemanticException("Page number cannot be negative");
+    if (pageSize == null || pageSize < 0) throw new SemanticException("Page size cannot be negative");
+  }
+}
@@ -2,13 +2,21 @@ package ru.ifmo.soa.peopleservice.ejb.stateless;
 
 import jakarta.ejb.Stateless;
 import jakarta.inject.Inject;
+import jakarta.persistence.OptimisticLockException;
 import jakarta.transaction.Transactional;
+import ru.ifmo.soa.peopleservice.cluster.ClusterEventPublisher;
 import ru.ifmo.soa.peopleservice.dto.PersonDto;
 import ru.ifmo.soa.peopleservice.ejb.remote.UpdatePersonRemote;
 import ru.ifmo.soa.peopleservice.entities.*;
 import ru.ifmo.soa.peopleservice.exceptions.*;
 import ru.ifmo.soa.peopleservice.mapper.PersonMapper;
+import ru.ifmo.soa.peopleservice.repository.ChangeLogRepository;
+import ru.ifmo.soa.peopleservice.repository.EnumCountsRepository;
+import ru.ifmo.soa.peopleservice.repository.EnumValues;
 import ru.ifmo.soa.peopleservice.repository.PersonRepository;
+import ru.ifmo.soa.peopleservice.repository.QueryDeadline;
+import ru.ifmo.soa.peopleservice.repository.ReadRouting;
+import ru.ifmo.soa.peopleservice.util.CallContext;
 import ru.ifmo.soa.peopleservice.util.Result;
 
 import java.lang.reflect.Field;
@@ -19,11 +27,17 @@ import java.util.Map;
 public class UpdatePersonBean implements UpdatePersonRemote {
 
   @Inject private PersonRepository repository;
+  @Inject private QueryDeadline deadline;
+  @Inject private ReadRouting routing;
   @Inject private PersonMapper mapper;
+  @Inject private EnumCountsRepository counts;
+  @Inject private ChangeLogRepository changes;
+  @Inject private ClusterEventPublisher events;
 
   @Override
-  public Result<PersonDto> updatePerson(Long id, Map<String, Object> updates) {
+  public Result<PersonDto> updatePerson(Long id, Map<String, Object> updates, Long expectedVersion, CallContext context) {
     try {
+      deadline.start(context);
       if (id == null || id <= 0) {
         throw new BadRequestException("Invalid ID parameter");
       }
@@ -31,11 +45,24 @@ public class UpdatePersonBean implements UpdatePersonRemote {
         throw new BadRequestException("Update payload cannot be empty");
       }
       Person person = repository.findById(id);
+      if (expectedVersion != null && !expectedVersion.equals(person.getVersion())) {
+        throw new PreconditionFailedException("Person " + id + " has changed since it was read");
+      }
+      EnumValues before = EnumValues.of(person);
       applyUpdates(person, updates);
       repository.update(person);
+      counts.changed(before, person);
+      changes.updated(person);
+      routing.wrote(context);
+      events.updated(person);
       return new Result.Success<>(mapper.toDto(person));
+    } catch (OptimisticLockException e) {
+      // changed by someone else between our read and write
+      return new Result.Error<>(expectedVersion != null
+        ? new PreconditionFailedException("Person " + id + " has changed since it was read")
+        : new ConflictException("Person " + id + " was changed concurrently, retry the update"));
     } catch (Exception e) {
-      return new Result.Error<>(e);
+      return new Result.Error<>(deadline.translate(e));
     }
   }
 
@@ -48,6 +75,9 @@ public class UpdatePersonBean implements UpdatePersonRemote {
   }
 
   private void setField(Person person, String fieldName, Object value) {
+    if ("version".equals(fieldName)) {
+      throw new SemanticException("version cannot be updated; send it in If-Match instead");
+    }
     try {
       Field field = Person.class.getDeclaredField(fieldName);
       field.setAccessible(true);
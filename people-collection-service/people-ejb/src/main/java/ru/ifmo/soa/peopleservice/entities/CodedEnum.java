@@ -0,0 +1,28 @@
+package ru.ifmo.soa.peopleservice.entities;
+
+/**
+ * Enum stored as a fixed {@code smallint} code instead of its name or ordinal. Codes follow the alphabetical
+ * order of the names with gaps of 10, so comparing and sorting the codes in SQL gives the same result as the
+ * former {@code varchar} columns. A code never changes once assigned; a new constant takes a free code
+ * between its alphabetical neighbours and a migration that widens the column's check constraint.
+ */
+public interface CodedEnum {
+
+  short getCode();
+
+  /**
+   * @return the constant with {@code code}, or {@code null} for {@code null}
+   * @throws IllegalArgumentException if no constant has that code
+   */
+  static <E extends Enum<E> & CodedEnum> E fromCode(Class<E> type, Number code) {
+    if (code == null) {
+      return null;
+    }
+    for (E constant : type.getEnumConstants()) {
+      if (constant.getCode() == code.shortValue()) {
+        return constant;
+      }
+    }
+    throw new IllegalArgumentException("Unknown " + type.getSimpleName() + " code: " + code);
+  }
+}
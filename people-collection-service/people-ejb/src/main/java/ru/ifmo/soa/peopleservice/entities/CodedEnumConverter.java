@@ -0,0 +1,25 @@
+package ru.ifmo.soa.peopleservice.entities;
+
+import jakarta.persistence.AttributeConverter;
+
+/**
+ * Maps a {@link CodedEnum} to its {@code smallint} code.
+ */
+public abstract class CodedEnumConverter<E extends Enum<E> & CodedEnum> implements AttributeConverter<E, Short> {
+
+  private final Class<E> type;
+
+  protected CodedEnumConverter(Class<E> type) {
+    this.type = type;
+  }
+
+  @Override
+  public Short convertToDatabaseColumn(E value) {
+    return value == null ? null : value.getCode();
+  }
+
+  @Override
+  public E convertToEntityAttribute(Short code) {
+    return CodedEnum.fromCode(type, code);
+  }
+}
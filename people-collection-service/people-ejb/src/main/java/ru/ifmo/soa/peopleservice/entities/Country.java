@@ -1,5 +1,19 @@
 package ru.ifmo.soa.peopleservice.entities;
 
-public enum Country {
-  CHINA, INDIA, ITALY, NORTH_KOREA
+public enum Country implements CodedEnum {
+  CHINA(10),
+  INDIA(20),
+  ITALY(30),
+  NORTH_KOREA(40);
+
+  private final short code;
+
+  Country(int code) {
+    this.code = (short) code;
+  }
+
+  @Override
+  public short getCode() {
+    return code;
+  }
 }
@@ -0,0 +1,11 @@
+package ru.ifmo.soa.peopleservice.entities;
+
+import jakarta.persistence.Converter;
+
+@Converter
+public class CountryConverter extends CodedEnumConverter<Country> {
+
+  public CountryConverter() {
+    super(Country.class);
+  }
+}
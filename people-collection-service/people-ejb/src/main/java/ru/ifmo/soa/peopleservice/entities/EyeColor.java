@@ -1,5 +1,19 @@
 package ru.ifmo.soa.peopleservice.entities;
 
-public enum EyeColor {
-  RED, BLUE, YELLOW, ORANGE
+public enum EyeColor implements CodedEnum {
+  RED(30),
+  BLUE(10),
+  YELLOW(40),
+  ORANGE(20);
+
+  private final short code;
+
+  EyeColor(int code) {
+    this.code = (short) code;
+  }
+
+  @Override
+  public short getCode() {
+    return code;
+  }
 }
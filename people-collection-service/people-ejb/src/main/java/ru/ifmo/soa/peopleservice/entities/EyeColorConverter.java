@@ -0,0 +1,11 @@
+package ru.ifmo.soa.peopleservice.entities;
+
+import jakarta.persistence.Converter;
+
+@Converter
+public class EyeColorConverter extends CodedEnumConverter<EyeColor> {
+
+  public EyeColorConverter() {
+    super(EyeColor.class);
+  }
+}
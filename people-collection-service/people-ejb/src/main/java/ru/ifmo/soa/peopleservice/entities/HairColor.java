@@ -1,5 +1,20 @@
 package ru.ifmo.soa.peopleservice.entities;
 
-public enum HairColor {
-  GREEN, RED, YELLOW, ORANGE, BROWN
+public enum HairColor implements CodedEnum {
+  GREEN(20),
+  RED(40),
+  YELLOW(50),
+  ORANGE(30),
+  BROWN(10);
+
+  private final short code;
+
+  HairColor(int code) {
+    this.code = (short) code;
+  }
+
+  @Override
+  public short getCode() {
+    return code;
+  }
 }
@@ -0,0 +1,11 @@
+package ru.ifmo.soa.peopleservice.entities;
+
+import jakarta.persistence.Converter;
+
+@Converter
+public class HairColorConverter extends CodedEnumConverter<HairColor> {
+
+  public HairColorConverter() {
+    super(HairColor.class);
+  }
+}
@@ -22,11 +22,11 @@ public class Person {
   @Column(name = "creation_date", nullable = false, updatable = false)
   private OffsetDateTime creationDate;
   private Float height;
-  @Enumerated(EnumType.STRING)
+  @Convert(converter = EyeColorConverter.class)
   private EyeColor eyeColor;
-  @Enumerated(EnumType.STRING)
+  @Convert(converter = HairColorConverter.class)
   private HairColor hairColor;
-  @Enumerated(EnumType.STRING)
+  @Convert(converter = CountryConverter.class)
   private Country nationality;
   @Embedded
   @AttributeOverrides({
@@ -36,6 +36,8 @@ public class Person {
     @AttributeOverride(name = "name", column = @Column(name = "location_name"))
   })
   private Location location;
+  @Version
+  private Long version;
 
   public Person() {
   }
@@ -122,4 +124,12 @@ public class Person {
   public void setLocation(Location location) {
     this.location = location;
   }
+
+  public Long getVersion() {
+    return version;
+  }
+
+  public void setVersion(Long version) {
+    this.version = version;
+  }
 }
@@ -0,0 +1,47 @@
+package ru.ifmo.soa.peopleservice.entities;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+
+import java.time.OffsetDateTime;
+
+@Entity
+@Table(name = "rate_limit_buckets")
+public class RateLimitBucket {
+  @Id
+  @Column(name = "client_key", length = 64)
+  private String clientKey;
+  @Column(nullable = false)
+  private double tokens;
+  @Column(name = "refilled_at", nullable = false)
+  private OffsetDateTime refilledAt;
+
+  public RateLimitBucket() {
+  }
+
+  public String getClientKey() {
+    return clientKey;
+  }
+
+  public void setClientKey(String clientKey) {
+    this.clientKey = clientKey;
+  }
+
+  public double getTokens() {
+    return tokens;
+  }
+
+  public void setTokens(double tokens) {
+    this.tokens = tokens;
+  }
+
+  public OffsetDateTime getRefilledAt() {
+    return refilledAt;
+  }
+
+  public void setRefilledAt(OffsetDateTime refilledAt) {
+    this.refilledAt = refilledAt;
+  }
+}
@@ -0,0 +1,7 @@
+package ru.ifmo.soa.peopleservice.exceptions;
+
+public class GatewayTimeoutException extends RuntimeException {
+  public GatewayTimeoutException(String message) {
+    super(message);
+  }
+}
@@ -0,0 +1,7 @@
+package ru.ifmo.soa.peopleservice.exceptions;
+
+public class GoneException extends RuntimeException {
+  public GoneException(String message) {
+    super(message);
+  }
+}
@@ -0,0 +1,7 @@
+package ru.ifmo.soa.peopleservice.exceptions;
+
+public class PreconditionFailedException extends RuntimeException {
+  public PreconditionFailedException(String message) {
+    super(message);
+  }
+}
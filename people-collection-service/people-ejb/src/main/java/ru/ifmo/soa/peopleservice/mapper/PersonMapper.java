@@ -15,6 +15,7 @@ public interface PersonMapper {
 
   @Mapping(target = "id", ignore = true)
   @Mapping(target = "creationDate", ignore = true)
+  @Mapping(target = "version", ignore = true)
   @Mapping(target = "eyeColor", source = "eyeColor", qualifiedByName = "stringToEnum")
   @Mapping(target = "hairColor", source = "hairColor", qualifiedByName = "stringToEnum")
   @Mapping(target = "nationality", source = "nationality", qualifiedByName = "stringToEnum")
@@ -0,0 +1,150 @@
+package ru.ifmo.soa.peopleservice.migration;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.Resource;
+import jakarta.ejb.Singleton;
+import jakarta.ejb.Startup;
+import jakarta.ejb.TransactionManagement;
+import jakarta.ejb.TransactionManagementType;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.logging.Logger;
+
+/**
+ * Applies the SQL scripts from {@value #LOCATION} that Hibernate's {@code hbm2ddl=update} cannot express
+ * (indexes, constraints, data changes). Each script runs once, in its own transaction, and is recorded in
+ * {@code schema_migrations}. An advisory lock keeps several nodes from migrating at the same time.
+ * <p>
+ * Scripts are listed in {@link #MIGRATIONS} in the order they must run; never edit an applied script,
+ * add a new one instead.
+ */
+@Singleton
+@Startup
+@TransactionManagement(TransactionManagementType.BEAN)
+public class SchemaMigrator {
+
+  private static final Logger LOG = Logger.getLogger(SchemaMigrator.class.getName());
+
+  private static final String LOCATION = "META-INF/db/migrations/";
+  private static final List<String> MIGRATIONS = List.of(
+    "V1__people_indexes.sql",
+    "V2__people_enum_counts.sql",
+    "V3__people_enum_codes.sql",
+    "V4__people_partition_by_nationality.sql",
+    "V5__people_version.sql",
+    "V6__people_changes.sql",
+    "V7__search_snapshots.sql"
+  );
+  static final long LOCK_KEY = 0x70656f706c65L;
+
+  @Resource(lookup = "java:jboss/datasources/PeopleServiceDS")
+  private DataSource dataSource;
+
+  @PostConstruct
+  public void migrate() {
+    try (Connection connection = dataSource.getConnection()) {
+      connection.setAutoCommit(true);
+      try (Statement statement = connection.createStatement()) {
+        statement.execute("""
+          CREATE TABLE IF NOT EXISTS schema_migrations (
+            version varchar(255) PRIMARY KEY,
+            applied_at timestamptz NOT NULL DEFAULT now()
+          )""");
+        statement.execute("SELECT pg_advisory_lock(" + LOCK_KEY + ")");
+      }
+      try {
+        Set<String> applied = appliedVersions(connection);
+        for (String migration : MIGRATIONS) {
+          if (!applied.contains(migration)) {
+            apply(connection, migration);
+          }
+        }
+      } finally {
+        try (Statement statement = connection.createStatement()) {
+          statement.execute("SELECT pg_advisory_unlock(" + LOCK_KEY + ")");
+        }
+      }
+    } catch (SQLException | IOException e) {
+      throw new IllegalStateException("Schema migration failed", e);
+    }
+  }
+
+  private Set<String> appliedVersions(Connection connection) throws SQLException {
+    Set<String> versions = new HashSet<>();
+    try (Statement statement = connection.createStatement();
+         ResultSet rs = statement.executeQuery("SELECT version FROM schema_migrations")) {
+      while (rs.next()) {
+        versions.add(rs.getString(1));
+      }
+    }
+    return versions;
+  }
+
+  private void apply(Connection connection, String migration) throws SQLException, IOException {
+    List<String> statements = statements(read(LOCATION + migration));
+    connection.setAutoCommit(false);
+    try {
+      try (Statement statement = connection.createStatement()) {
+        for (String sql : statements) {
+          statement.execute(sql);
+        }
+      }
+      try (PreparedStatement insert = connection.prepareStatement("INSERT INTO schema_migrations (version) VALUES (?)")) {
+        insert.setString(1, migration);
+        insert.executeUpdate();
+      }
+      connection.commit();
+      LOG.info("Applied schema migration " + migration);
+    } catch (SQLException e) {
+      connection.rollback();
+      throw e;
+    } finally {
+      connection.setAutoCommit(true);
+    }
+  }
+
+  static String read(String script) throws IOException {
+    try (InputStream in = SchemaMigrator.class.getClassLoader().getResourceAsStream(script)) {
+      if (in == null) {
+        throw new IOException("Missing migration script " + script);
+      }
+      return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+    }
+  }
+
+  /**
+   * Splits a script on semicolons that end a line. Semicolons inside a dollar-quoted body must not end a line.
+   */
+  static List<String> statements(String script) {
+    List<String> statements = new ArrayList<>();
+    StringBuilder current = new StringBuilder();
+    for (String line : script.split("\n")) {
+      String trimmed = line.strip();
+      if (trimmed.isEmpty() || trimmed.startsWith("--")) {
+        continue;
+      }
+      current.append(line).append('\n');
+      if (trimmed.endsWith(";")) {
+        String sql = current.toString().strip();
+        statements.add(sql.substring(0, sql.length() - 1));
+        current.setLength(0);
+      }
+    }
+    if (!current.toString().isBlank()) {
+      statements.add(current.toString().strip());
+    }
+    return statements;
+  }
+}
@@ -0,0 +1,226 @@
+package ru.ifmo.soa.peopleservice.migration;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.Resource;
+import jakarta.ejb.DependsOn;
+import jakarta.ejb.Singleton;
+import jakarta.ejb.Startup;
+import jakarta.ejb.TransactionManagement;
+import jakarta.ejb.TransactionManagementType;
+import ru.ifmo.soa.peopleservice.entities.CodedEnum;
+import ru.ifmo.soa.peopleservice.entities.Country;
+import ru.ifmo.soa.peopleservice.entities.EyeColor;
+import ru.ifmo.soa.peopleservice.entities.HairColor;
+import ru.ifmo.soa.peopleservice.repository.Shards;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Logger;
+
+/**
+ * Spreads {@code people} over the databases in {@code people.shards} (see {@link Shards}). Each shard gets the
+ * schema from {@value #SHARD_SCHEMA} through its datasource; the main database then replaces {@code people}
+ * with a table hash-partitioned by id whose partitions are {@code postgres_fdw} foreign tables, and moves the
+ * existing rows into it. Queries stay the same: the planner sends them to every shard, merges sorted results
+ * and sums partial counts.
+ * <p>
+ * Every statement goes through the main database, and {@code postgres_fdw} commits the shards' transactions
+ * one after another as the main one commits, without two-phase commit. So what has to commit together with a
+ * person lives on that person's shard: the enum counters and new change log entries, which
+ * {@link ru.ifmo.soa.peopleservice.repository.ChangeLogRepository#relay} later moves to the main database. A
+ * change that spans shards, deleting a nationality, commits shard by shard.
+ * <p>
+ * This runs once, on the first start with shards configured, and is recorded in {@code people_shards}. The
+ * shard list cannot change afterwards, since that would move rows between shards; dump and reload instead.
+ */
+@Singleton
+@Startup
+@DependsOn("SchemaMigrator")
+@TransactionManagement(TransactionManagementType.BEAN)
+public class ShardManager {
+
+  private static final Logger LOG = Logger.getLogger(ShardManager.class.getName());
+
+  private static final String SHARD_SCHEMA = "META-INF/db/shard/people.sql";
+  private static final List<String> PARTITIONS = List.of(
+    "people_china", "people_india", "people_italy", "people_north_korea", "people_no_nationality");
+
+  @Resource(lookup = "java:jboss/datasources/PeopleServiceDS")
+  private DataSource dataSource;
+
+  @PostConstruct
+  public void distribute() {
+    if (!Shards.enabled()) {
+      return;
+    }
+    try (Connection connection = dataSource.getConnection()) {
+      connection.setAutoCommit(true);
+      try (Statement statement = connection.createStatement()) {
+        statement.execute("""
+          CREATE TABLE IF NOT EXISTS people_shards (
+            shard smallint PRIMARY KEY,
+            location varchar(255) NOT NULL
+          )""");
+        statement.execute("SELECT pg_advisory_lock(" + SchemaMigrator.LOCK_KEY + ")");
+      }
+      try {
+        List<String> existing = existingShards(connection);
+        List<String> configured = Shards.locations().stream().map(Shards.Location::toString).toList();
+        if (!existing.isEmpty()) {
+          if (!existing.equals(configured)) {
+            throw new IllegalStateException("people is already split across " + existing
+              + ", people.shards is " + configured + "; changing shards needs a dump and reload");
+          }
+          return;
+        }
+        for (int shard = 0; shard < Shards.locations().size(); shard++) {
+          prepareShard(shard);
+        }
+        moveRows(connection);
+      } finally {
+        try (Statement statement = connection.createStatement()) {
+          statement.execute("SELECT pg_advisory_unlock(" + SchemaMigrator.LOCK_KEY + ")");
+        }
+      }
+    } catch (SQLException | IOException e) {
+      throw new IllegalStateException("Sharding people failed", e);
+    }
+  }
+
+  private List<String> existingShards(Connection connection) throws SQLException {
+    List<String> shards = new ArrayList<>();
+    try (Statement statement = connection.createStatement();
+         ResultSet rs = statement.executeQuery("SELECT location FROM people_shards ORDER BY shard")) {
+      while (rs.next()) {
+        shards.add(rs.getString(1));
+      }
+    }
+    return shards;
+  }
+
+  private void prepareShard(int shard) throws SQLException, IOException {
+    try (Connection connection = Shards.connect(shard);
+         Statement statement = connection.createStatement()) {
+      for (String sql : SchemaMigrator.statements(SchemaMigrator.read(SHARD_SCHEMA))) {
+        statement.execute(sql);
+      }
+    }
+  }
+
+  private void moveRows(Connection connection) throws SQLException {
+    List<Shards.Location> locations = Shards.locations();
+    List<String> statements = shardingStatements(locations, connection.getCatalog());
+    connection.setAutoCommit(false);
+    try (Statement statement = connection.createStatement()) {
+      for (String sql : statements) {
+        statement.execute(sql);
+      }
+      connection.commit();
+      LOG.info("Spread people over " + locations.size() + " shards: " + locations);
+    } catch (SQLException e) {
+      connection.rollback();
+      throw e;
+    } finally {
+      connection.setAutoCommit(true);
+    }
+  }
+
+  /**
+   * @return the statements that move {@code people}, its enum counters and new change log entries to the shards
+   * at {@code locations}, run in one transaction of the main database {@code database}
+   */
+  static List<String> shardingStatements(List<Shards.Location> locations, String database) {
+    List<String> statements = new ArrayList<>();
+    statements.add("CREATE EXTENSION IF NOT EXISTS postgres_fdw");
+    statements.add("LOCK TABLE people IN ACCESS EXCLUSIVE MODE");
+    // CHECK constraints and indexes live on the shards; the foreign tables could not hold them anyway
+    statements.add("CREATE TABLE people_sharded (LIKE people INCLUDING DEFAULTS) PARTITION BY HASH (id)");
+    // hashed like people, so a counter change or log entry of a person goes to that person's shard and commits
+    // in the same shard transaction as the change itself
+    statements.add("CREATE TABLE people_enum_count_changes (person_id bigint NOT NULL, attribute varchar(32) NOT NULL,"
+      + " value varchar(64) NOT NULL, slot smallint NOT NULL, count bigint NOT NULL) PARTITION BY HASH (person_id)");
+    statements.add("CREATE TABLE people_change_outbox (type varchar(16) NOT NULL, person_id bigint NOT NULL, version bigint)"
+      + " PARTITION BY HASH (person_id)");
+    List<String> shardCounts = new ArrayList<>();
+    for (int shard = 0; shard < locations.size(); shard++) {
+      Shards.Location location = locations.get(shard);
+      String server = Shards.schema(shard);
+      String partition = " FOR VALUES WITH (MODULUS " + locations.size() + ", REMAINDER " + shard + ") SERVER " + server;
+      statements.add("CREATE SERVER " + server + " FOREIGN DATA WRAPPER postgres_fdw OPTIONS ("
+        + "host " + literal(location.host())
+        + ", port " + literal(String.valueOf(location.port()))
+        + ", dbname " + literal(location.database())
+        + (Shards.passfile() != null ? ", passfile " + literal(Shards.passfile()) : "")
+        + ", async_capable 'true', use_remote_estimate 'true', fetch_size '1000')");
+      // no password here: DDL ends up in logs and statement statistics (see Shards)
+      statements.add("CREATE USER MAPPING FOR CURRENT_USER SERVER " + server
+        + " OPTIONS (user " + literal(Shards.user()) + ", password_required 'false')");
+      statements.add("CREATE SCHEMA " + server);
+      statements.add("CREATE FOREIGN TABLE " + server + ".people PARTITION OF people_sharded" + partition
+        + " OPTIONS (schema_name 'public', table_name 'people')");
+      statements.add("CREATE FOREIGN TABLE " + server + ".people_enum_count_changes PARTITION OF people_enum_count_changes"
+        + partition + " OPTIONS (schema_name 'public', table_name 'people_enum_count_changes')");
+      // without seq and changed_at, so that the shard fills them in
+      statements.add("CREATE FOREIGN TABLE " + server + ".people_change_outbox PARTITION OF people_change_outbox"
+        + partition + " OPTIONS (schema_name 'public', table_name 'people_changes')");
+      // the shard's nationality partitions, so that deleting a nationality can truncate them; its counters; and
+      // its change log entries in full, for ChangeLogRepository#relay
+      List<String> imported = new ArrayList<>(PARTITIONS);
+      imported.add("people_enum_counts");
+      imported.add("people_changes");
+      statements.add("IMPORT FOREIGN SCHEMA public LIMIT TO (" + String.join(", ", imported) + ")"
+        + " FROM SERVER " + server + " INTO " + server);
+      statements.add("INSERT INTO people_shards (shard, location) VALUES (" + shard + ", " + literal(location.toString()) + ")");
+      shardCounts.add("SELECT * FROM " + server + ".people_enum_counts");
+    }
+    statements.add("INSERT INTO people_sharded SELECT * FROM people");
+    statements.add("ALTER SEQUENCE people_id_sequence OWNED BY NONE");
+    statements.add("DROP TABLE people");
+    statements.add("ALTER TABLE people_sharded RENAME TO people");
+    statements.add("ALTER SEQUENCE people_id_sequence OWNED BY people.id");
+    // the counters start from each shard's people, as in V2
+    for (int shard = 0; shard < locations.size(); shard++) {
+      String people = Shards.schema(shard) + ".people";
+      statements.add("INSERT INTO " + Shards.schema(shard) + ".people_enum_counts (attribute, value, slot, count)"
+        + " SELECT 'total', '', 0, count(*) FROM " + people
+        + " UNION ALL " + countBy("eyeColor", EyeColor.class, people)
+        + " UNION ALL " + countBy("hairColor", HairColor.class, people)
+        + " UNION ALL " + countBy("nationality", Country.class, people));
+    }
+    statements.add("DROP TABLE people_enum_counts");
+    statements.add("CREATE VIEW people_enum_counts AS " + String.join(" UNION ALL ", shardCounts));
+    // entries copied from a shard keep their position there, so that copying one again does nothing
+    statements.add("ALTER TABLE people_changes ADD COLUMN shard smallint, ADD COLUMN shard_seq bigint");
+    statements.add("CREATE UNIQUE INDEX people_changes_shard_seq ON people_changes (shard, shard_seq)");
+    // lets count(*) and GROUP BY run on each shard, with only the partial results sent back
+    statements.add("ALTER DATABASE " + quote(database) + " SET enable_partitionwise_aggregate = on");
+    return statements;
+  }
+
+  /**
+   * @return a query counting the people in {@code table} per value of {@code column}, by the value's name
+   */
+  private static <E extends Enum<E> & CodedEnum> String countBy(String column, Class<E> type, String table) {
+    StringBuilder name = new StringBuilder("CASE ").append(column);
+    for (E constant : type.getEnumConstants()) {
+      name.append(" WHEN ").append(constant.getCode()).append(" THEN ").append(literal(constant.name()));
+    }
+    name.append(" END");
+    return "SELECT " + literal(column) + ", " + name + ", 0, count(*) FROM " + table
+      + " WHERE " + column + " IS NOT NULL GROUP BY " + column;
+  }
+
+  private static String literal(String value) {
+    return "'" + value.replace("'", "''") + "'";
+  }
+
+  private static String quote(String identifier) {
+    return '"' + identifier.replace("\"", "\"\"") + '"';
+  }
+}
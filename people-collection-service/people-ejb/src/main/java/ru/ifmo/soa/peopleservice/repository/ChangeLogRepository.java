@@ -0,0 +1,242 @@
+package ru.ifmo.soa.peopleservice.repository;
+
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import ru.ifmo.soa.peopleservice.dto.PersonChangeDto;
+import ru.ifmo.soa.peopleservice.entities.Country;
+import ru.ifmo.soa.peopleservice.entities.Person;
+import ru.ifmo.soa.peopleservice.exceptions.BadRequestException;
+import ru.ifmo.soa.peopleservice.exceptions.GoneException;
+
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Log of inserts, updates and deletes in {@code people_changes}, written by the beans that change the
+ * collection, in their own transaction, and read by {@code GET /people/changes}.
+ * <p>
+ * Entries are ordered by the id of the writing transaction, then by sequence. A read returns only entries
+ * of transactions older than every transaction still running, so a transaction that commits late can never
+ * land behind a position a reader has already passed. Entries of one transaction keep their order.
+ * <p>
+ * With shards ({@link Shards}) entries are written on the person's shard instead, in the same shard transaction
+ * as the change, and {@link #relay} moves them here; they become readable about a second later.
+ */
+@ApplicationScoped
+public class ChangeLogRepository {
+
+  public static final String CREATED = "CREATED";
+  public static final String UPDATED = "UPDATED";
+  public static final String DELETED = "DELETED";
+
+  /** Where writers add entries: with shards, a table hash-partitioned by person like {@code people}. */
+  private static final String WRITE_TABLE = Shards.enabled() ? "people_change_outbox" : "people_changes";
+  private static final int RELAY_BATCH = 10_000;
+
+  /**
+   * Position in the log, given to clients as an opaque {@code <txid>-<seq>} token.
+   */
+  public record Position(long txid, long seq) implements Comparable<Position> {
+
+    public static Position parse(String token) {
+      int dash = token.indexOf('-');
+      try {
+        Position position = new Position(Long.parseLong(token.substring(0, dash)), Long.parseLong(token.substring(dash + 1)));
+        if (position.txid() < 0 || position.seq() < 0) {
+          throw new BadRequestException("Invalid change token: " + token);
+        }
+        return position;
+      } catch (NumberFormatException | IndexOutOfBoundsException e) {
+        throw new BadRequestException("Invalid change token: " + token);
+      }
+    }
+
+    @Override
+    public int compareTo(Position other) {
+      int byTxid = Long.compare(txid, other.txid);
+      return byTxid != 0 ? byTxid : Long.compare(seq, other.seq);
+    }
+
+    @Override
+    public String toString() {
+      return txid + "-" + seq;
+    }
+  }
+
+  /**
+   * @param next position to resume from; past every finished transaction when the log is read to the end
+   */
+  public record Page(List<PersonChangeDto> changes, Position next, boolean hasMore) {
+  }
+
+  @PersistenceContext
+  private EntityManager em;
+
+  @Inject
+  private QueryDeadline deadline;
+
+  public void created(Person person) {
+    record(CREATED, person.getId(), person.getVersion());
+  }
+
+  public void updated(Person person) {
+    record(UPDATED, person.getId(), person.getVersion());
+  }
+
+  public void deleted(Long personId) {
+    record(DELETED, personId, null);
+  }
+
+  /**
+   * Logs the deletion of everyone with {@code nationality}. Call it after the rows are locked and before they
+   * are deleted.
+   */
+  public void nationalityDeleted(Country nationality) {
+    deadline.apply(em.createNativeQuery(
+      "INSERT INTO " + WRITE_TABLE + " (type, person_id) SELECT ?1, id FROM people WHERE nationality = ?2 ORDER BY id"))
+      .setParameter(1, DELETED)
+      .setParameter(2, nationality.getCode())
+      .executeUpdate();
+  }
+
+  private void record(String type, Long personId, Long version) {
+    deadline.apply(em.createNativeQuery("INSERT INTO " + WRITE_TABLE + " (type, person_id, version) VALUES (?1, ?2, ?3)"))
+      .setParameter(1, type)
+      .setParameter(2, personId)
+      .setParameter(3, version)
+      .executeUpdate();
+  }
+
+  /**
+   * @return up to {@code limit} entries after {@code since}
+   * @throws GoneException if entries after {@code since} were pruned
+   */
+  public Page read(Position since, int limit) {
+    Number xmin = xmin();
+    List<?> rows = deadline.apply(em.createNativeQuery("""
+        SELECT txid, seq, type, person_id, version, CAST(extract(epoch FROM changed_at) * 1000000 AS bigint)
+        FROM people_changes
+        WHERE (txid, seq) > (?1, ?2) AND txid < ?3
+        ORDER BY txid, seq
+        LIMIT ?4
+        """))
+      .setParameter(1, since.txid())
+      .setParameter(2, since.seq())
+      .setParameter(3, xmin.longValue())
+      .setParameter(4, limit + 1)
+      .getResultList();
+    // read after the entries: a prune that removed some of them has moved the horizon by now
+    if (since.compareTo(horizon()) < 0) {
+      throw new GoneException("Changes after this token are no longer kept; read the collection again and start over without since");
+    }
+    boolean hasMore = rows.size() > limit;
+    List<PersonChangeDto> changes = new ArrayList<>(Math.min(rows.size(), limit));
+    Position next = since;
+    for (int i = 0; i < rows.size() && i < limit; i++) {
+      Object[] columns = (Object[]) rows.get(i);
+      next = new Position(((Number) columns[0]).longValue(), ((Number) columns[1]).longValue());
+      long micros = ((Number) columns[5]).longValue();
+      Instant changedAt = Instant.ofEpochSecond(Math.floorDiv(micros, 1_000_000L), Math.floorMod(micros, 1_000_000L) * 1000);
+      changes.add(new PersonChangeDto(
+        (String) columns[2],
+        ((Number) columns[3]).longValue(),
+        columns[4] != null ? ((Number) columns[4]).longValue() : null,
+        OffsetDateTime.ofInstant(changedAt, ZoneId.systemDefault()),
+        next.toString()
+      ));
+    }
+    if (!hasMore) {
+      // every later entry belongs to a transaction at or after xmin
+      Position finished = new Position(xmin.longValue() - 1, Long.MAX_VALUE);
+      if (finished.compareTo(next) > 0) {
+        next = finished;
+      }
+    }
+    return new Page(changes, next, hasMore);
+  }
+
+  /**
+   * Reads from the oldest entry still kept, for clients that have no token yet. Never answers {@code 410}: a
+   * prune that overtakes the read just moves the start.
+   */
+  public Page readFromStart(int limit) {
+    while (true) {
+      try {
+        return read(horizon(), limit);
+      } catch (GoneException e) {
+        // pruned between reading the horizon and the entries; start again from the new one
+      }
+    }
+  }
+
+  /**
+   * @return no entries, and the position after every finished transaction, for clients that only want what
+   * changes from now on
+   */
+  public Page readFromEnd() {
+    return new Page(List.of(), new Position(xmin().longValue() - 1, Long.MAX_VALUE), false);
+  }
+
+  /**
+   * Drops entries older than {@code retentionSeconds}, up to the newest of them, and moves the horizon there.
+   *
+   * @return the number of dropped entries
+   */
+  public int prune(long retentionSeconds) {
+    int moved = em.createNativeQuery("""
+        UPDATE people_changes_horizon h SET txid = newest.txid, seq = newest.seq
+        FROM (
+          SELECT txid, seq FROM people_changes
+          WHERE changed_at < now() - make_interval(secs => ?1) AND txid < txid_snapshot_xmin(txid_current_snapshot())
+          ORDER BY txid DESC, seq DESC
+          LIMIT 1
+        ) newest
+        WHERE h.id = 1 AND (newest.txid, newest.seq) > (h.txid, h.seq)
+        """)
+      .setParameter(1, retentionSeconds)
+      .executeUpdate();
+    if (moved == 0) {
+      return 0;
+    }
+    return em.createNativeQuery(
+        "DELETE FROM people_changes WHERE (txid, seq) <= (SELECT txid, seq FROM people_changes_horizon WHERE id = 1)")
+      .executeUpdate();
+  }
+
+  /**
+   * Moves entries written on shard {@code shard} into the log here, in the order they were written there.
+   * Entries copied by an earlier call are deleted from the shard first; entries copied by a call that fails to
+   * commit stay on the shard for the next one, and copying an entry again does nothing. So no entry is lost or
+   * logged twice, whichever of the two databases fails to commit.
+   *
+   * @return the number of entries copied
+   */
+  public int relay(int shard) {
+    String entries = Shards.schema(shard) + ".people_changes";
+    em.createNativeQuery("DELETE FROM " + entries + " s USING people_changes c WHERE c.shard = ?1 AND c.shard_seq = s.seq")
+      .setParameter(1, shard)
+      .executeUpdate();
+    return em.createNativeQuery("INSERT INTO people_changes (type, person_id, version, changed_at, shard, shard_seq)"
+        + " SELECT type, person_id, version, changed_at, ?1, seq FROM " + entries + " ORDER BY seq LIMIT ?2"
+        + " ON CONFLICT (shard, shard_seq) DO NOTHING")
+      .setParameter(1, shard)
+      .setParameter(2, RELAY_BATCH)
+      .executeUpdate();
+  }
+
+  private Number xmin() {
+    return (Number) deadline.apply(em.createNativeQuery("SELECT txid_snapshot_xmin(txid_current_snapshot())"))
+      .getSingleResult();
+  }
+
+  private Position horizon() {
+    Object[] row = (Object[]) em.createNativeQuery("SELECT txid, seq FROM people_changes_horizon WHERE id = 1")
+      .getSingleResult();
+    return new Position(((Number) row[0]).longValue(), ((Number) row[1]).longValue());
+  }
+}
@@ -0,0 +1,799 @@
+package ru.ifmo.soa.peopleservice.repository;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import ru.ifmo.soa.peopleservice.cluster.ClusterEvents;
+import ru.ifmo.soa.peopleservice.dto.CoordinatesDto;
+import ru.ifmo.soa.peopleservice.dto.FilterCriteriaDto;
+import ru.ifmo.soa.peopleservice.dto.FilterRuleDto;
+import ru.ifmo.soa.peopleservice.dto.LocationDto;
+import ru.ifmo.soa.peopleservice.dto.PersonDto;
+import ru.ifmo.soa.peopleservice.entities.CodedEnum;
+import ru.ifmo.soa.peopleservice.entities.Country;
+import ru.ifmo.soa.peopleservice.entities.EyeColor;
+import ru.ifmo.soa.peopleservice.entities.HairColor;
+import ru.ifmo.soa.peopleservice.exceptions.SemanticException;
+import ru.ifmo.soa.peopleservice.util.PathResolver;
+
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Copy of the {@code people} table held as primitive columns, for {@code people.read.engine=columnar}.
+ * Filters run as one loop per rule over a column into a row mask, sorting and paging happen in memory,
+ * and counts and facets are exact. Enums are stored as their rank in alphabetical order, which is also
+ * the order of their {@code smallint} codes, so comparisons and sorting agree with SQL; names are
+ * dictionary-encoded. Text orders by the database collation, which the columns do not know, so searches that
+ * compare names by range or sort by them are left to SQL (see {@link #serves}).
+ * <p>
+ * The table is loaded in the background by {@link PeopleCopyLoader}, at startup and again after a bulk
+ * nationality delete or lost notifications, and swapped in when complete. Between loads the loader re-reads
+ * only rows named by change events, by primary key, once a second (see {@link PendingChanges}). Reads never
+ * touch PostgreSQL: while a load or a re-read is pending, searches go to SQL instead, so the copy is never
+ * staler than the database. Changes from other nodes arrive with {@code NOTIFY}, up to a second later.
+ * <p>
+ * The {@code columnar_engine} api-test compares this store with SQL for every field, operator, sort order and
+ * page boundary; run the api-tests against a server started with {@code -Dpeople.read.engine=columnar}.
+ */
+@ApplicationScoped
+public class ColumnarPeopleStore {
+
+  private static final boolean ENABLED = "columnar".equalsIgnoreCase(System.getProperty("people.read.engine", "jpa"));
+  private static final int RELOAD_BATCH = 1000;
+  private static final byte NO_VALUE = -1;
+  private static final Set<String> TEXT_FIELDS = Set.of("name", "location.name");
+  private static final String SELECT = """
+    SELECT id, name, coordinates_x, coordinates_y,
+           CAST(extract(epoch FROM creation_date) * 1000000 AS bigint),
+           height, eyeColor, hairColor, nationality,
+           location_x, location_y, location_z, location_name, version
+    FROM people""";
+
+  private static final EnumCodec<EyeColor> EYE_COLORS = new EnumCodec<>(EyeColor.class);
+  private static final EnumCodec<HairColor> HAIR_COLORS = new EnumCodec<>(HairColor.class);
+  private static final EnumCodec<Country> COUNTRIES = new EnumCodec<>(Country.class);
+
+  @PersistenceContext
+  private EntityManager em;
+
+  private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+  private final PendingChanges pending = new PendingChanges();
+
+  private Table table = new Table(0);
+  /** The table holds every row as of its last load; only ids in {@link #pending} may differ. */
+  private volatile boolean loaded;
+
+  @PostConstruct
+  void subscribe() {
+    if (ENABLED) {
+      ClusterEvents.subscribe(pending);
+    }
+  }
+
+  @PreDestroy
+  void unsubscribe() {
+    if (ENABLED) {
+      ClusterEvents.unsubscribe(pending);
+    }
+  }
+
+  public boolean isEnabled() {
+    return ENABLED;
+  }
+
+  /**
+   * @param sortInfo the order of a page, or {@code null} for counts
+   * @return whether this store answers {@code criteria}: it is loaded with no change pending, and the search
+   * does not depend on the collation, which equality of text does not, but ranges and order do
+   */
+  public boolean serves(FilterCriteriaDto criteria, PathResolver.SortInfo sortInfo) {
+    if (!ENABLED || !loaded || pending.needsReload() || pending.hasIds()) {
+      return false;
+    }
+    if (sortInfo != null && TEXT_FIELDS.contains(sortInfo.getField())) {
+      return false;
+    }
+    if (criteria != null && criteria.getFilters() != null) {
+      for (FilterRuleDto rule : criteria.getFilters()) {
+        if (TEXT_FIELDS.contains(rule.getField()) && !"eq".equals(rule.getOperator()) && !"ne".equals(rule.getOperator())) {
+          return false;
+        }
+      }
+    }
+    return true;
+  }
+
+  public List<PersonDto> find(FilterCriteriaDto criteria, int page, int pageSize, PathResolver.SortInfo sortInfo) {
+    lock.readLock().lock();
+    try {
+      boolean[] mask = table.filter(criteria);
+      int[] rows = table.selected(mask);
+      RowOrder order = table.order(sortInfo);
+      int[] pageRows = page(rows, order, (long) page * pageSize, pageSize);
+      List<PersonDto> people = new ArrayList<>(pageRows.length);
+      for (int row : pageRows) {
+        people.add(table.dto(row));
+      }
+      return people;
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  public long count(FilterCriteriaDto criteria) {
+    lock.readLock().lock();
+    try {
+      boolean[] mask = table.filter(criteria);
+      long count = 0;
+      for (boolean match : mask) {
+        count += match ? 1 : 0;
+      }
+      return count;
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Same result as {@link PersonRepository#countFacets}, counted over the columns.
+   */
+  public Map<String, Map<String, Long>> countFacets(FilterCriteriaDto criteria, List<String> facets) {
+    lock.readLock().lock();
+    try {
+      boolean[] mask = table.filter(criteria);
+      Map<String, Map<String, Long>> result = new LinkedHashMap<>();
+      for (String facet : facets) {
+        EnumCodec<?> codec = codec(facet);
+        long[] counts = new long[codec.size()];
+        byte[] codes = table.enumColumn(facet);
+        for (int i = 0; i < mask.length; i++) {
+          if (mask[i] && codes[i] != NO_VALUE) {
+            counts[codes[i]]++;
+          }
+        }
+        Map<String, Long> values = new LinkedHashMap<>();
+        for (Enum<?> value : codec.declared()) {
+          values.put(value.name(), counts[codec.encode(value.name())]);
+        }
+        result.put(facet, values);
+      }
+      return result;
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Rows {@code [offset, offset + limit)} of {@code rows} in {@code order}. Small pages keep only the best
+   * {@code offset + limit} rows in a heap instead of sorting everything.
+   */
+  private static int[] page(int[] rows, RowOrder order, long offset, int limit) {
+    if (offset >= rows.length || limit <= 0) {
+      return new int[0];
+    }
+    int wanted = (int) Math.min(rows.length, offset + limit);
+    Integer[] sorted;
+    if (wanted < rows.length / 2) {
+      PriorityQueue<Integer> best = new PriorityQueue<>(wanted, (a, b) -> order.compare(b, a));
+      for (int row : rows) {
+        if (best.size() < wanted) {
+          best.add(row);
+        } else if (order.compare(row, best.peek()) < 0) {
+          best.poll();
+          best.add(row);
+        }
+      }
+      sorted = best.toArray(new Integer[0]);
+    } else {
+      sorted = new Integer[rows.length];
+      for (int i = 0; i < rows.length; i++) {
+        sorted[i] = rows[i];
+      }
+    }
+    Arrays.sort(sorted, order::compare);
+    int[] result = new int[wanted - (int) offset];
+    for (int i = 0; i < result.length; i++) {
+      result[i] = sorted[(int) offset + i];
+    }
+    return result;
+  }
+
+  /**
+   * Loads the whole table if it needs a full reload, without the lock and without a request deadline, and
+   * swaps it in when complete. Called by {@link PeopleCopyLoader} only.
+   */
+  void reloadIfNeeded() {
+    if (!ENABLED || !pending.needsReload()) {
+      return;
+    }
+    loaded = false;
+    pending.startReload();
+    Table fresh;
+    try {
+      List<?> rows = em.createNativeQuery(SELECT).getResultList();
+      fresh = new Table(rows.size());
+      for (Object row : rows) {
+        fresh.put((Object[]) row);
+      }
+    } catch (RuntimeException e) {
+      pending.invalidate();
+      throw e;
+    }
+    lock.writeLock().lock();
+    try {
+      table = fresh;
+      loaded = true;
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Re-reads the rows named by change events since the last call. Each chunk is read without the lock and
+   * applied under it. Called by {@link PeopleCopyLoader} only.
+   */
+  void catchUp() {
+    if (!ENABLED || !loaded || !pending.hasIds()) {
+      return;
+    }
+    List<Long> ids = pending.drainIds();
+    for (int from = 0; from < ids.size(); from += RELOAD_BATCH) {
+      List<Long> chunk = ids.subList(from, Math.min(ids.size(), from + RELOAD_BATCH));
+      List<?> rows;
+      try {
+        rows = em.createNativeQuery(SELECT + " WHERE id IN (:ids)").setParameter("ids", chunk).getResultList();
+      } catch (RuntimeException e) {
+        pending.retry(ids.subList(from, ids.size()));
+        throw e;
+      }
+      lock.writeLock().lock();
+      try {
+        for (Long id : chunk) {
+          table.remove(id);
+        }
+        for (Object row : rows) {
+          table.put((Object[]) row);
+        }
+      } finally {
+        lock.writeLock().unlock();
+      }
+    }
+  }
+
+  private static EnumCodec<?> codec(String field) {
+    return switch (field) {
+      case "eyeColor" -> EYE_COLORS;
+      case "hairColor" -> HAIR_COLORS;
+      case "nationality" -> COUNTRIES;
+      default -> throw new SemanticException("Unknown enum field: " + field);
+    };
+  }
+
+  @FunctionalInterface
+  private interface RowOrder {
+    int compare(int left, int right);
+  }
+
+  /**
+   * The columns. Deleting moves the last row into the gap, so rows stay dense; {@code rowById} follows.
+   */
+  private static final class Table {
+    private int size;
+    private long[] id;
+    private int[] name;
+    private int[] coordinatesX;
+    private int[] coordinatesY;
+    private final BitSet noCoordinates = new BitSet();
+    private long[] creationMicros;
+    private float[] height;
+    private byte[] eyeColor;
+    private byte[] hairColor;
+    private byte[] nationality;
+    private int[] locationX;
+    private long[] locationY;
+    private int[] locationZ;
+    private int[] locationName;
+    private final BitSet noLocation = new BitSet();
+    private long[] version;
+
+    private final Map<Long, Integer> rowById = new HashMap<>();
+    private final Dictionary names = new Dictionary();
+    private final Dictionary locationNames = new Dictionary();
+
+    Table(int capacity) {
+      allocate(Math.max(16, capacity));
+    }
+
+    private void allocate(int capacity) {
+      id = Arrays.copyOf(id == null ? new long[0] : id, capacity);
+      name = Arrays.copyOf(name == null ? new int[0] : name, capacity);
+      coordinatesX = Arrays.copyOf(coordinatesX == null ? new int[0] : coordinatesX, capacity);
+      coordinatesY = Arrays.copyOf(coordinatesY == null ? new int[0] : coordinatesY, capacity);
+      creationMicros = Arrays.copyOf(creationMicros == null ? new long[0] : creationMicros, capacity);
+      height = Arrays.copyOf(height == null ? new float[0] : height, capacity);
+      eyeColor = Arrays.copyOf(eyeColor == null ? new byte[0] : eyeColor, capacity);
+      hairColor = Arrays.copyOf(hairColor == null ? new byte[0] : hairColor, capacity);
+      nationality = Arrays.copyOf(nationality == null ? new byte[0] : nationality, capacity);
+      locationX = Arrays.copyOf(locationX == null ? new int[0] : locationX, capacity);
+      locationY = Arrays.copyOf(locationY == null ? new long[0] : locationY, capacity);
+      locationZ = Arrays.copyOf(locationZ == null ? new int[0] : locationZ, capacity);
+      locationName = Arrays.copyOf(locationName == null ? new int[0] : locationName, capacity);
+      version = Arrays.copyOf(version == null ? new long[0] : version, capacity);
+    }
+
+    /**
+     * Stores a row of {@link #SELECT}.
+     */
+    void put(Object[] columns) {
+      if (size == id.length) {
+        allocate(size * 2);
+      }
+      int row = size++;
+      id[row] = ((Number) columns[0]).longValue();
+      name[row] = names.encode((String) columns[1]);
+      noCoordinates.set(row, columns[2] == null || columns[3] == null);
+      coordinatesX[row] = columns[2] == null ? 0 : ((Number) columns[2]).intValue();
+      coordinatesY[row] = columns[3] == null ? 0 : ((Number) columns[3]).intValue();
+      creationMicros[row] = ((Number) columns[4]).longValue();
+      height[row] = columns[5] == null ? Float.NaN : ((Number) columns[5]).floatValue();
+      eyeColor[row] = EYE_COLORS.encodeCode((Number) columns[6]);
+      hairColor[row] = HAIR_COLORS.encodeCode((Number) columns[7]);
+      nationality[row] = COUNTRIES.encodeCode((Number) columns[8]);
+      // Location is embedded: either all of x, y and z are set or the person has no location
+      noLocation.set(row, columns[9] == null);
+      locationX[row] = columns[9] == null ? 0 : ((Number) columns[9]).intValue();
+      locationY[row] = columns[10] == null ? 0 : ((Number) columns[10]).longValue();
+      locationZ[row] = columns[11] == null ? 0 : ((Number) columns[11]).intValue();
+      locationName[row] = locationNames.encode((String) columns[12]);
+      version[row] = ((Number) columns[13]).longValue();
+      rowById.put(id[row], row);
+    }
+
+    void remove(long personId) {
+      Integer row = rowById.remove(personId);
+      if (row == null) {
+        return;
+      }
+      names.release(name[row]);
+      locationNames.release(locationName[row]);
+      int last = --size;
+      if (row != last) {
+        id[row] = id[last];
+        name[row] = name[last];
+        coordinatesX[row] = coordinatesX[last];
+        coordinatesY[row] = coordinatesY[last];
+        noCoordinates.set(row, noCoordinates.get(last));
+        creationMicros[row] = creationMicros[last];
+        height[row] = height[last];
+        eyeColor[row] = eyeColor[last];
+        hairColor[row] = hairColor[last];
+        nationality[row] = nationality[last];
+        locationX[row] = locationX[last];
+        locationY[row] = locationY[last];
+        locationZ[row] = locationZ[last];
+        locationName[row] = locationName[last];
+        noLocation.set(row, noLocation.get(last));
+        version[row] = version[last];
+        rowById.put(id[row], row);
+      }
+      noCoordinates.clear(last);
+      noLocation.clear(last);
+    }
+
+    PersonDto dto(int row) {
+      PersonDto person = new PersonDto();
+      person.setId(id[row]);
+      person.setName(names.decode(name[row]));
+      if (!noCoordinates.get(row)) {
+        person.setCoordinates(new CoordinatesDto(coordinatesX[row], coordinatesY[row]));
+      }
+      Instant created = Instant.ofEpochSecond(
+        Math.floorDiv(creationMicros[row], 1_000_000L), Math.floorMod(creationMicros[row], 1_000_000L) * 1000);
+      person.setCreationDate(OffsetDateTime.ofInstant(created, ZoneId.systemDefault()));
+      person.setHeight(Float.isNaN(height[row]) ? null : height[row]);
+      person.setEyeColor(name(EYE_COLORS.decode(eyeColor[row])));
+      person.setHairColor(name(HAIR_COLORS.decode(hairColor[row])));
+      person.setNationality(name(COUNTRIES.decode(nationality[row])));
+      if (!noLocation.get(row)) {
+        person.setLocation(new LocationDto(locationX[row], locationY[row], locationZ[row], locationNames.decode(locationName[row])));
+      }
+      person.setVersion(version[row]);
+      return person;
+    }
+
+    private static String name(Enum<?> value) {
+      return value != null ? value.name() : null;
+    }
+
+    byte[] enumColumn(String field) {
+      return switch (field) {
+        case "eyeColor" -> eyeColor;
+        case "hairColor" -> hairColor;
+        case "nationality" -> nationality;
+        default -> throw new SemanticException("Unknown enum field: " + field);
+      };
+    }
+
+    int[] selected(boolean[] mask) {
+      int count = 0;
+      for (boolean match : mask) {
+        count += match ? 1 : 0;
+      }
+      int[] rows = new int[count];
+      for (int i = 0, next = 0; i < mask.length; i++) {
+        if (mask[i]) {
+          rows[next++] = i;
+        }
+      }
+      return rows;
+    }
+
+    /**
+     * @return one flag per row, set where every rule matches; as in SQL, a missing value never matches
+     */
+    boolean[] filter(FilterCriteriaDto criteria) {
+      boolean[] mask = new boolean[size];
+      Arrays.fill(mask, true);
+      if (criteria == null || criteria.getFilters() == null) {
+        return mask;
+      }
+      for (FilterRuleDto rule : criteria.getFilters()) {
+        String field = rule.getField();
+        String op = rule.getOperator();
+        String value = rule.getValue();
+        if (PersonColumns.of(field) == null) {
+          throw new SemanticException("Unknown filter field: " + field);
+        }
+        if (PersonColumns.operator(op) == null) {
+          throw new SemanticException("Unknown operator: " + op);
+        }
+        if (value == null) {
+          throw new SemanticException("Filter value is required for field: " + field);
+        }
+        switch (field) {
+          case "id" -> filterLongs(id, null, op, parseLong(value), mask);
+          case "name" -> filterCodes(name, names.matching(op, value), mask);
+          case "creationDate" -> filterLongs(creationMicros, null, op, parseMicros(value), mask);
+          case "coordinates.x" -> filterInts(coordinatesX, noCoordinates, op, parseInt(value), mask);
+          case "coordinates.y" -> filterInts(coordinatesY, noCoordinates, op, parseInt(value), mask);
+          case "height" -> filterFloats(height, op, parseFloat(value), mask);
+          case "eyeColor" -> filterBytes(eyeColor, EYE_COLORS.matching(op, value), mask);
+          case "hairColor" -> filterBytes(hairColor, HAIR_COLORS.matching(op, value), mask);
+          case "nationality" -> filterBytes(nationality, COUNTRIES.matching(op, value), mask);
+          case "location.x" -> filterInts(locationX, noLocation, op, parseInt(value), mask);
+          case "location.y" -> filterLongs(locationY, noLocation, op, parseLong(value), mask);
+          case "location.z" -> filterInts(locationZ, noLocation, op, parseInt(value), mask);
+          case "location.name" -> filterCodes(locationName, locationNames.matching(op, value), mask);
+          default -> throw new SemanticException("Unknown filter field: " + field);
+        }
+      }
+      return mask;
+    }
+
+    private static void filterInts(int[] column, BitSet nulls, String op, int value, boolean[] mask) {
+      if ("ne".equals(op)) {
+        for (int i = 0; i < mask.length; i++) {
+          mask[i] &= column[i] != value;
+        }
+      } else {
+        long low = lowerBound(op, value, Integer.MIN_VALUE);
+        long high = upperBound(op, value, Integer.MAX_VALUE);
+        for (int i = 0; i < mask.length; i++) {
+          mask[i] &= column[i] >= low & column[i] <= high;
+        }
+      }
+      clear(nulls, mask);
+    }
+
+    private static void filterLongs(long[] column, BitSet nulls, String op, long value, boolean[] mask) {
+      if ("ne".equals(op)) {
+        for (int i = 0; i < mask.length; i++) {
+          mask[i] &= column[i] != value;
+        }
+      } else if (("gt".equals(op) && value == Long.MAX_VALUE) || ("lt".equals(op) && value == Long.MIN_VALUE)) {
+        Arrays.fill(mask, false);
+      } else {
+        long low = lowerBound(op, value, Long.MIN_VALUE);
+        long high = upperBound(op, value, Long.MAX_VALUE);
+        for (int i = 0; i < mask.length; i++) {
+          mask[i] &= column[i] >= low & column[i] <= high;
+        }
+      }
+      clear(nulls, mask);
+    }
+
+    /**
+     * Missing heights are {@code NaN}, which fails every comparison but {@code !=}.
+     */
+    private static void filterFloats(float[] column, String op, float value, boolean[] mask) {
+      switch (op) {
+        case "eq" -> {
+          for (int i = 0; i < mask.length; i++) mask[i] &= column[i] == value;
+        }
+        case "ne" -> {
+          for (int i = 0; i < mask.length; i++) mask[i] &= column[i] != value & column[i] == column[i];
+        }
+        case "gt" -> {
+          for (int i = 0; i < mask.length; i++) mask[i] &= column[i] > value;
+        }
+        case "gte" -> {
+          for (int i = 0; i < mask.length; i++) mask[i] &= column[i] >= value;
+        }
+        case "lt" -> {
+          for (int i = 0; i < mask.length; i++) mask[i] &= column[i] < value;
+        }
+        default -> {
+          for (int i = 0; i < mask.length; i++) mask[i] &= column[i] <= value;
+        }
+      }
+    }
+
+    private static void filterBytes(byte[] column, boolean[] matching, boolean[] mask) {
+      for (int i = 0; i < mask.length; i++) {
+        mask[i] &= column[i] != NO_VALUE && matching[column[i]];
+      }
+    }
+
+    private static void filterCodes(int[] column, boolean[] matching, boolean[] mask) {
+      for (int i = 0; i < mask.length; i++) {
+        mask[i] &= column[i] != NO_VALUE && matching[column[i]];
+      }
+    }
+
+    private static void clear(BitSet nulls, boolean[] mask) {
+      if (nulls == null) {
+        return;
+      }
+      for (int i = nulls.nextSetBit(0); i >= 0 && i < mask.length; i = nulls.nextSetBit(i + 1)) {
+        mask[i] = false;
+      }
+    }
+
+    private static long lowerBound(String op, long value, long min) {
+      return switch (op) {
+        case "eq", "gte" -> value;
+        case "gt" -> value + 1;
+        default -> min;
+      };
+    }
+
+    private static long upperBound(String op, long value, long max) {
+      return switch (op) {
+        case "eq", "lte" -> value;
+        case "lt" -> value - 1;
+        default -> max;
+      };
+    }
+
+    /**
+     * Ascending order of {@code sortInfo.getField()} with nulls last and id as the tie-break, reversed
+     * for {@code desc}; the same order PostgreSQL returns for {@link PathResolver#applySorting}. Text fields
+     * are never sorted here.
+     */
+    RowOrder order(PathResolver.SortInfo sortInfo) {
+      String field = sortInfo.getField() == null ? "id" : sortInfo.getField();
+      RowOrder byValue = switch (field) {
+        case "id" -> (a, b) -> 0;
+        case "creationDate" -> (a, b) -> Long.compare(creationMicros[a], creationMicros[b]);
+        case "coordinates.x" -> nullsLast(noCoordinates, (a, b) -> Integer.compare(coordinatesX[a], coordinatesX[b]));
+        case "coordinates.y" -> nullsLast(noCoordinates, (a, b) -> Integer.compare(coordinatesY[a], coordinatesY[b]));
+        // Float.compare puts NaN, the missing height, after every number
+        case "height" -> (a, b) -> Float.compare(height[a], height[b]);
+        case "eyeColor" -> byRank(eyeColor);
+        case "hairColor" -> byRank(hairColor);
+        case "nationality" -> byRank(nationality);
+        case "location.x" -> nullsLast(noLocation, (a, b) -> Integer.compare(locationX[a], locationX[b]));
+        case "location.y" -> nullsLast(noLocation, (a, b) -> Long.compare(locationY[a], locationY[b]));
+        case "location.z" -> nullsLast(noLocation, (a, b) -> Integer.compare(locationZ[a], locationZ[b]));
+        default -> throw new SemanticException("Unknown sort field: " + field);
+      };
+      RowOrder ascending = (a, b) -> {
+        int result = byValue.compare(a, b);
+        return result != 0 ? result : Long.compare(id[a], id[b]);
+      };
+      return "desc".equals(sortInfo.getOrder()) ? (a, b) -> ascending.compare(b, a) : ascending;
+    }
+
+    private static RowOrder nullsLast(BitSet nulls, RowOrder values) {
+      return (a, b) -> {
+        boolean aNull = nulls.get(a);
+        boolean bNull = nulls.get(b);
+        if (aNull || bNull) {
+          return Boolean.compare(aNull, bNull);
+        }
+        return values.compare(a, b);
+      };
+    }
+
+    private static RowOrder byRank(byte[] column) {
+      // NO_VALUE is -1; as an unsigned byte it sorts after every rank
+      return (a, b) -> Integer.compare(column[a] & 0xFF, column[b] & 0xFF);
+    }
+  }
+
+  /**
+   * Distinct strings of a column, each stored once and counted by the rows using it. A value no row uses any
+   * more is dropped and its code given to the next new value, so updates that rename people do not grow it.
+   */
+  private static final class Dictionary {
+    private final Map<String, Integer> codes = new HashMap<>();
+    private final List<String> values = new ArrayList<>();
+    private int[] uses = new int[16];
+    private final ArrayDeque<Integer> freeCodes = new ArrayDeque<>();
+
+    int encode(String value) {
+      if (value == null) {
+        return NO_VALUE;
+      }
+      Integer code = codes.get(value);
+      if (code == null) {
+        code = freeCodes.poll();
+        if (code == null) {
+          code = values.size();
+          values.add(value);
+          if (code == uses.length) {
+            uses = Arrays.copyOf(uses, code * 2);
+          }
+        } else {
+          values.set(code, value);
+        }
+        codes.put(value, code);
+      }
+      uses[code]++;
+      return code;
+    }
+
+    /**
+     * Called for the code of a row that is removed.
+     */
+    void release(int code) {
+      if (code == NO_VALUE || --uses[code] > 0) {
+        return;
+      }
+      codes.remove(values.set(code, null));
+      freeCodes.push(code);
+    }
+
+    String decode(int code) {
+      return code == NO_VALUE ? null : values.get(code);
+    }
+
+    /**
+     * @param op {@code eq} or {@code ne}; other comparisons depend on the collation, see {@link #serves}
+     * @return for each code, whether its value satisfies {@code value op argument}
+     */
+    boolean[] matching(String op, String argument) {
+      boolean[] matching = new boolean[values.size()];
+      for (int code = 0; code < matching.length; code++) {
+        // a free code belongs to no row, so its flag is never read
+        matching[code] = values.get(code) != null && values.get(code).equals(argument) == "eq".equals(op);
+      }
+      return matching;
+    }
+  }
+
+  /**
+   * Maps enum constants to their rank in alphabetical order of names; {@link CodedEnum} codes follow the
+   * same order, so ranks compare like the stored codes.
+   */
+  private static final class EnumCodec<E extends Enum<E>> {
+    private final E[] declared;
+    private final E[] byRank;
+    private final Map<String, Byte> rankByName = new HashMap<>();
+    private final Map<Short, Byte> rankByCode = new HashMap<>();
+
+    EnumCodec(Class<E> type) {
+      declared = type.getEnumConstants();
+      byRank = declared.clone();
+      Arrays.sort(byRank, Comparator.comparing(Enum::name));
+      for (int rank = 0; rank < byRank.length; rank++) {
+        rankByName.put(byRank[rank].name(), (byte) rank);
+        rankByCode.put(((CodedEnum) byRank[rank]).getCode(), (byte) rank);
+      }
+    }
+
+    int size() {
+      return byRank.length;
+    }
+
+    E[] declared() {
+      return declared;
+    }
+
+    byte encode(String name) {
+      if (name == null) {
+        return NO_VALUE;
+      }
+      return rankByName.get(name);
+    }
+
+    /**
+     * @param code the stored {@code smallint}, see {@link CodedEnum}
+     */
+    byte encodeCode(Number code) {
+      if (code == null) {
+        return NO_VALUE;
+      }
+      Byte rank = rankByCode.get(code.shortValue());
+      if (rank == null) {
+        throw new IllegalStateException("Unknown " + declared[0].getDeclaringClass().getSimpleName() + " code in the database: " + code);
+      }
+      return rank;
+    }
+
+    E decode(byte rank) {
+      return rank == NO_VALUE ? null : byRank[rank];
+    }
+
+    boolean[] matching(String op, String argument) {
+      if (!rankByName.containsKey(argument)) {
+        throw new SemanticException("Failed to parse value: " + argument + " for type " + declared[0].getDeclaringClass().getSimpleName());
+      }
+      boolean[] matching = new boolean[byRank.length];
+      for (int rank = 0; rank < byRank.length; rank++) {
+        matching[rank] = compares(op, byRank[rank].name().compareTo(argument));
+      }
+      return matching;
+    }
+  }
+
+  private static boolean compares(String op, int comparison) {
+    return switch (op) {
+      case "eq" -> comparison == 0;
+      case "ne" -> comparison != 0;
+      case "gt" -> comparison > 0;
+      case "gte" -> comparison >= 0;
+      case "lt" -> comparison < 0;
+      default -> comparison <= 0;
+    };
+  }
+
+  private static int parseInt(String value) {
+    try {
+      return Integer.parseInt(value);
+    } catch (NumberFormatException e) {
+      throw new SemanticException("Invalid numeric value: " + value + " for type Integer");
+    }
+  }
+
+  private static long parseLong(String value) {
+    try {
+      return Long.parseLong(value);
+    } catch (NumberFormatException e) {
+      throw new SemanticException("Invalid numeric value: " + value + " for type Long");
+    }
+  }
+
+  private static float parseFloat(String value) {
+    try {
+      return Float.parseFloat(value);
+    } catch (NumberFormatException e) {
+      throw new SemanticException("Invalid numeric value: " + value + " for type Float");
+    }
+  }
+
+  private static long parseMicros(String value) {
+    try {
+      Instant instant = OffsetDateTime.parse(value).toInstant();
+      return Math.addExact(Math.multiplyExact(instant.getEpochSecond(), 1_000_000L), instant.getNano() / 1000);
+    } catch (RuntimeException e) {
+      throw new SemanticException("Failed to parse value: " + value + " for type OffsetDateTime");
+    }
+  }
+}
@@ -0,0 +1,223 @@
+package ru.ifmo.soa.peopleservice.repository;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import ru.ifmo.soa.peopleservice.cluster.ClusterEvents;
+import ru.ifmo.soa.peopleservice.dto.FilterCriteriaDto;
+import ru.ifmo.soa.peopleservice.dto.FilterRuleDto;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory bitmaps of person ids per {@code eyeColor}, {@code hairColor} and {@code nationality} value.
+ * Counts over {@code eq}/{@code ne} rules on those fields are answered by intersecting bitmaps instead of
+ * scanning the table; {@code ne} is the union of the field's other values, so people without a value
+ * never match, as in SQL.
+ * <p>
+ * The bitmaps are built in the background by {@link PeopleCopyLoader}, at startup and again when they need
+ * a full rebuild; until then counts go to SQL. The loader also re-reads changed rows once a second (see
+ * {@link PendingChanges}), and counts go to SQL while any are pending. Changes from other nodes arrive with
+ * {@code NOTIFY}, so counts there lag by up to a second. With the columnar engine, which counts by itself, the
+ * index is neither built nor kept up.
+ * <p>
+ * The {@code enum_counts} api-test compares these counts with SQL after creates, updates and deletes, with
+ * chunks on both sides of the array/bitmap threshold and across chunk boundaries.
+ */
+@ApplicationScoped
+public class EnumBitmapIndex {
+
+  private static final boolean ENABLED = !Boolean.parseBoolean(System.getProperty("people.count.bitmap.disabled", "false"));
+  private static final int RELOAD_BATCH = 1000;
+  private static final String[] FIELDS = {"eyeColor", "hairColor", "nationality"};
+
+  @PersistenceContext
+  private EntityManager em;
+
+  @Inject
+  private ColumnarPeopleStore columnar;
+
+  private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+  private final PendingChanges pending = new PendingChanges();
+
+  private Map<String, Map<String, IdBitmap>> bitmaps = new HashMap<>();
+  private IdBitmap all = new IdBitmap();
+  /** The bitmaps hold every row as of the last build; only ids in {@link #pending} may differ. */
+  private volatile boolean built;
+
+  @PostConstruct
+  void subscribe() {
+    if (isActive()) {
+      ClusterEvents.subscribe(pending);
+    }
+  }
+
+  @PreDestroy
+  void unsubscribe() {
+    if (isActive()) {
+      ClusterEvents.unsubscribe(pending);
+    }
+  }
+
+  private boolean isActive() {
+    return ENABLED && !columnar.isEnabled();
+  }
+
+  /**
+   * @return the number of people matching {@code criteria}, or {@code null} if a rule is not an
+   * {@code eq}/{@code ne} comparison with a valid value of an enum field
+   */
+  public Long count(FilterCriteriaDto criteria) {
+    if (!isActive() || !built || pending.needsReload() || pending.hasIds() || !supports(criteria)) {
+      return null;
+    }
+    lock.readLock().lock();
+    try {
+      IdBitmap result = all;
+      if (criteria != null && criteria.getFilters() != null) {
+        for (FilterRuleDto rule : criteria.getFilters()) {
+          result = IdBitmap.and(result, match(rule));
+        }
+      }
+      return result.cardinality();
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  private IdBitmap match(FilterRuleDto rule) {
+    Map<String, IdBitmap> values = bitmaps.getOrDefault(rule.getField(), Map.of());
+    if ("eq".equals(rule.getOperator())) {
+      return values.getOrDefault(rule.getValue(), IdBitmap.EMPTY);
+    }
+    IdBitmap others = IdBitmap.EMPTY;
+    for (Map.Entry<String, IdBitmap> value : values.entrySet()) {
+      if (!value.getKey().equals(rule.getValue())) {
+        others = IdBitmap.or(others, value.getValue());
+      }
+    }
+    return others;
+  }
+
+  private static boolean supports(FilterCriteriaDto criteria) {
+    if (criteria == null || criteria.getFilters() == null) {
+      return true;
+    }
+    for (FilterRuleDto rule : criteria.getFilters()) {
+      PersonColumns.Column column = PersonColumns.of(rule.getField());
+      if (column == null || !column.type().isEnum() || rule.getValue() == null) {
+        return false;
+      }
+      if (!"eq".equals(rule.getOperator()) && !"ne".equals(rule.getOperator())) {
+        return false;
+      }
+      boolean known = false;
+      for (Object constant : column.type().getEnumConstants()) {
+        known |= ((Enum<?>) constant).name().equals(rule.getValue());
+      }
+      if (!known) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Re-reads the rows named by change events since the last call. Each chunk is read without the lock and
+   * applied under it. Called by {@link PeopleCopyLoader} only.
+   */
+  void catchUp() {
+    if (!isActive() || !built || !pending.hasIds()) {
+      return;
+    }
+    List<Long> ids = pending.drainIds();
+    for (int from = 0; from < ids.size(); from += RELOAD_BATCH) {
+      List<Long> chunk = ids.subList(from, Math.min(ids.size(), from + RELOAD_BATCH));
+      List<?> rows;
+      try {
+        rows = em.createNativeQuery("SELECT id, eyeColor, hairColor, nationality FROM people WHERE id IN (:ids)")
+          .setParameter("ids", chunk)
+          .getResultList();
+      } catch (RuntimeException e) {
+        pending.retry(ids.subList(from, ids.size()));
+        throw e;
+      }
+      lock.writeLock().lock();
+      try {
+        apply(chunk, rows);
+      } finally {
+        lock.writeLock().unlock();
+      }
+    }
+  }
+
+  /**
+   * Builds the bitmaps from scratch if they need it, without the lock and without a request deadline, and
+   * swaps them in when complete. Called by {@link PeopleCopyLoader} only.
+   */
+  void rebuildIfNeeded() {
+    if (!isActive() || !pending.needsReload()) {
+      return;
+    }
+    built = false;
+    pending.startReload();
+    Map<String, Map<String, IdBitmap>> fresh = new HashMap<>();
+    IdBitmap everyone = new IdBitmap();
+    List<?> rows;
+    try {
+      rows = em.createNativeQuery("SELECT id, eyeColor, hairColor, nationality FROM people").getResultList();
+    } catch (RuntimeException e) {
+      pending.invalidate();
+      throw e;
+    }
+    for (Object row : rows) {
+      Object[] columns = (Object[]) row;
+      long id = ((Number) columns[0]).longValue();
+      everyone.add(id);
+      for (int i = 0; i < FIELDS.length; i++) {
+        if (columns[i + 1] != null) {
+          fresh.computeIfAbsent(FIELDS[i], field -> new HashMap<>())
+            .computeIfAbsent(PersonColumns.of(FIELDS[i]).enumName(columns[i + 1]), value -> new IdBitmap())
+            .add(id);
+        }
+      }
+    }
+    lock.writeLock().lock();
+    try {
+      bitmaps = fresh;
+      all = everyone;
+      built = true;
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  private void apply(List<Long> ids, List<?> rows) {
+    for (Long id : ids) {
+      all.remove(id);
+      for (Map<String, IdBitmap> values : bitmaps.values()) {
+        for (IdBitmap bitmap : values.values()) {
+          bitmap.remove(id);
+        }
+      }
+    }
+    for (Object row : rows) {
+      Object[] columns = (Object[]) row;
+      long id = ((Number) columns[0]).longValue();
+      all.add(id);
+      for (int i = 0; i < FIELDS.length; i++) {
+        if (columns[i + 1] != null) {
+          bitmaps.computeIfAbsent(FIELDS[i], field -> new HashMap<>())
+            .computeIfAbsent(PersonColumns.of(FIELDS[i]).enumName(columns[i + 1]), value -> new IdBitmap())
+            .add(id);
+        }
+      }
+    }
+  }
+}
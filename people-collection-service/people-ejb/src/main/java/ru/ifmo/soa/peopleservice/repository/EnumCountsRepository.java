@@ -0,0 +1,156 @@
+package ru.ifmo.soa.peopleservice.repository;
+
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.Query;
+import ru.ifmo.soa.peopleservice.entities.Person;
+
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Number of people per {@code eyeColor}, {@code hairColor} and {@code nationality} value, plus the total,
+ * kept in {@code people_enum_counts} by the beans that change the collection, in their own transaction.
+ * <p>
+ * Each counter is split into {@value #SLOTS} rows and a write updates a random one, so concurrent inserts
+ * do not queue on a single row lock; readers sum the slots.
+ * <p>
+ * With shards ({@link Shards}) each shard counts its own people, and {@code people_enum_counts} is a view over
+ * all of them. A change is written to {@code people_enum_count_changes}, which sends it to the shard of the
+ * person and adds it there, in the same shard transaction as the change of the person.
+ */
+@ApplicationScoped
+public class EnumCountsRepository {
+
+  public static final String TOTAL = "total";
+  public static final String EYE_COLOR = "eyeColor";
+  public static final String HAIR_COLOR = "hairColor";
+  public static final String NATIONALITY = "nationality";
+
+  private static final int SLOTS = 8;
+
+  private record Key(String attribute, String value) {
+  }
+
+  /**
+   * {@code count} removed people with the same enum values, all on one shard; {@code personId} is any of them.
+   */
+  public record Removed(Long personId, EnumValues values, long count) {
+  }
+
+  private static final Comparator<Key> KEY_ORDER = Comparator.comparing(Key::attribute).thenComparing(Key::value);
+
+  @PersistenceContext
+  private EntityManager em;
+
+  @Inject
+  private QueryDeadline deadline;
+
+  public void added(Person person) {
+    Map<Key, Long> deltas = new TreeMap<>(KEY_ORDER);
+    count(deltas, EnumValues.of(person), 1);
+    apply(person.getId(), deltas);
+  }
+
+  public void removed(Person person) {
+    removed(List.of(new Removed(person.getId(), EnumValues.of(person), 1)));
+  }
+
+  /**
+   * Writes one statement per shard, in the order the shards first appear in {@code people}. Callers that touch
+   * several shards list them in one fixed order, so that two of them cannot wait for each other across two
+   * shards, a deadlock no database would detect.
+   */
+  public void removed(List<Removed> people) {
+    Map<Long, Map<Key, Long>> deltas = new LinkedHashMap<>();
+    for (Removed removed : people) {
+      // without shards everything goes into one statement
+      Long personId = Shards.enabled() ? removed.personId() : null;
+      count(deltas.computeIfAbsent(personId, id -> new TreeMap<>(KEY_ORDER)), removed.values(), -removed.count());
+    }
+    deltas.forEach(this::apply);
+  }
+
+  public void changed(EnumValues before, Person after) {
+    Map<Key, Long> deltas = new TreeMap<>(KEY_ORDER);
+    count(deltas, before, -1);
+    count(deltas, EnumValues.of(after), 1);
+    apply(after.getId(), deltas);
+  }
+
+  /**
+   * @return counts by attribute and value; the total is under {@value #TOTAL} with an empty value
+   */
+  public Map<String, Map<String, Long>> findAll() {
+    List<?> rows = deadline.apply(em.createNativeQuery(
+      "SELECT attribute, value, sum(count) FROM people_enum_counts GROUP BY attribute, value")).getResultList();
+    Map<String, Map<String, Long>> counts = new TreeMap<>();
+    for (Object row : rows) {
+      Object[] columns = (Object[]) row;
+      counts.computeIfAbsent((String) columns[0], attribute -> new TreeMap<>())
+        .put((String) columns[1], ((Number) columns[2]).longValue());
+    }
+    return counts;
+  }
+
+  private static void count(Map<Key, Long> deltas, EnumValues values, long sign) {
+    deltas.merge(new Key(TOTAL, ""), sign, Long::sum);
+    if (values.eyeColor() != null) {
+      deltas.merge(new Key(EYE_COLOR, values.eyeColor().name()), sign, Long::sum);
+    }
+    if (values.hairColor() != null) {
+      deltas.merge(new Key(HAIR_COLOR, values.hairColor().name()), sign, Long::sum);
+    }
+    if (values.nationality() != null) {
+      deltas.merge(new Key(NATIONALITY, values.nationality().name()), sign, Long::sum);
+    }
+  }
+
+  /**
+   * Upserts all non-zero deltas in one statement. Rows are written in key order so that two transactions
+   * hitting the same slot cannot deadlock.
+   *
+   * @param personId a person on the shard the deltas belong to; unused without shards
+   */
+  private void apply(Long personId, Map<Key, Long> deltas) {
+    deltas.values().removeIf(delta -> delta == 0);
+    if (deltas.isEmpty()) {
+      return;
+    }
+    int slot = ThreadLocalRandom.current().nextInt(SLOTS);
+    boolean sharded = Shards.enabled();
+    StringBuilder sql = new StringBuilder(sharded
+      ? "INSERT INTO people_enum_count_changes (person_id, attribute, value, slot, count) VALUES "
+      : "INSERT INTO people_enum_counts AS c (attribute, value, slot, count) VALUES ");
+    int parameter = sharded ? 1 : 0;
+    for (int i = 0; i < deltas.size(); i++) {
+      sql.append(i == 0 ? "" : ", ")
+        .append(sharded ? "(?1, " : "(")
+        .append('?').append(++parameter)
+        .append(", ?").append(++parameter)
+        .append(", ").append(slot)
+        .append(", ?").append(++parameter).append(')');
+    }
+    if (!sharded) {
+      sql.append(" ON CONFLICT (attribute, value, slot) DO UPDATE SET count = c.count + EXCLUDED.count");
+    }
+
+    Query query = deadline.apply(em.createNativeQuery(sql.toString()));
+    parameter = 0;
+    if (sharded) {
+      query.setParameter(++parameter, personId);
+    }
+    for (Map.Entry<Key, Long> delta : deltas.entrySet()) {
+      query.setParameter(++parameter, delta.getKey().attribute());
+      query.setParameter(++parameter, delta.getKey().value());
+      query.setParameter(++parameter, delta.getValue());
+    }
+    query.executeUpdate();
+  }
+}
@@ -0,0 +1,16 @@
+package ru.ifmo.soa.peopleservice.repository;
+
+import ru.ifmo.soa.peopleservice.entities.Country;
+import ru.ifmo.soa.peopleservice.entities.EyeColor;
+import ru.ifmo.soa.peopleservice.entities.HairColor;
+import ru.ifmo.soa.peopleservice.entities.Person;
+
+/**
+ * Enum attributes of one person, as counted in {@code people_enum_counts}.
+ */
+public record EnumValues(EyeColor eyeColor, HairColor hairColor, Country nationality) {
+
+  public static EnumValues of(Person person) {
+    return new EnumValues(person.getEyeColor(), person.getHairColor(), person.getNationality());
+  }
+}
@@ -0,0 +1,314 @@
+package ru.ifmo.soa.peopleservice.repository;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Compressed set of person ids in the style of Roaring bitmaps. Ids are split by their upper bits into
+ * chunks of 65536; a chunk holds either a sorted array of the lower 16 bits (up to {@value #ARRAY_LIMIT}
+ * ids) or a 65536-bit bitmap, whichever is smaller. Set operations work container by container and allocate
+ * a bitmap only for a result that needs one; they never modify their arguments, but their results may share
+ * containers with them, so results are for reading only.
+ */
+final class IdBitmap {
+
+  private static final int ARRAY_LIMIT = 4096;
+  private static final int WORDS = 1024;
+
+  static final IdBitmap EMPTY = new IdBitmap();
+
+  private final TreeMap<Long, Container> chunks = new TreeMap<>();
+
+  void add(long id) {
+    chunks.computeIfAbsent(id >>> 16, key -> new Container()).add((char) id);
+  }
+
+  void remove(long id) {
+    Container container = chunks.get(id >>> 16);
+    if (container != null && container.remove((char) id) && container.cardinality() == 0) {
+      chunks.remove(id >>> 16);
+    }
+  }
+
+  long cardinality() {
+    long cardinality = 0;
+    for (Container container : chunks.values()) {
+      cardinality += container.cardinality();
+    }
+    return cardinality;
+  }
+
+  static IdBitmap and(IdBitmap left, IdBitmap right) {
+    IdBitmap result = new IdBitmap();
+    for (Map.Entry<Long, Container> chunk : left.chunks.entrySet()) {
+      Container other = right.chunks.get(chunk.getKey());
+      if (other != null) {
+        result.put(chunk.getKey(), Container.and(chunk.getValue(), other));
+      }
+    }
+    return result;
+  }
+
+  static IdBitmap or(IdBitmap left, IdBitmap right) {
+    IdBitmap result = new IdBitmap();
+    for (Map.Entry<Long, Container> chunk : left.chunks.entrySet()) {
+      Container other = right.chunks.get(chunk.getKey());
+      result.put(chunk.getKey(), other == null ? chunk.getValue() : Container.or(chunk.getValue(), other));
+    }
+    for (Map.Entry<Long, Container> chunk : right.chunks.entrySet()) {
+      result.chunks.putIfAbsent(chunk.getKey(), chunk.getValue());
+    }
+    return result;
+  }
+
+  static IdBitmap andNot(IdBitmap left, IdBitmap right) {
+    IdBitmap result = new IdBitmap();
+    for (Map.Entry<Long, Container> chunk : left.chunks.entrySet()) {
+      Container other = right.chunks.get(chunk.getKey());
+      result.put(chunk.getKey(), other == null ? chunk.getValue() : Container.andNot(chunk.getValue(), other));
+    }
+    return result;
+  }
+
+  private void put(long key, Container container) {
+    if (container.cardinality() > 0) {
+      chunks.put(key, container);
+    }
+  }
+
+  /**
+   * One chunk: {@code array} is used while the chunk is sparse, {@code bitmap} once it outgrows the limit.
+   */
+  private static final class Container {
+    private char[] array = new char[4];
+    private int size;
+    private long[] bitmap;
+
+    private static Container ofArray(char[] array, int size) {
+      Container container = new Container();
+      container.array = array;
+      container.size = size;
+      return container;
+    }
+
+    /**
+     * Takes {@code words} over; a result small enough for an array is stored as one.
+     */
+    private static Container ofWords(long[] words) {
+      int cardinality = 0;
+      for (long word : words) {
+        cardinality += Long.bitCount(word);
+      }
+      if (cardinality > ARRAY_LIMIT) {
+        Container container = new Container();
+        container.array = null;
+        container.bitmap = words;
+        container.size = cardinality;
+        return container;
+      }
+      char[] array = new char[Math.max(4, cardinality)];
+      int size = 0;
+      for (int i = 0; i < WORDS; i++) {
+        long word = words[i];
+        while (word != 0) {
+          array[size++] = (char) (i * 64 + Long.numberOfTrailingZeros(word));
+          word &= word - 1;
+        }
+      }
+      return ofArray(array, size);
+    }
+
+    static Container and(Container left, Container right) {
+      if (left.bitmap != null && right.bitmap != null) {
+        long[] words = new long[WORDS];
+        for (int i = 0; i < WORDS; i++) {
+          words[i] = left.bitmap[i] & right.bitmap[i];
+        }
+        return ofWords(words);
+      }
+      if (left.bitmap != null || right.bitmap != null) {
+        // an array and a bitmap: keep the array values the bitmap has
+        Container sparse = left.bitmap == null ? left : right;
+        Container dense = left.bitmap == null ? right : left;
+        char[] array = new char[Math.max(4, sparse.size)];
+        int size = 0;
+        for (int i = 0; i < sparse.size; i++) {
+          if (dense.contains(sparse.array[i])) {
+            array[size++] = sparse.array[i];
+          }
+        }
+        return ofArray(array, size);
+      }
+      char[] array = new char[Math.max(4, Math.min(left.size, right.size))];
+      int size = 0;
+      for (int i = 0, j = 0; i < left.size && j < right.size; ) {
+        char a = left.array[i];
+        char b = right.array[j];
+        if (a == b) {
+          array[size++] = a;
+          i++;
+          j++;
+        } else if (a < b) {
+          i++;
+        } else {
+          j++;
+        }
+      }
+      return ofArray(array, size);
+    }
+
+    static Container or(Container left, Container right) {
+      if (left.bitmap != null || right.bitmap != null) {
+        long[] words = left.bitmap != null ? left.bitmap.clone() : right.bitmap.clone();
+        Container other = left.bitmap != null ? right : left;
+        if (other.bitmap != null) {
+          for (int i = 0; i < WORDS; i++) {
+            words[i] |= other.bitmap[i];
+          }
+        } else {
+          for (int i = 0; i < other.size; i++) {
+            words[other.array[i] >>> 6] |= 1L << other.array[i];
+          }
+        }
+        return ofWords(words);
+      }
+      if (left.size + right.size > ARRAY_LIMIT) {
+        long[] words = left.words();
+        for (int i = 0; i < right.size; i++) {
+          words[right.array[i] >>> 6] |= 1L << right.array[i];
+        }
+        return ofWords(words);
+      }
+      char[] array = new char[Math.max(4, left.size + right.size)];
+      int size = 0;
+      int i = 0;
+      int j = 0;
+      while (i < left.size && j < right.size) {
+        char a = left.array[i];
+        char b = right.array[j];
+        if (a <= b) {
+          array[size++] = a;
+          i++;
+          if (a == b) {
+            j++;
+          }
+        } else {
+          array[size++] = b;
+          j++;
+        }
+      }
+      while (i < left.size) {
+        array[size++] = left.array[i++];
+      }
+      while (j < right.size) {
+        array[size++] = right.array[j++];
+      }
+      return ofArray(array, size);
+    }
+
+    static Container andNot(Container left, Container right) {
+      if (left.bitmap == null) {
+        char[] array = new char[Math.max(4, left.size)];
+        int size = 0;
+        for (int i = 0; i < left.size; i++) {
+          if (!right.contains(left.array[i])) {
+            array[size++] = left.array[i];
+          }
+        }
+        return ofArray(array, size);
+      }
+      long[] words = left.bitmap.clone();
+      if (right.bitmap != null) {
+        for (int i = 0; i < WORDS; i++) {
+          words[i] &= ~right.bitmap[i];
+        }
+      } else {
+        for (int i = 0; i < right.size; i++) {
+          words[right.array[i] >>> 6] &= ~(1L << right.array[i]);
+        }
+      }
+      return ofWords(words);
+    }
+
+    int cardinality() {
+      return size;
+    }
+
+    boolean contains(char low) {
+      if (bitmap != null) {
+        return (bitmap[low >>> 6] & 1L << low) != 0;
+      }
+      return Arrays.binarySearch(array, 0, size, low) >= 0;
+    }
+
+    void add(char low) {
+      if (bitmap != null) {
+        long mask = 1L << low;
+        if ((bitmap[low >>> 6] & mask) == 0) {
+          bitmap[low >>> 6] |= mask;
+          size++;
+        }
+        return;
+      }
+      int index = Arrays.binarySearch(array, 0, size, low);
+      if (index >= 0) {
+        return;
+      }
+      if (size == ARRAY_LIMIT) {
+        bitmap = words();
+        array = null;
+        bitmap[low >>> 6] |= 1L << low;
+        size++;
+        return;
+      }
+      int insertAt = -index - 1;
+      if (size == array.length) {
+        array = Arrays.copyOf(array, Math.min(ARRAY_LIMIT, size * 2));
+      }
+      System.arraycopy(array, insertAt, array, insertAt + 1, size - insertAt);
+      array[insertAt] = low;
+      size++;
+    }
+
+    boolean remove(char low) {
+      if (bitmap != null) {
+        long mask = 1L << low;
+        if ((bitmap[low >>> 6] & mask) == 0) {
+          return false;
+        }
+        bitmap[low >>> 6] &= ~mask;
+        size--;
+        // half the limit, so a chunk at the threshold does not convert back and forth
+        if (size <= ARRAY_LIMIT / 2) {
+          Container sparse = ofWords(bitmap);
+          array = sparse.array;
+          bitmap = null;
+        }
+        return true;
+      }
+      int index = Arrays.binarySearch(array, 0, size, low);
+      if (index < 0) {
+        return false;
+      }
+      System.arraycopy(array, index + 1, array, index, size - index - 1);
+      size--;
+      return true;
+    }
+
+    /**
+     * @return a fresh bitmap copy of this chunk
+     */
+    long[] words() {
+      if (bitmap != null) {
+        return bitmap.clone();
+      }
+      long[] words = new long[WORDS];
+      for (int i = 0; i < size; i++) {
+        char low = array[i];
+        words[low >>> 6] |= 1L << low;
+      }
+      return words;
+    }
+  }
+}
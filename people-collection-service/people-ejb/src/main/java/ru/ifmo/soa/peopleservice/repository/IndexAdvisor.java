@@ -0,0 +1,162 @@
+package ru.ifmo.soa.peopleservice.repository;
+
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import ru.ifmo.soa.peopleservice.dto.FilterCriteriaDto;
+import ru.ifmo.soa.peopleservice.dto.FilterRuleDto;
+import ru.ifmo.soa.peopleservice.dto.IndexAdviceDto;
+import ru.ifmo.soa.peopleservice.util.PathResolver;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts the filter shapes searches actually use on this node and reports the ones no index of the
+ * {@code people} table serves. The suggested index puts equality columns first, then the sort column
+ * (or the first range column when sorting by id), then id, which is how the planner can both filter and
+ * return rows already in page order.
+ * <p>
+ * With shards ({@link Shards}) the indexes live on the shard tables, not on {@code people} in the main database,
+ * so they are read from the first shard's catalog, through its datasource; every shard has the same schema.
+ */
+@ApplicationScoped
+public class IndexAdvisor {
+
+  private static final int MAX_SHAPES = 500;
+  private static final Set<String> RANGE_OPERATORS = Set.of("gt", "lt", "gte", "lte");
+
+  private record Shape(List<String> equalityFields, List<String> rangeFields, String sortField) {
+  }
+
+  @PersistenceContext
+  private EntityManager em;
+
+  @Inject
+  private QueryDeadline deadline;
+
+  private final Map<Shape, LongAdder> observed = new ConcurrentHashMap<>();
+
+  public void record(FilterCriteriaDto criteria, PathResolver.SortInfo sortInfo) {
+    TreeSet<String> equality = new TreeSet<>();
+    TreeSet<String> range = new TreeSet<>();
+    if (criteria != null && criteria.getFilters() != null) {
+      for (FilterRuleDto rule : criteria.getFilters()) {
+        if (PersonColumns.of(rule.getField()) == null) {
+          continue;
+        }
+        if ("eq".equals(rule.getOperator())) {
+          equality.add(rule.getField());
+        } else if (RANGE_OPERATORS.contains(rule.getOperator())) {
+          range.add(rule.getField());
+        }
+      }
+    }
+    String sortField = sortInfo.getField() == null ? "id" : sortInfo.getField();
+    if (equality.isEmpty() && range.isEmpty()) {
+      return;
+    }
+    Shape shape = new Shape(List.copyOf(equality), List.copyOf(range), sortField);
+    LongAdder counter = observed.get(shape);
+    if (counter == null) {
+      if (observed.size() >= MAX_SHAPES) {
+        return;
+      }
+      counter = observed.computeIfAbsent(shape, key -> new LongAdder());
+    }
+    counter.increment();
+  }
+
+  public List<IndexAdviceDto> advise() {
+    List<List<String>> indexes = existingIndexes();
+    List<IndexAdviceDto> advice = new ArrayList<>();
+    observed.forEach((shape, counter) -> {
+      List<String> columns = suggestedColumns(shape);
+      boolean supported = indexes.stream().anyMatch(index -> startsWith(index, columns));
+      if (!supported) {
+        advice.add(new IndexAdviceDto(
+          shape.equalityFields(),
+          shape.rangeFields(),
+          shape.sortField(),
+          counter.sum(),
+          "CREATE INDEX ON people (" + String.join(", ", columns) + ")"
+        ));
+      }
+    });
+    advice.sort(Comparator.comparingLong(IndexAdviceDto::getSearches).reversed());
+    return advice;
+  }
+
+  private static List<String> suggestedColumns(Shape shape) {
+    List<String> columns = new ArrayList<>();
+    for (String field : shape.equalityFields()) {
+      columns.add(PersonColumns.of(field).name());
+    }
+    String ordering = !"id".equals(shape.sortField()) || shape.rangeFields().isEmpty()
+      ? shape.sortField()
+      : shape.rangeFields().get(0);
+    PersonColumns.Column orderingColumn = PersonColumns.of(ordering);
+    if (orderingColumn != null && !columns.contains(orderingColumn.name())) {
+      columns.add(orderingColumn.name());
+    }
+    if (!columns.contains("id")) {
+      columns.add("id");
+    }
+    return columns;
+  }
+
+  private static boolean startsWith(List<String> index, List<String> columns) {
+    if (index.size() < columns.size()) {
+      return false;
+    }
+    for (int i = 0; i < columns.size(); i++) {
+      if (!index.get(i).equals(columns.get(i).toLowerCase(Locale.ROOT))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private List<List<String>> existingIndexes() {
+    String sql = """
+      SELECT string_agg(a.attname, ',' ORDER BY k.position)
+      FROM pg_index i
+      CROSS JOIN LATERAL unnest(i.indkey::int2[]) WITH ORDINALITY AS k(attnum, position)
+      JOIN pg_attribute a ON a.attrelid = i.indrelid AND a.attnum = k.attnum
+      WHERE i.indrelid = 'people'::regclass
+      GROUP BY i.indexrelid
+      """;
+    List<?> rows = Shards.enabled() ? shardRows(sql) : deadline.apply(em.createNativeQuery(sql)).getResultList();
+    List<List<String>> indexes = new ArrayList<>();
+    for (Object row : rows) {
+      indexes.add(List.of(String.valueOf(row).split(",")));
+    }
+    return indexes;
+  }
+
+  private static List<String> shardRows(String sql) {
+    List<String> rows = new ArrayList<>();
+    try (Connection shard = Shards.connect(0);
+         Statement statement = shard.createStatement();
+         ResultSet rs = statement.executeQuery(sql)) {
+      while (rs.next()) {
+        rows.add(rs.getString(1));
+      }
+    } catch (SQLException e) {
+      throw new IllegalStateException("Failed to read the indexes of shard " + Shards.locations().get(0), e);
+    }
+    return rows;
+  }
+}
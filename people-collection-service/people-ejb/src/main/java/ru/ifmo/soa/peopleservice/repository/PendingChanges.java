@@ -0,0 +1,77 @@
+package ru.ifmo.soa.peopleservice.repository;
+
+import ru.ifmo.soa.peopleservice.cluster.PersonChangeEvent;
+import ru.ifmo.soa.peopleservice.cluster.PersonChangeListener;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Change events not yet applied to an in-memory copy of the people table. Events only mark ids; the copy
+ * re-reads those rows from the database, so the order in which events arrive does not matter. A bulk
+ * nationality delete or a lost notification requires a full reload.
+ */
+final class PendingChanges implements PersonChangeListener {
+
+  private final Set<Long> ids = ConcurrentHashMap.newKeySet();
+  private volatile boolean reloadAll = true;
+
+  @Override
+  public void onChange(PersonChangeEvent event) {
+    switch (event.type()) {
+      case CREATED, UPDATED, DELETED -> {
+        if (event.personId() != null) {
+          ids.add(event.personId());
+        }
+      }
+      case NATIONALITY_DELETED, RESYNC -> reloadAll = true;
+    }
+  }
+
+  boolean needsReload() {
+    return reloadAll;
+  }
+
+  boolean hasIds() {
+    return !ids.isEmpty();
+  }
+
+  /**
+   * Called as a full reload starts: everything pending is covered by it, and events arriving while it runs
+   * stay pending for afterwards.
+   */
+  void startReload() {
+    reloadAll = false;
+    ids.clear();
+  }
+
+  /**
+   * Takes the pending ids. They are removed before their rows are read, so an event arriving meanwhile stays
+   * pending for the next time.
+   */
+  List<Long> drainIds() {
+    List<Long> batch = new ArrayList<>();
+    for (Iterator<Long> iterator = ids.iterator(); iterator.hasNext(); ) {
+      batch.add(iterator.next());
+      iterator.remove();
+    }
+    return batch;
+  }
+
+  /**
+   * Called when re-reading drained ids failed. Reading a row again is harmless, so they simply stay pending.
+   */
+  void retry(List<Long> failed) {
+    ids.addAll(failed);
+  }
+
+  /**
+   * Called when a full reload failed: it has to run again.
+   */
+  void invalidate() {
+    reloadAll = true;
+  }
+}
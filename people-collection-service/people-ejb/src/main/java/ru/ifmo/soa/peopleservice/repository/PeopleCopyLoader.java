@@ -0,0 +1,66 @@
+package ru.ifmo.soa.peopleservice.repository;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.ejb.DependsOn;
+import jakarta.ejb.Lock;
+import jakarta.ejb.LockType;
+import jakarta.ejb.Schedule;
+import jakarta.ejb.Singleton;
+import jakarta.ejb.Startup;
+import jakarta.ejb.TransactionAttribute;
+import jakarta.ejb.TransactionAttributeType;
+import jakarta.inject.Inject;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Loads the in-memory copies of the {@code people} table ({@link ColumnarPeopleStore}, {@link EnumBitmapIndex})
+ * at startup and whenever they need a full reload, and re-reads changed rows into them once a second, off the
+ * request path: no request waits for a scan or a re-read, or runs one under its own deadline. Outside a
+ * transaction, so a large table is not bounded by the transaction timeout either.
+ */
+@Singleton
+@Startup
+@DependsOn("SchemaMigrator")
+@Lock(LockType.READ)
+@TransactionAttribute(TransactionAttributeType.NOT_SUPPORTED)
+public class PeopleCopyLoader {
+
+  private static final Logger LOG = Logger.getLogger(PeopleCopyLoader.class.getName());
+
+  @Inject
+  private ColumnarPeopleStore columnar;
+
+  @Inject
+  private EnumBitmapIndex bitmapIndex;
+
+  private final AtomicBoolean running = new AtomicBoolean();
+  private volatile boolean failing;
+
+  @PostConstruct
+  void load() {
+    reload();
+  }
+
+  @Schedule(second = "*", minute = "*", hour = "*", persistent = false)
+  public void reload() {
+    if (!running.compareAndSet(false, true)) {
+      return;
+    }
+    try {
+      columnar.reloadIfNeeded();
+      columnar.catchUp();
+      bitmapIndex.rebuildIfNeeded();
+      bitmapIndex.catchUp();
+      failing = false;
+    } catch (RuntimeException e) {
+      // retried on the next tick; searches and counts go to SQL meanwhile
+      LOG.log(failing ? Level.FINE : Level.WARNING, "Loading an in-memory copy of people failed", e);
+      failing = true;
+    } finally {
+      running.set(false);
+    }
+  }
+}
@@ -0,0 +1,76 @@
+package ru.ifmo.soa.peopleservice.repository;
+
+import ru.ifmo.soa.peopleservice.entities.CodedEnum;
+import ru.ifmo.soa.peopleservice.entities.Country;
+import ru.ifmo.soa.peopleservice.entities.EyeColor;
+import ru.ifmo.soa.peopleservice.entities.HairColor;
+
+import java.time.OffsetDateTime;
+import java.util.Map;
+
+/**
+ * Columns of the {@code people} table by API field path, for queries that have to be written in SQL.
+ */
+public final class PersonColumns {
+
+  public record Column(String name, Class<?> type) {
+
+    /**
+     * @return the name of the enum constant stored as {@code code} in this column, or {@code null} for
+     * {@code null}
+     */
+    public String enumName(Object code) {
+      if (code == null) {
+        return null;
+      }
+      for (Object constant : type.getEnumConstants()) {
+        if (((CodedEnum) constant).getCode() == ((Number) code).shortValue()) {
+          return ((Enum<?>) constant).name();
+        }
+      }
+      throw new IllegalStateException("Unknown " + type.getSimpleName() + " code in the database: " + code);
+    }
+  }
+
+  private static final Map<String, Column> COLUMNS = Map.ofEntries(
+    Map.entry("id", new Column("id", Long.class)),
+    Map.entry("name", new Column("name", String.class)),
+    Map.entry("creationDate", new Column("creation_date", OffsetDateTime.class)),
+    Map.entry("coordinates.x", new Column("coordinates_x", Integer.class)),
+    Map.entry("coordinates.y", new Column("coordinates_y", Integer.class)),
+    Map.entry("height", new Column("height", Float.class)),
+    Map.entry("eyeColor", new Column("eyeColor", EyeColor.class)),
+    Map.entry("hairColor", new Column("hairColor", HairColor.class)),
+    Map.entry("nationality", new Column("nationality", Country.class)),
+    Map.entry("location.x", new Column("location_x", Integer.class)),
+    Map.entry("location.y", new Column("location_y", Long.class)),
+    Map.entry("location.z", new Column("location_z", Integer.class)),
+    Map.entry("location.name", new Column("location_name", String.class))
+  );
+
+  private static final Map<String, String> OPERATORS = Map.of(
+    "eq", "=",
+    "ne", "<>",
+    "gt", ">",
+    "lt", "<",
+    "gte", ">=",
+    "lte", "<="
+  );
+
+  private PersonColumns() {
+  }
+
+  /**
+   * @return the column, or {@code null} for an unknown field
+   */
+  public static Column of(String field) {
+    return field == null ? null : COLUMNS.get(field);
+  }
+
+  /**
+   * @return the SQL operator, or {@code null} for an unknown one
+   */
+  public static String operator(String operator) {
+    return operator == null ? null : OPERATORS.get(operator);
+  }
+}
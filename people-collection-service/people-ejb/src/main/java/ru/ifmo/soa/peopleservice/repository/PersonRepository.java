@@ -1,35 +1,65 @@
 package ru.ifmo.soa.peopleservice.repository;
 
 import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.Query;
 import jakarta.persistence.TypedQuery;
 import jakarta.persistence.criteria.*;
 import ru.ifmo.soa.peopleservice.dto.FilterCriteriaDto;
 import ru.ifmo.soa.peopleservice.dto.FilterRuleDto;
+import ru.ifmo.soa.peopleservice.dto.PersonDto;
 import ru.ifmo.soa.peopleservice.entities.*;
 import ru.ifmo.soa.peopleservice.exceptions.NotFoundException;
 import ru.ifmo.soa.peopleservice.exceptions.SemanticException;
+import ru.ifmo.soa.peopleservice.util.CountMode;
 import ru.ifmo.soa.peopleservice.util.PathResolver;
 
 import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 
 @ApplicationScoped
 public class PersonRepository {
 
-  private static final int MAX_STORAGE_CAPACITY = 100000;
+  private static final int MAX_STORAGE_CAPACITY_PER_SHARD = 100000;
+  private static final long EXACT_COUNT_BELOW = Long.getLong("people.count.estimate.exact-below", 1000);
+  private static final int FIND_BY_IDS_BATCH = 1000;
 
   @PersistenceContext
   private EntityManager em;
 
+  @Inject
+  private QueryDeadline deadline;
+
+  @Inject
+  private EnumBitmapIndex bitmapIndex;
+
+  @Inject
+  private ColumnarPeopleStore columnar;
+
+  @Inject
+  private ReadRouting routing;
+
+  @Inject
+  private ChangeLogRepository changes;
+
+  private EntityManager reader() {
+    return routing.entityManager();
+  }
+
   public boolean isStorageFull() {
     long count = countAll();
-    return count >= MAX_STORAGE_CAPACITY;
+    return count >= (long) MAX_STORAGE_CAPACITY_PER_SHARD * Shards.count();
   }
 
   public boolean existsSimilarPerson(Person input) {
-    CriteriaBuilder cb = em.getCriteriaBuilder();
+    CriteriaBuilder cb = reader().getCriteriaBuilder();
     CriteriaQuery<Long> cq = cb.createQuery(Long.class);
     Root<Person> root = cq.from(Person.class);
     Predicate predicate = cb.and(
@@ -39,34 +69,227 @@ public class PersonRepository {
       cb.equal(root.get("eyeColor"), input.getEyeColor())
     );
     cq.select(cb.count(root)).where(predicate);
-    Long count = em.createQuery(cq).getSingleResult();
+    Long count = deadline.apply(reader().createQuery(cq)).getSingleResult();
     return count > 0;
   }
 
-  public List<Person> findAll(int page, int pageSize, PathResolver.SortInfo sortInfo) {
-    CriteriaBuilder cb = em.getCriteriaBuilder();
-    CriteriaQuery<Person> cq = cb.createQuery(Person.class);
+  /**
+   * A page of people selected straight into {@link PersonDto}: no entities are loaded, so there is nothing to
+   * register in the persistence context or map afterwards.
+   */
+  public List<PersonDto> findAll(int page, int pageSize, PathResolver.SortInfo sortInfo) {
+    return findWithFilters(null, page, pageSize, sortInfo);
+  }
+
+  public List<PersonDto> findWithFilters(FilterCriteriaDto criteria, int page, int pageSize, PathResolver.SortInfo sortInfo) {
+    if (columnar.serves(criteria, sortInfo)) {
+      return columnar.find(criteria, page, pageSize, sortInfo);
+    }
+    CriteriaBuilder cb = reader().getCriteriaBuilder();
+    CriteriaQuery<PersonDto> cq = cb.createQuery(PersonDto.class);
     Root<Person> root = cq.from(Person.class);
+    cq.select(dto(cb, root));
+    Predicate predicate = buildPredicate(root, cb, criteria);
+    if (predicate != null) {
+      cq.where(predicate);
+    }
     PathResolver.applySorting(cq, root, cb, sortInfo);
-    TypedQuery<Person> query = em.createQuery(cq);
+    TypedQuery<PersonDto> query = deadline.apply(reader().createQuery(cq));
     query.setFirstResult(page * pageSize);
     query.setMaxResults(pageSize);
     return query.getResultList();
   }
 
-  public List<Person> findWithFilters(FilterCriteriaDto criteria, int page, int pageSize, PathResolver.SortInfo sortInfo) {
-    CriteriaBuilder cb = em.getCriteriaBuilder();
-    CriteriaQuery<Person> cq = cb.createQuery(Person.class);
+  /**
+   * @return ids of up to {@code maxResults} people matching {@code criteria}, in the order of
+   * {@link #findWithFilters}
+   */
+  public List<Long> findIdsWithFilters(FilterCriteriaDto criteria, PathResolver.SortInfo sortInfo, int maxResults) {
+    CriteriaBuilder cb = reader().getCriteriaBuilder();
+    CriteriaQuery<Long> cq = cb.createQuery(Long.class);
     Root<Person> root = cq.from(Person.class);
+    cq.select(root.get("id"));
     Predicate predicate = buildPredicate(root, cb, criteria);
     if (predicate != null) {
       cq.where(predicate);
     }
     PathResolver.applySorting(cq, root, cb, sortInfo);
-    TypedQuery<Person> query = em.createQuery(cq);
-    query.setFirstResult(page * pageSize);
-    query.setMaxResults(pageSize);
-    return query.getResultList();
+    return deadline.apply(reader().createQuery(cq)).setMaxResults(maxResults).getResultList();
+  }
+
+  /**
+   * @return the people with {@code ids} that still exist, in the order of {@code ids}; read
+   * {@value #FIND_BY_IDS_BATCH} ids per query, since each id is a bind parameter
+   */
+  public List<PersonDto> findByIds(List<Long> ids) {
+    if (ids.isEmpty()) {
+      return List.of();
+    }
+    Map<Long, PersonDto> found = new HashMap<>();
+    for (int from = 0; from < ids.size(); from += FIND_BY_IDS_BATCH) {
+      CriteriaBuilder cb = reader().getCriteriaBuilder();
+      CriteriaQuery<PersonDto> cq = cb.createQuery(PersonDto.class);
+      Root<Person> root = cq.from(Person.class);
+      cq.select(dto(cb, root)).where(root.get("id").in(ids.subList(from, Math.min(ids.size(), from + FIND_BY_IDS_BATCH))));
+      for (PersonDto dto : deadline.apply(reader().createQuery(cq)).getResultList()) {
+        found.put(dto.getId(), dto);
+      }
+    }
+    List<PersonDto> people = new ArrayList<>(found.size());
+    for (Long id : ids) {
+      PersonDto dto = found.get(id);
+      if (dto != null) {
+        people.add(dto);
+      }
+    }
+    return people;
+  }
+
+  private static CompoundSelection<PersonDto> dto(CriteriaBuilder cb, Root<Person> root) {
+    Path<Object> coordinates = root.get("coordinates");
+    Path<Object> location = root.get("location");
+    return cb.construct(PersonDto.class,
+      root.get("id"), root.get("name"), coordinates.get("x"), coordinates.get("y"), root.get("creationDate"),
+      root.get("height"), root.get("eyeColor"), root.get("hairColor"), root.get("nationality"),
+      location.get("x"), location.get("y"), location.get("z"), location.get("name"), root.get("version"));
+  }
+
+  /**
+   * Asks the planner what {@link #findWithFilters} with the same arguments would cost, without running it.
+   *
+   * @return the estimate, or {@code null} if the filter cannot be written in SQL here; the criteria query
+   * then reports the problem itself
+   */
+  public PlanEstimate explainWithFilters(FilterCriteriaDto criteria, int page, int pageSize, PathResolver.SortInfo sortInfo) {
+    StringBuilder sql = new StringBuilder("EXPLAIN SELECT * FROM people");
+    List<Object> parameters = new ArrayList<>();
+    if (!appendWhere(sql, parameters, criteria)) {
+      return null;
+    }
+
+    PersonColumns.Column sortColumn = PersonColumns.of(sortInfo.getField() == null ? "id" : sortInfo.getField());
+    if (sortColumn == null) {
+      return null;
+    }
+    String direction = "desc".equals(sortInfo.getOrder()) ? " DESC" : " ASC";
+    sql.append(" ORDER BY ").append(sortColumn.name()).append(direction);
+    if (!"id".equals(sortColumn.name())) {
+      sql.append(", id").append(direction);
+    }
+    parameters.add((long) page * pageSize);
+    sql.append(" OFFSET ?").append(parameters.size());
+    parameters.add(pageSize);
+    sql.append(" LIMIT ?").append(parameters.size());
+    return explain(sql.toString(), parameters);
+  }
+
+  /**
+   * Counts the matching rows the way {@code mode} asks for. Estimates come from the planner: without
+   * filters that is {@code reltuples} scaled to the current table size, with filters the row estimate of
+   * the filtered scan. Small estimates are replaced with an exact count, which is cheap at that size.
+   * The columnar engine always counts exactly.
+   *
+   * @return the count, or {@code null} for {@link CountMode#NONE}
+   */
+  public TotalCount count(FilterCriteriaDto criteria, CountMode mode) {
+    if (mode == CountMode.NONE) {
+      return null;
+    }
+    if (mode == CountMode.ESTIMATE && !columnar.serves(criteria, null)) {
+      StringBuilder sql = new StringBuilder("EXPLAIN SELECT * FROM people");
+      List<Object> parameters = new ArrayList<>();
+      if (appendWhere(sql, parameters, criteria)) {
+        long estimate = explain(sql.toString(), parameters).rows();
+        if (estimate >= EXACT_COUNT_BELOW) {
+          return new TotalCount(estimate, true);
+        }
+      }
+    }
+    return new TotalCount(countWithFilters(criteria), false);
+  }
+
+  /**
+   * Counts the people matching {@code criteria} per value of each facet field, in one pass over the rows
+   * using {@code GROUPING SETS}. People without a value are not counted.
+   *
+   * @param facets enum fields, e.g. {@code eyeColor}
+   * @return counts by facet and value, with every value of the enum present
+   */
+  public Map<String, Map<String, Long>> countFacets(FilterCriteriaDto criteria, List<String> facets) {
+    if (columnar.serves(criteria, null)) {
+      return columnar.countFacets(criteria, facets);
+    }
+    Map<String, Map<String, Long>> result = new LinkedHashMap<>();
+    List<PersonColumns.Column> columns = new ArrayList<>();
+    for (String facet : facets) {
+      PersonColumns.Column column = PersonColumns.of(facet);
+      Map<String, Long> counts = new LinkedHashMap<>();
+      for (Object value : column.type().getEnumConstants()) {
+        counts.put(((Enum<?>) value).name(), 0L);
+      }
+      result.put(facet, counts);
+      columns.add(column);
+    }
+
+    StringBuilder sql = new StringBuilder("SELECT ");
+    for (PersonColumns.Column column : columns) {
+      sql.append(column.name()).append(", GROUPING(").append(column.name()).append("), ");
+    }
+    sql.append("count(*) FROM people");
+    List<Object> parameters = new ArrayList<>();
+    if (!appendWhere(sql, parameters, criteria)) {
+      throw new SemanticException("Facets cannot be computed for these filters");
+    }
+    sql.append(" GROUP BY GROUPING SETS (");
+    for (int i = 0; i < columns.size(); i++) {
+      sql.append(i == 0 ? "(" : ", (").append(columns.get(i).name()).append(')');
+    }
+    sql.append(')');
+
+    Query query = deadline.apply(reader().createNativeQuery(sql.toString()));
+    for (int i = 0; i < parameters.size(); i++) {
+      query.setParameter(i + 1, parameters.get(i));
+    }
+    for (Object row : query.getResultList()) {
+      Object[] values = (Object[]) row;
+      long count = ((Number) values[values.length - 1]).longValue();
+      for (int i = 0; i < columns.size(); i++) {
+        // GROUPING() is 0 for the column the row is grouped by
+        boolean groupedByThis = ((Number) values[2 * i + 1]).intValue() == 0;
+        if (groupedByThis && values[2 * i] != null) {
+          result.get(facets.get(i)).put(columns.get(i).enumName(values[2 * i]), count);
+        }
+      }
+    }
+    return result;
+  }
+
+  private boolean appendWhere(StringBuilder sql, List<Object> parameters, FilterCriteriaDto criteria) {
+    if (criteria == null || criteria.getFilters() == null) {
+      return true;
+    }
+    String separator = " WHERE ";
+    for (FilterRuleDto rule : criteria.getFilters()) {
+      PersonColumns.Column column = PersonColumns.of(rule.getField());
+      String operator = PersonColumns.operator(rule.getOperator());
+      if (column == null || operator == null || rule.getValue() == null) {
+        return false;
+      }
+      Object value = parseValue(column.type(), rule.getValue());
+      parameters.add(value instanceof CodedEnum constant ? constant.getCode() : value);
+      sql.append(separator).append(column.name()).append(' ').append(operator).append(" ?").append(parameters.size());
+      separator = " AND ";
+    }
+    return true;
+  }
+
+  private PlanEstimate explain(String sql, List<Object> parameters) {
+    Query query = deadline.apply(reader().createNativeQuery(sql));
+    for (int i = 0; i < parameters.size(); i++) {
+      query.setParameter(i + 1, parameters.get(i));
+    }
+    List<?> plan = query.getResultList();
+    return PlanEstimate.parse(String.valueOf(plan.get(0)));
   }
 
   private Predicate buildPredicate(Root<Person> root, CriteriaBuilder cb, FilterCriteriaDto criteria) {
@@ -129,7 +352,14 @@ public class PersonRepository {
   }
 
   public long countWithFilters(FilterCriteriaDto criteria) {
-    CriteriaBuilder cb = em.getCriteriaBuilder();
+    if (columnar.serves(criteria, null)) {
+      return columnar.count(criteria);
+    }
+    Long indexed = bitmapIndex.count(criteria);
+    if (indexed != null) {
+      return indexed;
+    }
+    CriteriaBuilder cb = reader().getCriteriaBuilder();
     CriteriaQuery<Long> cq = cb.createQuery(Long.class);
     Root<Person> root = cq.from(Person.class);
     Predicate predicate = buildPredicate(root, cb, criteria);
@@ -137,11 +367,11 @@ public class PersonRepository {
       cq.where(predicate);
     }
     cq.select(cb.count(root));
-    return em.createQuery(cq).getSingleResult();
+    return deadline.apply(reader().createQuery(cq)).getSingleResult();
   }
 
   public Person findById(Long id) {
-    Person person = em.find(Person.class, id);
+    Person person = reader().find(Person.class, id, deadline.hints());
     if (person == null) {
       throw new NotFoundException("No person found with the specified ID");
     }
@@ -152,8 +382,13 @@ public class PersonRepository {
     em.persist(person);
   }
 
+  /**
+   * Flushes right away, so the version is incremented before the caller maps the person, and a concurrent
+   * change shows up here as an {@link jakarta.persistence.OptimisticLockException}.
+   */
   public void update(Person person) {
     em.merge(person);
+    em.flush();
   }
 
   public void delete(Person person) {
@@ -161,53 +396,90 @@ public class PersonRepository {
   }
 
   public void deleteById(Long id) {
-    Person person = em.find(Person.class, id);
+    Person person = em.find(Person.class, id, deadline.hints());
     if (person != null) {
       em.remove(person);
     }
   }
 
-  public int deleteByNationality(Country nationality) {
-    String jpql = "DELETE FROM Person p WHERE p.nationality = :nationality";
-    return em.createQuery(jpql)
-      .setParameter("nationality", nationality)
-      .executeUpdate();
+  /**
+   * Empties the nationality's partition of {@code people} with {@code TRUNCATE} instead of deleting row by
+   * row; with shards, the partition on every shard. Writers are locked out first, so nobody can add to the
+   * partition between counting and truncating.
+   *
+   * @return the deleted people by shard and combination of enum attributes, shard by shard in a fixed order,
+   * for {@link EnumCountsRepository}
+   */
+  public List<EnumCountsRepository.Removed> deleteByNationality(Country nationality) {
+    List<String> tables = Shards.tables("people_" + nationality.name().toLowerCase(Locale.ROOT));
+    // foreign tables cannot be locked; every write to a shard goes through people here
+    String locked = Shards.enabled() ? "people IN SHARE MODE" : tables.get(0) + " IN ACCESS EXCLUSIVE MODE";
+    deadline.apply(em.createNativeQuery("LOCK TABLE " + locked)).executeUpdate();
+    // tableoid tells the shards apart; the smallest id of a shard stands for it
+    List<?> rows = deadline.apply(em.createNativeQuery("""
+        SELECT eyeColor, hairColor, count(*), min(min(id)) OVER (PARTITION BY tableoid)
+        FROM people
+        WHERE nationality = ?1
+        GROUP BY tableoid, eyeColor, hairColor
+        ORDER BY tableoid
+        """))
+      .setParameter(1, nationality.getCode())
+      .getResultList();
+    List<EnumCountsRepository.Removed> deleted = new ArrayList<>();
+    for (Object row : rows) {
+      Object[] columns = (Object[]) row;
+      EnumValues values = new EnumValues(
+        CodedEnum.fromCode(EyeColor.class, (Number) columns[0]),
+        CodedEnum.fromCode(HairColor.class, (Number) columns[1]),
+        nationality
+      );
+      deleted.add(new EnumCountsRepository.Removed(((Number) columns[3]).longValue(), values, ((Number) columns[2]).longValue()));
+    }
+    if (!deleted.isEmpty()) {
+      changes.nationalityDeleted(nationality);
+      deadline.apply(em.createNativeQuery("TRUNCATE " + String.join(", ", tables))).executeUpdate();
+    }
+    return deleted;
   }
 
-  public int deleteByLocation(Location location) {
+  /**
+   * @return the deleted person, or {@code null} if nobody lives there
+   */
+  public Person deleteByLocation(Location location) {
     String findJpql = "SELECT p FROM Person p WHERE p.location.x = :x AND p.location.y = :y AND p.location.z = :z ORDER BY p.id";
-    List<Person> people = em.createQuery(findJpql, Person.class)
+    List<Person> people = deadline.apply(em.createQuery(findJpql, Person.class))
       .setParameter("x", location.getX())
       .setParameter("y", location.getY())
       .setParameter("z", location.getZ())
       .setMaxResults(1)
       .getResultList();
-    int deletedCount = 0;
-    if (!people.isEmpty()) {
-      em.remove(people.get(0));
-      deletedCount = 1;
+    if (people.isEmpty()) {
+      return null;
     }
-    return deletedCount;
+    Person person = people.get(0);
+    em.remove(person);
+    return person;
   }
 
-  public List<Person> findWithLocationGreaterThan(Integer x, Long y, Integer z) {
-    CriteriaBuilder cb = em.getCriteriaBuilder();
-    CriteriaQuery<Person> cq = cb.createQuery(Person.class);
+  public List<PersonDto> findWithLocationGreaterThan(Integer x, Long y, Integer z) {
+    CriteriaBuilder cb = reader().getCriteriaBuilder();
+    CriteriaQuery<PersonDto> cq = cb.createQuery(PersonDto.class);
     Root<Person> root = cq.from(Person.class);
+    cq.select(dto(cb, root));
     Predicate predicate = cb.and(
       cb.greaterThan(root.get("location").get("x"), x),
       cb.greaterThan(root.get("location").get("y"), y),
       cb.greaterThan(root.get("location").get("z"), z)
     );
     cq.where(predicate);
-    return em.createQuery(cq).getResultList();
+    return deadline.apply(reader().createQuery(cq)).getResultList();
   }
 
   public long countAll() {
-    CriteriaBuilder cb = em.getCriteriaBuilder();
+    CriteriaBuilder cb = reader().getCriteriaBuilder();
     CriteriaQuery<Long> cq = cb.createQuery(Long.class);
     Root<Person> root = cq.from(Person.class);
     cq.select(cb.count(root));
-    return em.createQuery(cq).getSingleResult();
+    return deadline.apply(reader().createQuery(cq)).getSingleResult();
   }
 }
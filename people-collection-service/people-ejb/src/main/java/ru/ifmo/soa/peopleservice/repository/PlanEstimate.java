@@ -0,0 +1,23 @@
+package ru.ifmo.soa.peopleservice.repository;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Top node of a PostgreSQL plan: total cost in planner units and the estimated number of rows.
+ */
+public record PlanEstimate(double cost, long rows) {
+
+  private static final Pattern COST = Pattern.compile("cost=[\\d.]+\\.\\.([\\d.]+) rows=(\\d+)");
+
+  /**
+   * Parses the first line of {@code EXPLAIN} text output.
+   */
+  public static PlanEstimate parse(String planLine) {
+    Matcher matcher = COST.matcher(planLine);
+    if (!matcher.find()) {
+      throw new IllegalStateException("Unexpected EXPLAIN output: " + planLine);
+    }
+    return new PlanEstimate(Double.parseDouble(matcher.group(1)), Long.parseLong(matcher.group(2)));
+  }
+}
@@ -0,0 +1,144 @@
+package ru.ifmo.soa.peopleservice.repository;
+
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import ru.ifmo.soa.peopleservice.dto.FilterCriteriaDto;
+import ru.ifmo.soa.peopleservice.dto.FilterRuleDto;
+import ru.ifmo.soa.peopleservice.exceptions.SemanticException;
+import ru.ifmo.soa.peopleservice.util.CountMode;
+import ru.ifmo.soa.peopleservice.util.PathResolver;
+
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps expensive searches away from the database. The planner's estimate is cached per filter shape
+ * (fields, operators, sort and the order of magnitude of the offset; values are ignored), so the extra
+ * {@code EXPLAIN} round trip is paid once per shape rather than once per request.
+ * <p>
+ * Searches above the budget are downgraded: {@code countMode=exact} is answered with an estimated total
+ * count, and pages larger than {@code people.search.cost.downgraded-max-page-size} fail with 422, since a
+ * smaller page would start at another offset. Searches above the reject threshold fail with 422.
+ */
+@ApplicationScoped
+public class QueryCostGuard {
+
+  private static final boolean ENABLED = !Boolean.parseBoolean(System.getProperty("people.search.cost.disabled", "false"));
+  private static final double BUDGET = Double.parseDouble(System.getProperty("people.search.cost.budget", "5000"));
+  private static final double REJECT = Double.parseDouble(System.getProperty("people.search.cost.reject", "100000"));
+  private static final int DOWNGRADED_MAX_PAGE_SIZE = Integer.getInteger("people.search.cost.downgraded-max-page-size", 20);
+  private static final long CACHE_TTL_NANOS = TimeUnit.SECONDS.toNanos(Long.getLong("people.search.cost.cache-ttl-seconds", 300));
+  private static final int MAX_CACHED_SHAPES = 1000;
+
+  public record Verdict(double cost, boolean downgraded) {
+    public static final Verdict UNCHECKED = new Verdict(0, false);
+
+    public CountMode countMode(CountMode requested) {
+      return downgraded && requested == CountMode.EXACT ? CountMode.ESTIMATE : requested;
+    }
+  }
+
+  private record CachedCost(double cost, long expiresAt) {
+  }
+
+  @Inject
+  private PersonRepository repository;
+
+  @Inject
+  private ColumnarPeopleStore columnar;
+
+  private final Map<String, CachedCost> costs = new ConcurrentHashMap<>();
+
+  public Verdict check(FilterCriteriaDto criteria, PathResolver.SortInfo sortInfo, int page, int pageSize) {
+    // searches the columnar engine serves never reach the database
+    if (!ENABLED || columnar.serves(criteria, sortInfo)) {
+      return Verdict.UNCHECKED;
+    }
+    Double estimate = cost(criteria, sortInfo, page, pageSize);
+    if (estimate == null) {
+      return Verdict.UNCHECKED;
+    }
+    double cost = estimate;
+    rejectAbove(cost);
+    boolean downgraded = cost > BUDGET;
+    if (downgraded && pageSize > DOWNGRADED_MAX_PAGE_SIZE) {
+      throw new SemanticException(String.format(
+        "Search is expensive (estimated cost %.0f, budget %.0f). Request at most %d people per page",
+        cost, BUDGET, DOWNGRADED_MAX_PAGE_SIZE));
+    }
+    return new Verdict(cost, downgraded);
+  }
+
+  /**
+   * Guards the id query of a search snapshot, which always runs in SQL and reads up to {@code maxRows} ids in
+   * order. Within the budget it may read them all; above it the snapshot keeps only the ids up to the end of
+   * page {@code page}, and reading those is held to the reject threshold like a search.
+   *
+   * @return how many ids the snapshot may read
+   */
+  public int snapshotRows(FilterCriteriaDto criteria, PathResolver.SortInfo sortInfo, int page, int pageSize, int maxRows) {
+    if (!ENABLED) {
+      return maxRows;
+    }
+    Double all = cost(criteria, sortInfo, 0, maxRows);
+    if (all == null || all <= BUDGET) {
+      return maxRows;
+    }
+    int rows = (int) Math.min(maxRows, (long) (page + 1) * pageSize);
+    Double partial = cost(criteria, sortInfo, 0, rows);
+    if (partial != null) {
+      rejectAbove(partial);
+    }
+    return rows;
+  }
+
+  /**
+   * @return the planner's cost of reading page {@code page} of {@code pageSize} rows, cached per shape, or
+   * {@code null} if the planner gave none
+   */
+  private Double cost(FilterCriteriaDto criteria, PathResolver.SortInfo sortInfo, int page, int pageSize) {
+    String shape = shapeOf(criteria, sortInfo, (long) page * pageSize + pageSize);
+    long now = System.nanoTime();
+    CachedCost cached = costs.get(shape);
+    if (cached != null && cached.expiresAt() - now > 0) {
+      return cached.cost();
+    }
+    PlanEstimate estimate = repository.explainWithFilters(criteria, page, pageSize, sortInfo);
+    if (estimate == null) {
+      return null;
+    }
+    remember(shape, new CachedCost(estimate.cost(), now + CACHE_TTL_NANOS), now);
+    return estimate.cost();
+  }
+
+  private static void rejectAbove(double cost) {
+    if (cost > REJECT) {
+      throw new SemanticException(String.format(
+        "Search is too expensive (estimated cost %.0f, limit %.0f). Narrow the filters or sort by an indexed field",
+        cost, REJECT));
+    }
+  }
+
+  private void remember(String shape, CachedCost cost, long now) {
+    if (costs.size() >= MAX_CACHED_SHAPES) {
+      costs.values().removeIf(entry -> entry.expiresAt() - now <= 0);
+      if (costs.size() >= MAX_CACHED_SHAPES) {
+        costs.clear();
+      }
+    }
+    costs.put(shape, cost);
+  }
+
+  private static String shapeOf(FilterCriteriaDto criteria, PathResolver.SortInfo sortInfo, long rowsToRead) {
+    TreeSet<String> rules = new TreeSet<>();
+    if (criteria != null && criteria.getFilters() != null) {
+      for (FilterRuleDto rule : criteria.getFilters()) {
+        rules.add(rule.getField() + ':' + rule.getOperator());
+      }
+    }
+    int magnitude = 64 - Long.numberOfLeadingZeros(rowsToRead);
+    return String.join(",", rules) + '|' + sortInfo.getField() + ':' + sortInfo.getOrder() + '|' + magnitude;
+  }
+}
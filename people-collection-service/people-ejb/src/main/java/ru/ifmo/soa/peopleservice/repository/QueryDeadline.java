@@ -0,0 +1,102 @@
+package ru.ifmo.soa.peopleservice.repository;
+
+import jakarta.annotation.Resource;
+import jakarta.enterprise.context.RequestScoped;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.Query;
+import jakarta.transaction.TransactionSynchronizationRegistry;
+import ru.ifmo.soa.peopleservice.exceptions.GatewayTimeoutException;
+import ru.ifmo.soa.peopleservice.util.CallContext;
+
+import java.sql.SQLException;
+import java.util.Map;
+
+/**
+ * Deadline of the current bean invocation. {@link #start} bounds every statement of the transaction with
+ * {@code statement_timeout}, {@link #apply} adds the remaining time to a query as a JDBC timeout; either way
+ * PostgreSQL cancels the statement and the bean reports a {@link GatewayTimeoutException}.
+ */
+@RequestScoped
+public class QueryDeadline {
+
+  private static final String TIMEOUT_HINT = "jakarta.persistence.query.timeout";
+  private static final String QUERY_CANCELED = "57014";
+
+  @PersistenceContext
+  private EntityManager em;
+
+  @Resource(lookup = "java:comp/TransactionSynchronizationRegistry")
+  private TransactionSynchronizationRegistry transactionRegistry;
+
+  private CallContext context = CallContext.none();
+
+  public void start(CallContext context) {
+    track(context);
+    limit(em);
+  }
+
+  /**
+   * Records the deadline without touching the database yet, for calls that only know later which database
+   * they read from (see {@link ReadRouting}).
+   */
+  public void track(CallContext context) {
+    this.context = context != null ? context : CallContext.none();
+  }
+
+  /**
+   * Bounds every statement of {@code target}'s current transaction with {@code statement_timeout}.
+   */
+  public void limit(EntityManager target) {
+    if (!context.hasDeadline()) {
+      return;
+    }
+    target.createNativeQuery("SELECT set_config('statement_timeout', :timeout, true)")
+      .setParameter("timeout", remainingMillis() + "ms")
+      .getSingleResult();
+  }
+
+  public <Q extends Query> Q apply(Q query) {
+    if (context.hasDeadline()) {
+      query.setHint(TIMEOUT_HINT, (int) Math.min(Integer.MAX_VALUE, remainingMillis()));
+    }
+    return query;
+  }
+
+  public Map<String, Object> hints() {
+    if (!context.hasDeadline()) {
+      return Map.of();
+    }
+    return Map.of(TIMEOUT_HINT, (int) Math.min(Integer.MAX_VALUE, remainingMillis()));
+  }
+
+  /**
+   * Replaces a statement cancellation anywhere in the cause chain with a {@link GatewayTimeoutException}
+   * and marks the transaction for rollback, since PostgreSQL has already aborted it.
+   */
+  public Exception translate(Exception e) {
+    for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+      boolean timedOut = cause instanceof GatewayTimeoutException
+        || cause instanceof jakarta.persistence.QueryTimeoutException
+        || (cause instanceof SQLException sql && QUERY_CANCELED.equals(sql.getSQLState()));
+      if (timedOut) {
+        if (transactionRegistry.getTransactionKey() != null) {
+          transactionRegistry.setRollbackOnly();
+        }
+        return cause instanceof GatewayTimeoutException gte ? gte : new GatewayTimeoutException("Request deadline exceeded");
+      }
+      if (cause.getCause() == cause) {
+        break;
+      }
+    }
+    return e;
+  }
+
+  private long remainingMillis() {
+    long remaining = context.remainingMillis();
+    if (remaining <= 0) {
+      throw new GatewayTimeoutException("Request deadline exceeded");
+    }
+    return remaining;
+  }
+}
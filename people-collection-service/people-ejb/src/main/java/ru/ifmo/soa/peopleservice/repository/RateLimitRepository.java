@@ -0,0 +1,48 @@
+package ru.ifmo.soa.peopleservice.repository;
+
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+
+@ApplicationScoped
+public class RateLimitRepository {
+
+  @PersistenceContext
+  private EntityManager em;
+
+  /**
+   * Brings the shared bucket up to date and locks its row until the end of the transaction.
+   * A missing bucket is created full.
+   *
+   * @return tokens currently available
+   */
+  public double refill(String clientKey, long capacity, double tokensPerSecond) {
+    String sql = """
+      INSERT INTO rate_limit_buckets AS b (client_key, tokens, refilled_at)
+      VALUES (:clientKey, :capacity, now())
+      ON CONFLICT (client_key) DO UPDATE
+      SET tokens = LEAST(:capacity, b.tokens + EXTRACT(EPOCH FROM (now() - b.refilled_at)) * :rate),
+          refilled_at = now()
+      RETURNING tokens
+      """;
+    Number tokens = (Number) em.createNativeQuery(sql)
+      .setParameter("clientKey", clientKey)
+      .setParameter("capacity", capacity)
+      .setParameter("rate", tokensPerSecond)
+      .getSingleResult();
+    return tokens.doubleValue();
+  }
+
+  public void consume(String clientKey, long tokens) {
+    em.createNativeQuery("UPDATE rate_limit_buckets SET tokens = tokens - :tokens WHERE client_key = :clientKey")
+      .setParameter("tokens", tokens)
+      .setParameter("clientKey", clientKey)
+      .executeUpdate();
+  }
+
+  public int deleteIdle(long idleSeconds) {
+    return em.createNativeQuery("DELETE FROM rate_limit_buckets WHERE refilled_at < now() - make_interval(secs => :idle)")
+      .setParameter("idle", idleSeconds)
+      .executeUpdate();
+  }
+}
@@ -0,0 +1,88 @@
+package ru.ifmo.soa.peopleservice.repository;
+
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.RequestScoped;
+import jakarta.inject.Inject;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.PersistenceContext;
+import org.hibernate.FlushMode;
+import org.hibernate.Session;
+import ru.ifmo.soa.peopleservice.util.CallContext;
+
+/**
+ * Which database the current bean invocation reads from. Read-only beans call {@link #startReadOnly} instead
+ * of {@link QueryDeadline#start}, and their reads may then go to a replica (see {@link ReplicaRouting});
+ * everything else, and calls made {@link CallContext#onPrimary on the primary}, read from the primary.
+ * Beans that change people call {@link #wrote}.
+ *
+ * <p>Read-only invocations load entities read-only and never flush, so Hibernate keeps no loaded-state copy
+ * of each entity for dirty checking and does not scan the persistence context before every query. That is
+ * expected to lower the heap used by a large page and the time spent before its count query, but it has not
+ * been measured against the previous behaviour; the setting can be dropped without any other change if
+ * measurement shows no gain.
+ */
+@RequestScoped
+public class ReadRouting {
+
+  @PersistenceContext
+  private EntityManager em;
+
+  @Inject
+  private ReplicaRouting replicas;
+
+  @Inject
+  private QueryDeadline deadline;
+
+  private boolean readOnly;
+  private boolean onPrimary;
+  private String clientKey;
+  private EntityManager reader;
+
+  public void startReadOnly(CallContext context) {
+    deadline.track(context);
+    readOnly = true;
+    onPrimary = context != null && context.isOnPrimary();
+    clientKey = context != null ? context.clientKey() : null;
+  }
+
+  public void wrote(CallContext context) {
+    replicas.recordWrite(context != null ? context.clientKey() : null);
+  }
+
+  /**
+   * @return the entity manager for reads, chosen on first use and kept for the rest of the invocation, so all
+   * reads see the same database
+   */
+  public EntityManager entityManager() {
+    if (reader == null) {
+      EntityManagerFactory replica = readOnly && !onPrimary ? replicas.choose(clientKey) : null;
+      if (replica == null) {
+        reader = em;
+      } else {
+        reader = replica.createEntityManager();
+        // one snapshot for the page and its count
+        reader.getTransaction().begin();
+        reader.createNativeQuery("SET TRANSACTION ISOLATION LEVEL REPEATABLE READ, READ ONLY").executeUpdate();
+      }
+      if (readOnly) {
+        // nothing read here is written back: no snapshots for dirty checking and no flushes before queries
+        Session session = reader.unwrap(Session.class);
+        session.setDefaultReadOnly(true);
+        session.setHibernateFlushMode(FlushMode.MANUAL);
+        deadline.limit(reader);
+      }
+    }
+    return reader;
+  }
+
+  @PreDestroy
+  void close() {
+    if (reader != null && reader != em) {
+      if (reader.getTransaction().isActive()) {
+        reader.getTransaction().rollback();
+      }
+      reader.close();
+    }
+  }
+}
@@ -0,0 +1,160 @@
+package ru.ifmo.soa.peopleservice.repository;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.Persistence;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Read replicas from {@code people.read.replicas}, a comma-separated list of JNDI names of non-JTA datasources
+ * (replica connections must not join the bean's JTA transaction). Each gets its own entity manager factory
+ * for {@code peoplePU} with resource-local transactions.
+ * <p>
+ * Reads go round-robin to replicas whose replay lag is within {@code people.read.replica.max-lag-ms},
+ * checked at most once a second per replica. A client that wrote within the last
+ * {@code people.read.replica.read-your-writes-ms} reads from the primary, so it sees its own changes; this is
+ * tracked per node.
+ */
+@ApplicationScoped
+public class ReplicaRouting {
+
+  private static final Logger LOG = Logger.getLogger(ReplicaRouting.class.getName());
+
+  private static final String REPLICAS = System.getProperty("people.read.replicas", "");
+  private static final long READ_YOUR_WRITES_NANOS = TimeUnit.MILLISECONDS.toNanos(Long.getLong("people.read.replica.read-your-writes-ms", 5000));
+  private static final long MAX_LAG_MS = Long.getLong("people.read.replica.max-lag-ms", 1000);
+  private static final long HEALTH_CHECK_NANOS = TimeUnit.SECONDS.toNanos(1);
+  private static final int MAX_TRACKED_WRITERS = 10_000;
+
+  private final List<Replica> replicas = new ArrayList<>();
+  private final Map<String, Long> recentWriters = new ConcurrentHashMap<>();
+  private final AtomicInteger next = new AtomicInteger();
+
+  @PostConstruct
+  void connect() {
+    for (String entry : REPLICAS.split(",")) {
+      String jndiName = entry.strip();
+      if (jndiName.isEmpty()) {
+        continue;
+      }
+      try {
+        replicas.add(new Replica(jndiName, Persistence.createEntityManagerFactory("peoplePU", Map.of(
+          "jakarta.persistence.transactionType", "RESOURCE_LOCAL",
+          "jakarta.persistence.nonJtaDataSource", jndiName,
+          "hibernate.hbm2ddl.auto", "none"
+        ))));
+      } catch (RuntimeException e) {
+        LOG.log(Level.WARNING, "Read replica " + jndiName + " is unavailable, reads stay on the primary", e);
+      }
+    }
+  }
+
+  @PreDestroy
+  void close() {
+    for (Replica replica : replicas) {
+      replica.factory.close();
+    }
+  }
+
+  public void recordWrite(String clientKey) {
+    if (clientKey == null || replicas.isEmpty()) {
+      return;
+    }
+    long now = System.nanoTime();
+    if (recentWriters.size() >= MAX_TRACKED_WRITERS) {
+      recentWriters.values().removeIf(until -> until - now <= 0);
+    }
+    recentWriters.put(clientKey, now + READ_YOUR_WRITES_NANOS);
+  }
+
+  /**
+   * @return the replica to read from, or {@code null} to read from the primary
+   */
+  public EntityManagerFactory choose(String clientKey) {
+    if (replicas.isEmpty()) {
+      return null;
+    }
+    long now = System.nanoTime();
+    if (clientKey != null) {
+      Long until = recentWriters.get(clientKey);
+      if (until != null) {
+        if (until - now > 0) {
+          return null;
+        }
+        recentWriters.remove(clientKey, until);
+      }
+    }
+    int start = Math.floorMod(next.getAndIncrement(), replicas.size());
+    for (int i = 0; i < replicas.size(); i++) {
+      Replica replica = replicas.get((start + i) % replicas.size());
+      if (replica.healthy(now)) {
+        return replica.factory;
+      }
+    }
+    return null;
+  }
+
+  private static final class Replica {
+    private final String jndiName;
+    private final EntityManagerFactory factory;
+    private final ReentrantLock checking = new ReentrantLock();
+    private volatile boolean healthy;
+    private volatile long checkedAt;
+
+    Replica(String jndiName, EntityManagerFactory factory) {
+      this.jndiName = jndiName;
+      this.factory = factory;
+      this.checkedAt = System.nanoTime() - HEALTH_CHECK_NANOS;
+    }
+
+    /**
+     * One caller re-checks a stale result while the others keep using it.
+     */
+    boolean healthy(long now) {
+      if (now - checkedAt >= HEALTH_CHECK_NANOS && checking.tryLock()) {
+        try {
+          healthy = lagMillis() <= MAX_LAG_MS;
+        } catch (RuntimeException e) {
+          if (healthy) {
+            LOG.log(Level.WARNING, "Read replica " + jndiName + " failed its health check", e);
+          }
+          healthy = false;
+        } finally {
+          checkedAt = System.nanoTime();
+          checking.unlock();
+        }
+      }
+      return healthy;
+    }
+
+    /**
+     * Zero when everything received has been replayed, so an idle primary does not make the replica look
+     * behind.
+     */
+    private long lagMillis() {
+      EntityManager em = factory.createEntityManager();
+      try {
+        Object lag = em.createNativeQuery("""
+          SELECT CASE
+            WHEN pg_last_wal_receive_lsn() = pg_last_wal_replay_lsn() THEN 0
+            ELSE COALESCE(extract(epoch FROM now() - pg_last_xact_replay_timestamp()) * 1000, 0)
+          END""").getSingleResult();
+        return ((Number) lag).longValue();
+      } finally {
+        em.close();
+      }
+    }
+  }
+}
@@ -0,0 +1,102 @@
+package ru.ifmo.soa.peopleservice.repository;
+
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import ru.ifmo.soa.peopleservice.exceptions.GoneException;
+import ru.ifmo.soa.peopleservice.exceptions.NotFoundException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Ordered ids of an async search, kept in {@code search_snapshots} and {@code search_snapshot_ids} so its
+ * results can be paged without running the filter again. Pages hold the people as they are now; people
+ * deleted since the search are left out.
+ */
+@ApplicationScoped
+public class SearchSnapshotRepository {
+
+  private static final int INSERT_BATCH = 5000;
+
+  /**
+   * @param ids ids of one page, in order
+   * @param total number of ids in the snapshot
+   * @param truncated the search matched more people than the snapshot holds
+   */
+  public record Page(List<Long> ids, long total, boolean truncated) {
+  }
+
+  @PersistenceContext
+  private EntityManager em;
+
+  @Inject
+  private QueryDeadline deadline;
+
+  public void create(String taskId, List<Long> ids, boolean truncated, long ttlSeconds) {
+    deadline.apply(em.createNativeQuery(
+        "INSERT INTO search_snapshots (task_id, total, truncated, expires_at) VALUES (?1, ?2, ?3, now() + make_interval(secs => ?4))"))
+      .setParameter(1, taskId)
+      .setParameter(2, ids.size())
+      .setParameter(3, truncated)
+      .setParameter(4, ttlSeconds)
+      .executeUpdate();
+    for (int from = 0; from < ids.size(); from += INSERT_BATCH) {
+      List<Long> batch = ids.subList(from, Math.min(ids.size(), from + INSERT_BATCH));
+      // one statement per batch; the ids travel as a single text parameter
+      deadline.apply(em.createNativeQuery("""
+          INSERT INTO search_snapshot_ids (task_id, position, person_id)
+          SELECT ?1, ?2 + t.ordinality - 1, t.id
+          FROM unnest(string_to_array(?3, ',')::bigint[]) WITH ORDINALITY AS t(id, ordinality)
+          """))
+        .setParameter(1, taskId)
+        .setParameter(2, from)
+        .setParameter(3, batch.stream().map(String::valueOf).collect(Collectors.joining(",")))
+        .executeUpdate();
+    }
+  }
+
+  /**
+   * @throws NotFoundException if there is no such snapshot, or it is still being written
+   * @throws GoneException if the snapshot has expired
+   */
+  public Page page(String taskId, int page, int pageSize) {
+    List<?> headers = deadline.apply(em.createNativeQuery(
+        "SELECT total, truncated, expires_at > now() FROM search_snapshots WHERE task_id = ?1"))
+      .setParameter(1, taskId)
+      .getResultList();
+    if (headers.isEmpty()) {
+      throw new NotFoundException("No search results for task " + taskId + ", or they are not ready yet");
+    }
+    Object[] header = (Object[]) headers.get(0);
+    if (!(Boolean) header[2]) {
+      throw new GoneException("Search results for task " + taskId + " have expired");
+    }
+    long total = ((Number) header[0]).longValue();
+    long from = (long) page * pageSize;
+    List<Long> ids = new ArrayList<>();
+    if (pageSize > 0 && from < total) {
+      List<?> rows = deadline.apply(em.createNativeQuery(
+          "SELECT person_id FROM search_snapshot_ids WHERE task_id = ?1 AND position >= ?2 AND position < ?3 ORDER BY position"))
+        .setParameter(1, taskId)
+        .setParameter(2, from)
+        .setParameter(3, from + pageSize)
+        .getResultList();
+      for (Object row : rows) {
+        ids.add(((Number) row).longValue());
+      }
+    }
+    return new Page(ids, total, (Boolean) header[1]);
+  }
+
+  /**
+   * Deletes snapshots that expired more than {@code graceSeconds} ago; until then they answer {@code 410}.
+   */
+  public int deleteExpired(long graceSeconds) {
+    return em.createNativeQuery("DELETE FROM search_snapshots WHERE expires_at < now() - make_interval(secs => ?1)")
+      .setParameter(1, graceSeconds)
+      .executeUpdate();
+  }
+}
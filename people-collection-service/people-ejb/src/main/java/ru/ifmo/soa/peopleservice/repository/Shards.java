@@ -0,0 +1,139 @@
+package ru.ifmo.soa.peopleservice.repository;
+
+import javax.naming.InitialContext;
+import javax.naming.NamingException;
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Shard databases from {@code people.shards}, a comma-separated list of {@code host:port/database}. When the
+ * list is empty, {@code people} lives in the main database only. Otherwise {@code people} in the main
+ * database is hash-partitioned by id into {@code postgres_fdw} foreign tables, one per shard, in the order
+ * listed; {@link ru.ifmo.soa.peopleservice.migration.ShardManager} sets this up.
+ * <p>
+ * The application itself reaches a shard directly only for what the foreign tables cannot do (its schema and
+ * its catalog), through the datasource of that shard in {@code people.shards.datasources}: JNDI names in the
+ * same order as {@code people.shards}, of non-JTA datasources declared in WildFly with their own credentials.
+ * The main database connects to the shards as {@code people.shards.user} without a password in its user
+ * mappings; the shards have to accept it by a password file on the main database's host
+ * ({@code people.shards.passfile}, or the server account's {@code ~/.pgpass}), a certificate or a trusted network.
+ */
+public final class Shards {
+
+  public record Location(String host, int port, String database) {
+
+    @Override
+    public String toString() {
+      return host + ':' + port + '/' + database;
+    }
+  }
+
+  private static final List<Location> LOCATIONS = parse(System.getProperty("people.shards", ""));
+  private static final List<String> DATASOURCES = names(System.getProperty("people.shards.datasources", ""));
+  private static final String USER = System.getProperty("people.shards.user", System.getenv().getOrDefault("POSTGRES_USER", "postgres"));
+  private static final String PASSFILE = System.getProperty("people.shards.passfile");
+
+  private Shards() {
+  }
+
+  public static boolean enabled() {
+    return !LOCATIONS.isEmpty();
+  }
+
+  /**
+   * @return the number of databases holding people, 1 without sharding
+   */
+  public static int count() {
+    return Math.max(1, LOCATIONS.size());
+  }
+
+  public static List<Location> locations() {
+    return LOCATIONS;
+  }
+
+  /**
+   * @return the user the main database connects to shards as
+   */
+  public static String user() {
+    return USER;
+  }
+
+  /**
+   * @return the password file, on the main database's host, that it reads the shard passwords from, or
+   * {@code null} for the default of its server account
+   */
+  public static String passfile() {
+    return PASSFILE;
+  }
+
+  /**
+   * Opens a connection to shard {@code shard} from its datasource in {@code people.shards.datasources}.
+   */
+  public static Connection connect(int shard) throws SQLException {
+    if (DATASOURCES.size() != LOCATIONS.size()) {
+      throw new IllegalStateException("people.shards.datasources must name a datasource for each of the "
+        + LOCATIONS.size() + " people.shards, got " + DATASOURCES);
+    }
+    try {
+      return InitialContext.<DataSource>doLookup(DATASOURCES.get(shard)).getConnection();
+    } catch (NamingException e) {
+      throw new IllegalStateException("No datasource " + DATASOURCES.get(shard) + " for shard " + LOCATIONS.get(shard), e);
+    }
+  }
+
+  /**
+   * @return the schema of the main database with the foreign tables of shard {@code shard}
+   */
+  public static String schema(int shard) {
+    return "people_shard_" + shard;
+  }
+
+  /**
+   * @return the table or tables holding the people of {@code partition}, a partition of {@code people}
+   * such as {@code people_china}
+   */
+  public static List<String> tables(String partition) {
+    if (!enabled()) {
+      return List.of(partition);
+    }
+    List<String> tables = new ArrayList<>();
+    for (int shard = 0; shard < LOCATIONS.size(); shard++) {
+      tables.add(schema(shard) + '.' + partition);
+    }
+    return tables;
+  }
+
+  private static List<String> names(String value) {
+    List<String> names = new ArrayList<>();
+    for (String entry : value.split(",")) {
+      if (!entry.isBlank()) {
+        names.add(entry.strip());
+      }
+    }
+    return List.copyOf(names);
+  }
+
+  private static List<Location> parse(String value) {
+    List<Location> locations = new ArrayList<>();
+    for (String entry : value.split(",")) {
+      String location = entry.strip();
+      if (location.isEmpty()) {
+        continue;
+      }
+      int colon = location.indexOf(':');
+      int slash = location.indexOf('/', colon + 1);
+      if (colon <= 0 || slash <= colon + 1 || slash == location.length() - 1) {
+        throw new IllegalStateException("people.shards entries must look like host:port/database, got " + location);
+      }
+      locations.add(new Location(
+        location.substring(0, colon),
+        Integer.parseInt(location.substring(colon + 1, slash)),
+        location.substring(slash + 1)
+      ));
+    }
+    return List.copyOf(locations);
+  }
+}
@@ -0,0 +1,7 @@
+package ru.ifmo.soa.peopleservice.repository;
+
+/**
+ * Number of rows matching a query, either counted or estimated by the planner.
+ */
+public record TotalCount(long value, boolean approximate) {
+}
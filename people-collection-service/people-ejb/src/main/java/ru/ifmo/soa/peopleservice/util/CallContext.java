@@ -0,0 +1,72 @@
+package ru.ifmo.soa.peopleservice.util;
+
+import java.io.Serial;
+import java.io.Serializable;
+import java.time.Duration;
+
+/**
+ * Per-call metadata passed from people-web into the beans alongside the regular arguments.
+ */
+public final class CallContext implements Serializable {
+
+  @Serial
+  private static final long serialVersionUID = 1L;
+
+  private static final CallContext NONE = new CallContext(null, null, false);
+
+  private final Long deadlineEpochMillis;
+  private final String clientKey;
+  private final boolean primary;
+
+  private CallContext(Long deadlineEpochMillis, String clientKey, boolean primary) {
+    this.deadlineEpochMillis = deadlineEpochMillis;
+    this.clientKey = clientKey;
+    this.primary = primary;
+  }
+
+  public static CallContext none() {
+    return NONE;
+  }
+
+  public static CallContext withTimeout(Duration timeout) {
+    return new CallContext(System.currentTimeMillis() + timeout.toMillis(), null, false);
+  }
+
+  /**
+   * @param clientKey who is calling, as the rate limiter identifies clients; reads after this client's own
+   * writes are served from the primary database
+   */
+  public CallContext withClient(String clientKey) {
+    return new CallContext(deadlineEpochMillis, clientKey, primary);
+  }
+
+  /**
+   * Reads of this call go to the primary database even where a replica could serve them, for callers that
+   * keep what they read beyond the request.
+   */
+  public CallContext onPrimary() {
+    return new CallContext(deadlineEpochMillis, clientKey, true);
+  }
+
+  public boolean isOnPrimary() {
+    return primary;
+  }
+
+  /**
+   * @return the caller, or {@code null} if unknown
+   */
+  public String clientKey() {
+    return clientKey;
+  }
+
+  public boolean hasDeadline() {
+    return deadlineEpochMillis != null;
+  }
+
+  /**
+   * Milliseconds left until the deadline, zero or negative once it has passed.
+   */
+  public long remainingMillis() {
+    return hasDeadline() ? deadlineEpochMillis - System.currentTimeMillis() : Long.MAX_VALUE;
+  }
+}
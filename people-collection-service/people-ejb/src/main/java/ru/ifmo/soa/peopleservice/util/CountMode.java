@@ -0,0 +1,24 @@
+package ru.ifmo.soa.peopleservice.util;
+
+import ru.ifmo.soa.peopleservice.exceptions.BadRequestException;
+
+import java.util.Locale;
+
+/**
+ * How a paged response computes {@code totalCount}: an exact {@code count(*)}, a planner estimate,
+ * or not at all.
+ */
+public enum CountMode {
+  EXACT, ESTIMATE, NONE;
+
+  public static CountMode parse(String value) {
+    if (value == null || value.isBlank()) {
+      return EXACT;
+    }
+    try {
+      return valueOf(value.trim().toUpperCase(Locale.ROOT));
+    } catch (IllegalArgumentException e) {
+      throw new BadRequestException("Invalid countMode: " + value + ". Expected exact, estimate or none");
+    }
+  }
+}
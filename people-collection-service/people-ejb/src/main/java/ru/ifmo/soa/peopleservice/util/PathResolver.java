@@ -2,6 +2,8 @@ package ru.ifmo.soa.peopleservice.util;
 
 import jakarta.persistence.criteria.*;
 
+import java.util.List;
+
 public class PathResolver {
 
   public static <T> Path<Object> getPath(Root<T> root, String field) {
@@ -13,16 +15,18 @@ public class PathResolver {
     return path;
   }
 
-  public static <T> void applySorting(CriteriaQuery<T> cq, Root<T> root, CriteriaBuilder cb, SortInfo sortInfo) {
+  public static void applySorting(CriteriaQuery<?> cq, Root<?> root, CriteriaBuilder cb, SortInfo sortInfo) {
     if (sortInfo.getField() == null) {
       cq.orderBy(cb.asc(root.get("id")));
       return;
     }
     Path<Object> path = getPath(root, sortInfo.getField());
+    // id breaks ties, so equal values never move between pages and the (field, id) indexes apply
+    boolean idOnly = "id".equals(sortInfo.getField());
     if ("desc".equals(sortInfo.getOrder())) {
-      cq.orderBy(cb.desc(path));
+      cq.orderBy(idOnly ? List.of(cb.desc(path)) : List.of(cb.desc(path), cb.desc(root.get("id"))));
     } else {
-      cq.orderBy(cb.asc(path));
+      cq.orderBy(idOnly ? List.of(cb.asc(path)) : List.of(cb.asc(path), cb.asc(root.get("id"))));
     }
   }
 
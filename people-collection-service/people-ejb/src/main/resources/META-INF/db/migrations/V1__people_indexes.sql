@@ -0,0 +1,20 @@
+-- Every sortable field gets a (field, id) index: PathResolver orders by id after the requested field,
+-- so a page is read straight from the index and paging stays stable across equal values.
+CREATE INDEX IF NOT EXISTS people_name_id_idx ON people (name, id);
+CREATE INDEX IF NOT EXISTS people_creation_date_id_idx ON people (creation_date, id);
+CREATE INDEX IF NOT EXISTS people_coordinates_x_id_idx ON people (coordinates_x, id);
+CREATE INDEX IF NOT EXISTS people_coordinates_y_id_idx ON people (coordinates_y, id);
+CREATE INDEX IF NOT EXISTS people_height_id_idx ON people (height, id);
+CREATE INDEX IF NOT EXISTS people_eye_color_id_idx ON people (eyeColor, id);
+CREATE INDEX IF NOT EXISTS people_hair_color_id_idx ON people (hairColor, id);
+CREATE INDEX IF NOT EXISTS people_nationality_id_idx ON people (nationality, id);
+CREATE INDEX IF NOT EXISTS people_location_x_id_idx ON people (location_x, id);
+CREATE INDEX IF NOT EXISTS people_location_y_id_idx ON people (location_y, id);
+CREATE INDEX IF NOT EXISTS people_location_z_id_idx ON people (location_z, id);
+CREATE INDEX IF NOT EXISTS people_location_name_id_idx ON people (location_name, id);
+
+-- Location is optional: DELETE /people/location and the location filters only ever match people that have one.
+CREATE INDEX IF NOT EXISTS people_location_xyz_idx ON people (location_x, location_y, location_z, id)
+  WHERE location_x IS NOT NULL;
+
+ANALYZE people;
@@ -0,0 +1,20 @@
+-- Counters behind GET /people/stats/counts, maintained by the write beans (see EnumCountsRepository).
+CREATE TABLE people_enum_counts (
+  attribute varchar(32) NOT NULL,
+  value varchar(64) NOT NULL,
+  slot smallint NOT NULL,
+  count bigint NOT NULL,
+  PRIMARY KEY (attribute, value, slot)
+);
+
+-- Writers are blocked while the existing rows are counted, so no change is missed or counted twice.
+LOCK TABLE people IN SHARE MODE;
+
+INSERT INTO people_enum_counts (attribute, value, slot, count)
+SELECT 'total', '', 0, count(*) FROM people
+UNION ALL
+SELECT 'eyeColor', eyeColor::text, 0, count(*) FROM people WHERE eyeColor IS NOT NULL GROUP BY eyeColor
+UNION ALL
+SELECT 'hairColor', hairColor::text, 0, count(*) FROM people WHERE hairColor IS NOT NULL GROUP BY hairColor
+UNION ALL
+SELECT 'nationality', nationality::text, 0, count(*) FROM people WHERE nationality IS NOT NULL GROUP BY nationality;
@@ -0,0 +1,25 @@
+-- eyeColor, hairColor and nationality are stored as smallint codes (see CodedEnum) instead of their names.
+-- Codes follow the alphabetical order of the names, so comparisons and ORDER BY are unchanged. Databases
+-- created after the switch already have smallint columns; the ELSE branches keep their values as they are.
+ALTER TABLE people DROP CONSTRAINT IF EXISTS people_eyecolor_check;
+ALTER TABLE people DROP CONSTRAINT IF EXISTS people_haircolor_check;
+ALTER TABLE people DROP CONSTRAINT IF EXISTS people_nationality_check;
+
+-- One ALTER TABLE rewrites the table and rebuilds its indexes once for all three columns.
+ALTER TABLE people
+  ALTER COLUMN eyeColor TYPE smallint USING CASE eyeColor::text
+    WHEN 'BLUE' THEN 10 WHEN 'ORANGE' THEN 20 WHEN 'RED' THEN 30 WHEN 'YELLOW' THEN 40
+    ELSE eyeColor::text::smallint END,
+  ALTER COLUMN hairColor TYPE smallint USING CASE hairColor::text
+    WHEN 'BROWN' THEN 10 WHEN 'GREEN' THEN 20 WHEN 'ORANGE' THEN 30 WHEN 'RED' THEN 40 WHEN 'YELLOW' THEN 50
+    ELSE hairColor::text::smallint END,
+  ALTER COLUMN nationality TYPE smallint USING CASE nationality::text
+    WHEN 'CHINA' THEN 10 WHEN 'INDIA' THEN 20 WHEN 'ITALY' THEN 30 WHEN 'NORTH_KOREA' THEN 40
+    ELSE nationality::text::smallint END;
+
+ALTER TABLE people
+  ADD CONSTRAINT people_eye_color_code_check CHECK (eyeColor IN (10, 20, 30, 40)),
+  ADD CONSTRAINT people_hair_color_code_check CHECK (hairColor IN (10, 20, 30, 40, 50)),
+  ADD CONSTRAINT people_nationality_code_check CHECK (nationality IN (10, 20, 30, 40));
+
+ANALYZE people;
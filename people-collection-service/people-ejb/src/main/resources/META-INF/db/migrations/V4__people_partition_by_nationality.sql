@@ -0,0 +1,49 @@
+-- people becomes LIST-partitioned by nationality: one partition per Country code plus one for people without
+-- a nationality. Filters on nationality only read the matching partition, and DELETE /people/nationality
+-- truncates it (see PersonRepository.deleteByNationality). A new Country needs a migration that adds its
+-- partition together with the wider check constraint.
+LOCK TABLE people IN ACCESS EXCLUSIVE MODE;
+
+-- A partitioned table cannot have a primary key without the partition key, and nationality is optional, so
+-- each partition gets its own primary key on id; ids stay unique because they all come from one sequence.
+CREATE SEQUENCE people_id_sequence;
+SELECT setval('people_id_sequence', coalesce(max(id), 0) + 1, false) FROM people;
+
+CREATE TABLE people_partitioned (LIKE people INCLUDING DEFAULTS INCLUDING CONSTRAINTS)
+  PARTITION BY LIST (nationality);
+ALTER TABLE people_partitioned ALTER COLUMN id SET DEFAULT nextval('people_id_sequence');
+
+CREATE TABLE people_china PARTITION OF people_partitioned FOR VALUES IN (10);
+CREATE TABLE people_india PARTITION OF people_partitioned FOR VALUES IN (20);
+CREATE TABLE people_italy PARTITION OF people_partitioned FOR VALUES IN (30);
+CREATE TABLE people_north_korea PARTITION OF people_partitioned FOR VALUES IN (40);
+CREATE TABLE people_no_nationality PARTITION OF people_partitioned FOR VALUES IN (NULL);
+ALTER TABLE people_china ADD PRIMARY KEY (id);
+ALTER TABLE people_india ADD PRIMARY KEY (id);
+ALTER TABLE people_italy ADD PRIMARY KEY (id);
+ALTER TABLE people_north_korea ADD PRIMARY KEY (id);
+ALTER TABLE people_no_nationality ADD PRIMARY KEY (id);
+
+INSERT INTO people_partitioned SELECT * FROM people;
+
+DROP TABLE people;
+ALTER TABLE people_partitioned RENAME TO people;
+ALTER SEQUENCE people_id_sequence OWNED BY people.id;
+
+-- The indexes of V1, now created on every partition. (nationality, id) is gone: within a partition it is
+-- the same as the primary key.
+CREATE INDEX people_name_id_idx ON people (name, id);
+CREATE INDEX people_creation_date_id_idx ON people (creation_date, id);
+CREATE INDEX people_coordinates_x_id_idx ON people (coordinates_x, id);
+CREATE INDEX people_coordinates_y_id_idx ON people (coordinates_y, id);
+CREATE INDEX people_height_id_idx ON people (height, id);
+CREATE INDEX people_eye_color_id_idx ON people (eyeColor, id);
+CREATE INDEX people_hair_color_id_idx ON people (hairColor, id);
+CREATE INDEX people_location_x_id_idx ON people (location_x, id);
+CREATE INDEX people_location_y_id_idx ON people (location_y, id);
+CREATE INDEX people_location_z_id_idx ON people (location_z, id);
+CREATE INDEX people_location_name_id_idx ON people (location_name, id);
+CREATE INDEX people_location_xyz_idx ON people (location_x, location_y, location_z, id)
+  WHERE location_x IS NOT NULL;
+
+ANALYZE people;
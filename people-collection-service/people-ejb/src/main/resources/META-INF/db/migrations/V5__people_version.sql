@@ -0,0 +1,6 @@
+-- Per-person version for optimistic locking (Person.version, If-Match on PATCH /people/{id}). Hibernate may
+-- already have added the column as nullable; existing rows start at 0.
+ALTER TABLE people ADD COLUMN IF NOT EXISTS version bigint;
+UPDATE people SET version = 0 WHERE version IS NULL;
+ALTER TABLE people ALTER COLUMN version SET DEFAULT 0;
+ALTER TABLE people ALTER COLUMN version SET NOT NULL;
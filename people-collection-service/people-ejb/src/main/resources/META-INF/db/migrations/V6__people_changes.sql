@@ -0,0 +1,24 @@
+-- Change log behind GET /people/changes, written by the write beans in their own transaction (see
+-- ChangeLogRepository). Entries are read in (txid, seq) order and only once every transaction with a lower
+-- txid has finished, so a reader never skips an entry that commits late.
+CREATE TABLE people_changes (
+  seq bigserial PRIMARY KEY,
+  txid bigint NOT NULL DEFAULT txid_current(),
+  type varchar(16) NOT NULL,
+  person_id bigint NOT NULL,
+  version bigint,
+  changed_at timestamptz NOT NULL DEFAULT now()
+);
+
+CREATE INDEX people_changes_position ON people_changes (txid, seq);
+
+CREATE INDEX people_changes_changed_at ON people_changes (changed_at);
+
+-- Position of the last pruned entry; tokens before it can no longer be resumed.
+CREATE TABLE people_changes_horizon (
+  id smallint PRIMARY KEY CHECK (id = 1),
+  txid bigint NOT NULL,
+  seq bigint NOT NULL
+);
+
+INSERT INTO people_changes_horizon (id, txid, seq) VALUES (1, 0, 0);
@@ -0,0 +1,17 @@
+-- Ordered ids of async search results, paged by GET /people/search/results/{taskId} (see
+-- SearchSnapshotRepository). Snapshots are deleted some time after they expire.
+CREATE TABLE search_snapshots (
+  task_id varchar(64) PRIMARY KEY,
+  total bigint NOT NULL,
+  truncated boolean NOT NULL,
+  expires_at timestamptz NOT NULL
+);
+
+CREATE INDEX search_snapshots_expires_at ON search_snapshots (expires_at);
+
+CREATE TABLE search_snapshot_ids (
+  task_id varchar(64) NOT NULL REFERENCES search_snapshots ON DELETE CASCADE,
+  position integer NOT NULL,
+  person_id bigint NOT NULL,
+  PRIMARY KEY (task_id, position)
+);
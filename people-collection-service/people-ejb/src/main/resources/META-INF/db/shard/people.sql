@@ -0,0 +1,79 @@
+-- Schema of a shard database (see ShardManager): its share of people, partitioned by nationality like the
+-- single-database table (V3, V4, V5), and the enum counters and change log entries of those people. Ids come
+-- from people_id_sequence in the main database.
+CREATE TABLE IF NOT EXISTS people (
+  id bigint NOT NULL,
+  name varchar(255) NOT NULL,
+  coordinates_x integer,
+  coordinates_y integer,
+  creation_date timestamp(6) with time zone NOT NULL,
+  height real,
+  eyeColor smallint CONSTRAINT people_eye_color_code_check CHECK (eyeColor IN (10, 20, 30, 40)),
+  hairColor smallint CONSTRAINT people_hair_color_code_check CHECK (hairColor IN (10, 20, 30, 40, 50)),
+  nationality smallint CONSTRAINT people_nationality_code_check CHECK (nationality IN (10, 20, 30, 40)),
+  location_x integer,
+  location_y bigint,
+  location_z integer,
+  location_name varchar(255),
+  version bigint NOT NULL DEFAULT 0
+) PARTITION BY LIST (nationality);
+
+CREATE TABLE IF NOT EXISTS people_china PARTITION OF people (PRIMARY KEY (id)) FOR VALUES IN (10);
+CREATE TABLE IF NOT EXISTS people_india PARTITION OF people (PRIMARY KEY (id)) FOR VALUES IN (20);
+CREATE TABLE IF NOT EXISTS people_italy PARTITION OF people (PRIMARY KEY (id)) FOR VALUES IN (30);
+CREATE TABLE IF NOT EXISTS people_north_korea PARTITION OF people (PRIMARY KEY (id)) FOR VALUES IN (40);
+CREATE TABLE IF NOT EXISTS people_no_nationality PARTITION OF people (PRIMARY KEY (id)) FOR VALUES IN (NULL);
+
+CREATE INDEX IF NOT EXISTS people_name_id_idx ON people (name, id);
+CREATE INDEX IF NOT EXISTS people_creation_date_id_idx ON people (creation_date, id);
+CREATE INDEX IF NOT EXISTS people_coordinates_x_id_idx ON people (coordinates_x, id);
+CREATE INDEX IF NOT EXISTS people_coordinates_y_id_idx ON people (coordinates_y, id);
+CREATE INDEX IF NOT EXISTS people_height_id_idx ON people (height, id);
+CREATE INDEX IF NOT EXISTS people_eye_color_id_idx ON people (eyeColor, id);
+CREATE INDEX IF NOT EXISTS people_hair_color_id_idx ON people (hairColor, id);
+CREATE INDEX IF NOT EXISTS people_location_x_id_idx ON people (location_x, id);
+CREATE INDEX IF NOT EXISTS people_location_y_id_idx ON people (location_y, id);
+CREATE INDEX IF NOT EXISTS people_location_z_id_idx ON people (location_z, id);
+CREATE INDEX IF NOT EXISTS people_location_name_id_idx ON people (location_name, id);
+CREATE INDEX IF NOT EXISTS people_location_xyz_idx ON people (location_x, location_y, location_z, id)
+  WHERE location_x IS NOT NULL;
+
+-- Counters of this shard's people (V2). The main database reads them through its people_enum_counts view and
+-- writes them through people_enum_count_changes below, so they change in the same shard transaction as the
+-- people they count.
+CREATE TABLE IF NOT EXISTS people_enum_counts (
+  attribute varchar(32) NOT NULL,
+  value varchar(64) NOT NULL,
+  slot smallint NOT NULL,
+  count bigint NOT NULL,
+  PRIMARY KEY (attribute, value, slot)
+);
+
+-- Each row inserted here is added to people_enum_counts and not kept: postgres_fdw cannot send
+-- INSERT ... ON CONFLICT DO UPDATE, so the upsert runs here. The main database routes a row to the shard of
+-- its person_id. Its sessions here have search_path pg_catalog, hence the function's own.
+CREATE TABLE IF NOT EXISTS people_enum_count_changes (
+  person_id bigint NOT NULL,
+  attribute varchar(32) NOT NULL,
+  value varchar(64) NOT NULL,
+  slot smallint NOT NULL,
+  count bigint NOT NULL
+);
+
+CREATE OR REPLACE FUNCTION people_enum_count_add() RETURNS trigger LANGUAGE plpgsql SET search_path = public AS $$
+BEGIN
+  INSERT INTO people_enum_counts AS c (attribute, value, slot, count) VALUES (NEW.attribute, NEW.value, NEW.slot, NEW.count)
+    ON CONFLICT (attribute, value, slot) DO UPDATE SET count = c.count + EXCLUDED.count; RETURN NULL; END $$;
+
+CREATE OR REPLACE TRIGGER people_enum_count_changes_add BEFORE INSERT ON people_enum_count_changes
+  FOR EACH ROW EXECUTE FUNCTION people_enum_count_add();
+
+-- Change log entries of this shard's people (V6), written in the same shard transaction as the change and
+-- moved into the main database's people_changes by ChangeLogRepository#relay.
+CREATE TABLE IF NOT EXISTS people_changes (
+  seq bigserial PRIMARY KEY,
+  type varchar(16) NOT NULL,
+  person_id bigint NOT NULL,
+  version bigint,
+  changed_at timestamptz NOT NULL DEFAULT now()
+);
@@ -2,11 +2,16 @@ package ru.ifmo.soa.peopleservice.adapters;
 
 import jakarta.ejb.EJB;
 import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import ru.ifmo.soa.peopleservice.caching.PersonBytesCache;
 import ru.ifmo.soa.peopleservice.dto.*;
 import ru.ifmo.soa.peopleservice.entities.Location;
 import ru.ifmo.soa.peopleservice.ejb.remote.*;
+import ru.ifmo.soa.peopleservice.util.CallContext;
+import ru.ifmo.soa.peopleservice.util.CountMode;
 import ru.ifmo.soa.peopleservice.util.Result;
 
+import java.util.List;
 import java.util.Map;
 import java.util.function.Supplier;
 
@@ -40,6 +45,21 @@ public class PersonServiceAdapter {
   @EJB(lookup = "java:global/people-ejb/SearchPeopleBean!ru.ifmo.soa.peopleservice.ejb.remote.SearchPeopleRemote")
   private SearchPeopleRemote searchPeopleService;
 
+  @EJB(lookup = "java:global/people-ejb/IndexAdviceBean!ru.ifmo.soa.peopleservice.ejb.remote.IndexAdviceRemote")
+  private IndexAdviceRemote indexAdviceService;
+
+  @EJB(lookup = "java:global/people-ejb/GetEnumCountsBean!ru.ifmo.soa.peopleservice.ejb.remote.GetEnumCountsRemote")
+  private GetEnumCountsRemote getEnumCountsService;
+
+  @EJB(lookup = "java:global/people-ejb/GetPersonChangesBean!ru.ifmo.soa.peopleservice.ejb.remote.GetPersonChangesRemote")
+  private GetPersonChangesRemote getPersonChangesService;
+
+  @EJB(lookup = "java:global/people-ejb/SearchSnapshotBean!ru.ifmo.soa.peopleservice.ejb.remote.SearchSnapshotRemote")
+  private SearchSnapshotRemote searchSnapshotService;
+
+  @Inject
+  private PersonBytesCache personCache;
+
   private <T> T unwrap(Supplier<Result<T>> supplier) {
     Result<T> result = supplier.get();
     if (result instanceof Result.Success<T> success) {
@@ -57,36 +77,43 @@ public class PersonServiceAdapter {
     return new RuntimeException(ex);
   }
 
-  public PersonDto addPerson(PersonInputDto dto) {
-    return unwrap(() -> addPersonService.addPerson(dto));
+  public PersonDto addPerson(PersonInputDto dto, CallContext context) {
+    return unwrap(() -> addPersonService.addPerson(dto, context));
+  }
+
+  public PeopleResponseDto getAllPeople(String sortBy, String sortOrder, Integer page, Integer pageSize, CountMode countMode, CallContext context) {
+    return unwrap(() -> getAllPeopleService.getAllPeople(sortBy, sortOrder, page, pageSize, countMode, context));
   }
 
-  public PeopleResponseDto getAllPeople(String sortBy, String sortOrder, Integer page, Integer pageSize) {
-    return unwrap(() -> getAllPeopleService.getAllPeople(sortBy, sortOrder, page, pageSize));
+  public PersonDto getPersonById(Long id, CallContext context) {
+    return unwrap(() -> getPersonByIdService.getPersonById(id, context));
   }
 
-  public PersonDto getPersonById(Long id) {
-    return unwrap(() -> getPersonByIdService.getPersonById(id));
+  public PersonDto updatePerson(Long id, Map<String, Object> updates, Long expectedVersion, CallContext context) {
+    PersonDto updated = unwrap(() -> updatePersonService.updatePerson(id, updates, expectedVersion, context));
+    personCache.invalidate(id);
+    return updated;
   }
 
-  public PersonDto updatePerson(Long id, Map<String, Object> updates) {
-    return unwrap(() -> updatePersonService.updatePerson(id, updates));
+  public void deletePerson(Long id, CallContext context) {
+    unwrap(() -> deletePersonService.deletePerson(id, context));
+    personCache.invalidate(id);
   }
 
-  public void deletePerson(Long id) {
-    unwrap(() -> deletePersonService.deletePerson(id));
+  public void deletePeopleByNationality(String nationality, CallContext context) {
+    unwrap(() -> deletePeopleByNationalityService.deletePeopleByNationality(nationality, context));
   }
 
-  public void deletePeopleByNationality(String nationality) {
-    unwrap(() -> deletePeopleByNationalityService.deletePeopleByNationality(nationality));
+  public void deletePersonByLocation(Location location, CallContext context) {
+    unwrap(() -> deletePersonByLocationService.deletePersonByLocation(location, context));
   }
 
-  public void deletePersonByLocation(Location location) {
-    unwrap(() -> deletePersonByLocationService.deletePersonByLocation(location));
+  public PersonChangesDto getChanges(String since, Integer limit, CallContext context) {
+    return unwrap(() -> getPersonChangesService.getChanges(since, limit, context));
   }
 
-  public PeopleResponseDto getPeopleWithLocationGreaterThan(Integer x, Long y, Integer z) {
-    return unwrap(() -> getPeopleWithLocationGreaterThanService.getPeopleWithLocationGreaterThan(x, y, z));
+  public PeopleResponseDto getPeopleWithLocationGreaterThan(Integer x, Long y, Integer z, CallContext context) {
+    return unwrap(() -> getPeopleWithLocationGreaterThanService.getPeopleWithLocationGreaterThan(x, y, z, context));
   }
 
   public PeopleResponseDto searchPeople(
@@ -94,8 +121,30 @@ public class PersonServiceAdapter {
     String sortBy,
     String sortOrder,
     Integer page,
-    Integer pageSize
+    Integer pageSize,
+    CountMode countMode,
+    List<String> facets,
+    CallContext context
   ) {
-    return unwrap(() -> searchPeopleService.searchPeople(filterCriteria, sortBy, sortOrder, page, pageSize));
+    return unwrap(() -> searchPeopleService.searchPeople(filterCriteria, sortBy, sortOrder, page, pageSize, countMode, facets, context));
+  }
+
+  public List<IndexAdviceDto> getIndexAdvice(CallContext context) {
+    return unwrap(() -> indexAdviceService.getIndexAdvice(context));
+  }
+
+  public EnumCountsDto getEnumCounts(CallContext context) {
+    return unwrap(() -> getEnumCountsService.getEnumCounts(context));
+  }
+
+  public PeopleResponseDto createSearchSnapshot(String taskId, FilterCriteriaDto filterCriteria, String sortBy, String sortOrder,
+                                                Integer page, Integer pageSize, CountMode countMode, List<String> facets,
+                                                CallContext context) {
+    return unwrap(() -> searchSnapshotService.createSnapshot(
+      taskId, filterCriteria, sortBy, sortOrder, page, pageSize, countMode, facets, context));
+  }
+
+  public PeopleResponseDto getSearchResults(String taskId, Integer page, Integer pageSize, CallContext context) {
+    return unwrap(() -> searchSnapshotService.getSnapshotPage(taskId, page, pageSize, context));
   }
 }
@@ -0,0 +1,209 @@
+package ru.ifmo.soa.peopleservice.caching;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.ws.rs.core.EntityTag;
+import jakarta.ws.rs.core.MediaType;
+import ru.ifmo.soa.peopleservice.cluster.ClusterEvents;
+import ru.ifmo.soa.peopleservice.cluster.PersonChangeEvent;
+import ru.ifmo.soa.peopleservice.cluster.PersonChangeListener;
+import ru.ifmo.soa.peopleservice.config.CborWriter;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Entity tags for people responses, built from a collection version that this node bumps on every change
+ * event, local or from other nodes ({@link ClusterEvents}). Reading the version costs nothing, so an
+ * unchanged collection is answered with {@code 304} before any query. Changes from other nodes arrive with
+ * {@code NOTIFY}, so for up to a second a node may still call their results unchanged.
+ * <p>
+ * A tag is {@code <epoch>-<version>}, followed by {@code .p<person version>} for a single person or
+ * {@code .s<hash>} for a search, and by {@code +cbor} for CBOR bodies. The epoch is random per start, so
+ * tags from another node or an earlier run never match here; they only cost a full response.
+ * <p>
+ * List and search tags are weak: the collection version lags changes made on other nodes, so it cannot
+ * promise the bytes of a body. A person tag carries the person's version from the database and stays strong.
+ * <p>
+ * With read replicas ({@code people.read.replicas}) a query may run on a replica that has not replayed a
+ * change this node has already counted, so the collection version says nothing about the body. Lists and
+ * searches then go untagged, and a single person is compared by its own version only, after the load.
+ */
+@ApplicationScoped
+public class EntityTags implements PersonChangeListener {
+
+  private static final String EPOCH = Long.toString(ThreadLocalRandom.current().nextLong() & Long.MAX_VALUE, 36);
+  private static final String CBOR_SUFFIX = "+cbor";
+  private static final String PERSON_PREFIX = ".p";
+  private static final String SEARCH_PREFIX = ".s";
+  private static final boolean REPLICA_READS = !System.getProperty("people.read.replicas", "").isBlank();
+
+  private final AtomicLong version = new AtomicLong();
+
+  @PostConstruct
+  void subscribe() {
+    ClusterEvents.subscribe(this);
+  }
+
+  @PreDestroy
+  void unsubscribe() {
+    ClusterEvents.unsubscribe(this);
+  }
+
+  @Override
+  public void onChange(PersonChangeEvent event) {
+    version.incrementAndGet();
+  }
+
+  /**
+   * Read before running the query it tags: a change that lands meanwhile bumps the version, so a result read
+   * from the primary is never tagged newer than it is.
+   */
+  public String collection() {
+    return EPOCH + "-" + version.get();
+  }
+
+  /**
+   * @return the tag of a list, or {@code null} when reads may go to a replica
+   */
+  public EntityTag collection(String collection, MediaType type) {
+    return REPLICA_READS ? null : weak(tag(collection, type));
+  }
+
+  public EntityTag person(String collection, long personVersion, MediaType type) {
+    return tag(collection + PERSON_PREFIX + personVersion, type);
+  }
+
+  /**
+   * @return the tag of a search result, or {@code null} when reads may go to a replica
+   */
+  public EntityTag search(String collection, String request, MediaType type) {
+    if (REPLICA_READS) {
+      return null;
+    }
+    try {
+      byte[] digest = MessageDigest.getInstance("SHA-256").digest(request.getBytes(StandardCharsets.UTF_8));
+      return weak(tag(collection + SEARCH_PREFIX + HexFormat.of().formatHex(digest, 0, 8), type));
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /**
+   * Weak comparison, as {@code If-None-Match} asks for: compressed responses carry their tag as weak.
+   */
+  public boolean matches(String ifNoneMatch, EntityTag tag) {
+    if (ifNoneMatch == null || tag == null) {
+      return false;
+    }
+    for (String candidate : ifNoneMatch.split(",")) {
+      String value = value(candidate);
+      if ("*".equals(value) || tag.getValue().equals(value)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * @return the first tag in {@code ifNoneMatch} for a single person, in this representation, issued while the
+   * collection was at {@code collection}; nothing about the person can have changed since. Always
+   * {@code null} when reads may go to a replica, as the tag may carry a version older than the collection's.
+   */
+  public EntityTag unchangedPerson(String ifNoneMatch, String collection, MediaType type) {
+    if (ifNoneMatch == null || REPLICA_READS) {
+      return null;
+    }
+    for (String candidate : ifNoneMatch.split(",")) {
+      String value = value(candidate);
+      if (value != null && value.startsWith(collection + PERSON_PREFIX) && representation(value).equals(suffix(type))) {
+        return new EntityTag(value);
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Person versions come from the database, so tags from any node or collection version compare here.
+   */
+  public boolean matchesPerson(String ifNoneMatch, long personVersion, MediaType type) {
+    if (ifNoneMatch == null) {
+      return false;
+    }
+    for (String candidate : ifNoneMatch.split(",")) {
+      String value = value(candidate);
+      if (value != null && representation(value).equals(suffix(type)) && Long.valueOf(personVersion).equals(personVersion(value))) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * @return the person version an {@code If-Match} header asks for, {@code null} for {@code *}, or
+   * {@code -1} when it holds no strong tag of ours, which can never match
+   */
+  public Long expectedPersonVersion(String ifMatch) {
+    if (ifMatch == null || "*".equals(ifMatch.strip())) {
+      return null;
+    }
+    for (String candidate : ifMatch.split(",")) {
+      Long personVersion = candidate.strip().startsWith("W/") ? null : personVersion(value(candidate));
+      if (personVersion != null) {
+        return personVersion;
+      }
+    }
+    return -1L;
+  }
+
+  private static Long personVersion(String value) {
+    if (value == null) {
+      return null;
+    }
+    int at = value.lastIndexOf(PERSON_PREFIX);
+    if (at < 0) {
+      return null;
+    }
+    String digits = value.substring(at + PERSON_PREFIX.length(), value.length() - representation(value).length());
+    try {
+      return Long.parseLong(digits);
+    } catch (NumberFormatException e) {
+      return null;
+    }
+  }
+
+  private static EntityTag tag(String value, MediaType type) {
+    return new EntityTag(value + suffix(type));
+  }
+
+  private static EntityTag weak(EntityTag tag) {
+    return new EntityTag(tag.getValue(), true);
+  }
+
+  private static String suffix(MediaType type) {
+    return type != null && CborWriter.APPLICATION_CBOR_TYPE.isCompatible(type) ? CBOR_SUFFIX : "";
+  }
+
+  private static String representation(String value) {
+    return value.endsWith(CBOR_SUFFIX) ? CBOR_SUFFIX : "";
+  }
+
+  private static String value(String candidate) {
+    String tag = candidate.strip();
+    if (tag.startsWith("W/")) {
+      tag = tag.substring(2);
+    }
+    if (tag.equals("*")) {
+      return tag;
+    }
+    if (tag.length() < 2 || tag.charAt(0) != '"' || tag.charAt(tag.length() - 1) != '"') {
+      return null;
+    }
+    return tag.substring(1, tag.length() - 1);
+  }
+}
@@ -0,0 +1,171 @@
+package ru.ifmo.soa.peopleservice.caching;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import ru.ifmo.soa.peopleservice.cluster.ClusterEvents;
+import ru.ifmo.soa.peopleservice.cluster.PersonChangeEvent;
+import ru.ifmo.soa.peopleservice.cluster.PersonChangeListener;
+import ru.ifmo.soa.peopleservice.dto.PersonDto;
+
+import java.io.UncheckedIOException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Near-cache of {@code GET /people/{id}} JSON bodies, kept as the bytes that go on the wire, so a hit costs
+ * neither a call into people-ejb nor serialization. The cache is bounded by the total size of the bodies it
+ * holds and evicts the least recently read ones first.
+ * <p>
+ * Persons are spread by id over {@value #SEGMENTS} segments, each an LRU with its own lock and an equal share
+ * of the size limit, so concurrent hits on different persons rarely wait for each other and nothing locks the
+ * whole cache but {@link #clear}.
+ * <p>
+ * Writes through {@link ru.ifmo.soa.peopleservice.adapters.PersonServiceAdapter} invalidate their person
+ * directly; other changes, including those of other nodes, arrive as {@link ClusterEvents}. Misses load from
+ * the primary database, since a body read from a lagging replica would be kept until the next change. A load
+ * that overlaps an invalidation of its person is served but not kept, so the cache never holds a body older
+ * than the latest change it has heard of.
+ */
+@ApplicationScoped
+public class PersonBytesCache implements PersonChangeListener {
+
+  private static final boolean ENABLED = !Boolean.parseBoolean(System.getProperty("api.person-cache.disabled", "false"));
+
+  private static final long MAX_BYTES = Long.getLong("api.person-cache.max-bytes", 16L * 1024 * 1024);
+  private static final int MAX_ENTRY_BYTES = Integer.getInteger("api.person-cache.max-entry-bytes", 64 * 1024);
+  /** Rough per-entry cost of the map node, key, and entry object besides the body itself. */
+  private static final int ENTRY_OVERHEAD = 96;
+  private static final int SEGMENTS = 16;
+
+  public record Entry(Long version, byte[] json) {
+  }
+
+  @Inject
+  private ObjectMapper mapper;
+
+  private final Segment[] segments = new Segment[SEGMENTS];
+
+  {
+    for (int i = 0; i < SEGMENTS; i++) {
+      segments[i] = new Segment();
+    }
+  }
+
+  @PostConstruct
+  void subscribe() {
+    ClusterEvents.subscribe(this);
+  }
+
+  @PreDestroy
+  void unsubscribe() {
+    ClusterEvents.unsubscribe(this);
+  }
+
+  @Override
+  public void onChange(PersonChangeEvent event) {
+    switch (event.type()) {
+      case CREATED -> { }
+      case UPDATED, DELETED -> {
+        if (event.personId() != null) {
+          invalidate(event.personId());
+        } else {
+          clear();
+        }
+      }
+      case NATIONALITY_DELETED, RESYNC -> clear();
+    }
+  }
+
+  public boolean isEnabled() {
+    return ENABLED;
+  }
+
+  /**
+   * @return the cached body of the person, or the one {@code loader} returns, kept for the next read
+   */
+  public Entry get(Long id, Supplier<PersonDto> loader) {
+    Segment segment = segment(id);
+    Object load = new Object();
+    synchronized (segment) {
+      Entry cached = segment.entries.get(id);
+      if (cached != null) {
+        return cached;
+      }
+      segment.loading.put(id, load);
+    }
+    Entry loaded = null;
+    try {
+      PersonDto dto = loader.get();
+      loaded = new Entry(dto.getVersion(), mapper.writeValueAsBytes(dto));
+      return loaded;
+    } catch (JsonProcessingException e) {
+      throw new UncheckedIOException(e);
+    } finally {
+      segment.finish(id, load, loaded);
+    }
+  }
+
+  public void invalidate(Long id) {
+    segment(id).invalidate(id);
+  }
+
+  public void clear() {
+    for (Segment segment : segments) {
+      segment.clear();
+    }
+  }
+
+  private Segment segment(Long id) {
+    long hash = id * 0x9E3779B97F4A7C15L;
+    return segments[(int) (hash >>> 60) & (SEGMENTS - 1)];
+  }
+
+  private static long cost(Entry entry) {
+    return entry.json().length + ENTRY_OVERHEAD;
+  }
+
+  private static final class Segment {
+    private static final long MAX_SEGMENT_BYTES = MAX_BYTES / SEGMENTS;
+
+    private final LinkedHashMap<Long, Entry> entries = new LinkedHashMap<>(64, 0.75f, true);
+    /** Loads in flight, by person; an invalidation removes the person's token so its load is not kept. */
+    private final Map<Long, Object> loading = new HashMap<>();
+    private long bytes;
+
+    synchronized void invalidate(Long id) {
+      loading.remove(id);
+      Entry removed = entries.remove(id);
+      if (removed != null) {
+        bytes -= cost(removed);
+      }
+    }
+
+    synchronized void clear() {
+      loading.clear();
+      entries.clear();
+      bytes = 0;
+    }
+
+    /**
+     * Keeps {@code entry} unless the person was invalidated, or loaded again, since {@code load} started.
+     */
+    synchronized void finish(Long id, Object load, Entry entry) {
+      if (!loading.remove(id, load) || entry == null || entry.json().length > MAX_ENTRY_BYTES) {
+        return;
+      }
+      Entry previous = entries.put(id, entry);
+      bytes += cost(entry) - (previous != null ? cost(previous) : 0);
+      for (Iterator<Map.Entry<Long, Entry>> eldest = entries.entrySet().iterator(); bytes > MAX_SEGMENT_BYTES && eldest.hasNext(); ) {
+        bytes -= cost(eldest.next().getValue());
+        eldest.remove();
+      }
+    }
+  }
+}
@@ -0,0 +1,97 @@
+package ru.ifmo.soa.peopleservice.concurrency;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Gradient concurrency limit: the limit follows the ratio between the long-term latency and the latest
+ * sample. When PostgreSQL slows down, latency grows before the pool is exhausted, so the limit shrinks
+ * and excess requests are rejected instead of queuing until every client times out together.
+ */
+public class AdaptiveConcurrencyLimit {
+
+  private static final double TOLERANCE = 1.5;
+  private static final double SMOOTHING = 0.2;
+  private static final double LONG_WINDOW = 600;
+  private static final double DROP_FACTOR = 0.9;
+
+  private final int minLimit;
+  private final int maxLimit;
+  private final AtomicInteger inFlight = new AtomicInteger();
+
+  private volatile double limit;
+  private double longRttNanos;
+
+  public AdaptiveConcurrencyLimit(int initialLimit, int minLimit, int maxLimit) {
+    this.minLimit = minLimit;
+    this.maxLimit = maxLimit;
+    this.limit = initialLimit;
+  }
+
+  /**
+   * Takes a slot if fewer than {@code share} of the limit is in use.
+   */
+  public boolean tryAcquire(double share) {
+    int allowed = Math.max(1, (int) (limit * share));
+    while (true) {
+      int current = inFlight.get();
+      if (current >= allowed) {
+        return false;
+      }
+      if (inFlight.compareAndSet(current, current + 1)) {
+        return true;
+      }
+    }
+  }
+
+  /**
+   * Returns a slot and feeds its latency into the limit.
+   *
+   * @param dropped the request failed in a way that indicates overload (timeout, unavailable)
+   */
+  public void release(long rttNanos, boolean dropped) {
+    int inFlightBefore = inFlight.getAndDecrement();
+    update(rttNanos, inFlightBefore, dropped);
+  }
+
+  public int getLimit() {
+    return (int) limit;
+  }
+
+  public int getInFlight() {
+    return inFlight.get();
+  }
+
+  public synchronized long getLongRttNanos() {
+    return (long) longRttNanos;
+  }
+
+  private synchronized void update(long rttNanos, int inFlightBefore, boolean dropped) {
+    double current = limit;
+    if (dropped) {
+      limit = Math.max(minLimit, current * DROP_FACTOR);
+      return;
+    }
+    if (rttNanos <= 0) {
+      return;
+    }
+    if (longRttNanos == 0) {
+      longRttNanos = rttNanos;
+    } else {
+      longRttNanos += (rttNanos - longRttNanos) / LONG_WINDOW;
+    }
+    // A long-term average far above the current sample means load has dropped: catch up faster
+    if (longRttNanos / rttNanos > 2) {
+      longRttNanos *= 0.95;
+    }
+    // The limit cannot be judged while the service is mostly idle
+    if (inFlightBefore < current / 2) {
+      return;
+    }
+
+    double gradient = Math.max(0.5, Math.min(1.0, TOLERANCE * longRttNanos / rttNanos));
+    double queueSize = Math.sqrt(current);
+    double target = current * gradient + queueSize;
+    double next = current * (1 - SMOOTHING) + target * SMOOTHING;
+    limit = Math.max(minLimit, Math.min(maxLimit, next));
+  }
+}
@@ -0,0 +1,54 @@
+package ru.ifmo.soa.peopleservice.concurrency;
+
+import jakarta.ws.rs.container.ContainerRequestContext;
+
+/**
+ * Share of the concurrency limit a request may use. Bulk traffic is shed first, leaving headroom for
+ * interactive single-person lookups.
+ */
+public enum RequestPriority {
+  INTERACTIVE(1.0),
+  STANDARD(0.8),
+  BULK(0.5);
+
+  private final double share;
+
+  RequestPriority(double share) {
+    this.share = share;
+  }
+
+  public double share() {
+    return share;
+  }
+
+  public static RequestPriority of(ContainerRequestContext request) {
+    String method = request.getMethod();
+    String path = request.getUriInfo().getPath();
+    if (path.startsWith("/")) {
+      path = path.substring(1);
+    }
+
+    if ("POST".equals(method) && path.equals("people/search")) {
+      return BULK;
+    }
+    if ("DELETE".equals(method) && (path.startsWith("people/nationality/") || path.equals("people/location"))) {
+      return BULK;
+    }
+    if ("GET".equals(method) && path.startsWith("people/") && isId(path.substring("people/".length()))) {
+      return INTERACTIVE;
+    }
+    return STANDARD;
+  }
+
+  private static boolean isId(String segment) {
+    if (segment.isEmpty()) {
+      return false;
+    }
+    for (int i = 0; i < segment.length(); i++) {
+      if (!Character.isDigit(segment.charAt(i))) {
+        return false;
+      }
+    }
+    return true;
+  }
+}
@@ -0,0 +1,46 @@
+package ru.ifmo.soa.peopleservice.config;
+
+import ru.ifmo.soa.peopleservice.exceptions.BadRequestException;
+
+import java.time.Duration;
+
+/**
+ * Time budget of a request. Clients may shorten it with the {@value #HEADER} header (milliseconds),
+ * but never extend it past the endpoint default.
+ */
+public final class DeadlinePolicy {
+
+  public static final String HEADER = "X-Request-Timeout";
+
+  public enum Endpoint {
+    READ("api.deadline.read-ms", 5_000),
+    SEARCH("api.deadline.search-ms", 15_000),
+    WRITE("api.deadline.write-ms", 10_000),
+    BULK_DELETE("api.deadline.bulk-delete-ms", 30_000);
+
+    private final long defaultMillis;
+
+    Endpoint(String property, long fallbackMillis) {
+      this.defaultMillis = Long.getLong(property, fallbackMillis);
+    }
+  }
+
+  private DeadlinePolicy() {
+  }
+
+  public static Duration resolve(Endpoint endpoint, String headerValue) {
+    if (headerValue == null || headerValue.isBlank()) {
+      return Duration.ofMillis(endpoint.defaultMillis);
+    }
+    long requested;
+    try {
+      requested = Long.parseLong(headerValue.trim());
+    } catch (NumberFormatException e) {
+      throw new BadRequestException(HEADER + " must be a number of milliseconds");
+    }
+    if (requested <= 0) {
+      throw new BadRequestException(HEADER + " must be positive");
+    }
+    return Duration.ofMillis(Math.min(requested, endpoint.defaultMillis));
+  }
+}
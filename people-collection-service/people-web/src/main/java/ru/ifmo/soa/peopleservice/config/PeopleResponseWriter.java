@@ -0,0 +1,222 @@
+package ru.ifmo.soa.peopleservice.config;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.StreamWriteFeature;
+import com.fasterxml.jackson.core.io.SerializedString;
+import jakarta.ws.rs.Produces;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.MultivaluedMap;
+import jakarta.ws.rs.ext.MessageBodyWriter;
+import jakarta.ws.rs.ext.Provider;
+import ru.ifmo.soa.peopleservice.dto.CoordinatesDto;
+import ru.ifmo.soa.peopleservice.dto.LocationDto;
+import ru.ifmo.soa.peopleservice.dto.PeopleResponseDto;
+import ru.ifmo.soa.peopleservice.dto.PersonDto;
+import ru.ifmo.soa.peopleservice.entities.Country;
+import ru.ifmo.soa.peopleservice.entities.EyeColor;
+import ru.ifmo.soa.peopleservice.entities.HairColor;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+import java.time.OffsetDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes pages of people with a {@link JsonGenerator} straight to the response stream, instead of letting
+ * {@link JacksonConfig}'s mapper look up serializers for every object in the page. Field names and enum values
+ * are encoded once. The output is the same as the mapper's: same fields in the same order, nulls included,
+ * dates in ISO format with their offset. The same code writes CBOR when that is what the client asked for
+ * (see {@link CborWriter}).
+ */
+@Provider
+@Produces({MediaType.APPLICATION_JSON, CborWriter.APPLICATION_CBOR})
+public class PeopleResponseWriter implements MessageBodyWriter<PeopleResponseDto> {
+
+  private static final JsonFactory JSON = JsonFactory.builder().disable(StreamWriteFeature.AUTO_CLOSE_TARGET).build();
+
+  private static final SerializedString PEOPLE = new SerializedString("people");
+  private static final SerializedString PAGE = new SerializedString("page");
+  private static final SerializedString PAGE_SIZE = new SerializedString("pageSize");
+  private static final SerializedString TOTAL_PAGES = new SerializedString("totalPages");
+  private static final SerializedString TOTAL_COUNT = new SerializedString("totalCount");
+  private static final SerializedString TOTAL_COUNT_APPROXIMATE = new SerializedString("totalCountApproximate");
+  private static final SerializedString FACETS = new SerializedString("facets");
+
+  private static final SerializedString ID = new SerializedString("id");
+  private static final SerializedString NAME = new SerializedString("name");
+  private static final SerializedString COORDINATES = new SerializedString("coordinates");
+  private static final SerializedString CREATION_DATE = new SerializedString("creationDate");
+  private static final SerializedString HEIGHT = new SerializedString("height");
+  private static final SerializedString EYE_COLOR = new SerializedString("eyeColor");
+  private static final SerializedString HAIR_COLOR = new SerializedString("hairColor");
+  private static final SerializedString NATIONALITY = new SerializedString("nationality");
+  private static final SerializedString LOCATION = new SerializedString("location");
+  private static final SerializedString X = new SerializedString("x");
+  private static final SerializedString Y = new SerializedString("y");
+  private static final SerializedString Z = new SerializedString("z");
+  private static final SerializedString VERSION = new SerializedString("version");
+
+  private static final Map<String, SerializedString> ENUM_NAMES = new HashMap<>();
+
+  static {
+    for (List<? extends Enum<?>> values : List.of(List.of(EyeColor.values()), List.of(HairColor.values()), List.of(Country.values()))) {
+      for (Enum<?> value : values) {
+        ENUM_NAMES.put(value.name(), new SerializedString(value.name()));
+      }
+    }
+  }
+
+  @Override
+  public boolean isWriteable(Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
+    return type == PeopleResponseDto.class;
+  }
+
+  @Override
+  public void writeTo(PeopleResponseDto response, Class<?> type, Type genericType, Annotation[] annotations,
+                      MediaType mediaType, MultivaluedMap<String, Object> httpHeaders, OutputStream entityStream) throws IOException {
+    JsonFactory factory = CborWriter.APPLICATION_CBOR_TYPE.isCompatible(mediaType) ? CborWriter.FACTORY : JSON;
+    try (JsonGenerator json = factory.createGenerator(entityStream, JsonEncoding.UTF8)) {
+      json.writeStartObject();
+      json.writeFieldName(PEOPLE);
+      if (response.getPeople() == null) {
+        json.writeNull();
+      } else {
+        json.writeStartArray();
+        for (PersonDto person : response.getPeople()) {
+          writePerson(json, person);
+        }
+        json.writeEndArray();
+      }
+      json.writeFieldName(PAGE);
+      writeNumber(json, response.getPage());
+      json.writeFieldName(PAGE_SIZE);
+      writeNumber(json, response.getPageSize());
+      json.writeFieldName(TOTAL_PAGES);
+      writeNumber(json, response.getTotalPages());
+      json.writeFieldName(TOTAL_COUNT);
+      writeNumber(json, response.getTotalCount());
+      json.writeFieldName(TOTAL_COUNT_APPROXIMATE);
+      if (response.getTotalCountApproximate() == null) {
+        json.writeNull();
+      } else {
+        json.writeBoolean(response.getTotalCountApproximate());
+      }
+      json.writeFieldName(FACETS);
+      writeFacets(json, response.getFacets());
+      json.writeEndObject();
+    }
+  }
+
+  private static void writePerson(JsonGenerator json, PersonDto person) throws IOException {
+    if (person == null) {
+      json.writeNull();
+      return;
+    }
+    json.writeStartObject();
+    json.writeFieldName(ID);
+    writeNumber(json, person.getId());
+    json.writeFieldName(NAME);
+    json.writeString(person.getName());
+    json.writeFieldName(COORDINATES);
+    CoordinatesDto coordinates = person.getCoordinates();
+    if (coordinates == null) {
+      json.writeNull();
+    } else {
+      json.writeStartObject();
+      json.writeFieldName(X);
+      writeNumber(json, coordinates.getX());
+      json.writeFieldName(Y);
+      writeNumber(json, coordinates.getY());
+      json.writeEndObject();
+    }
+    json.writeFieldName(CREATION_DATE);
+    OffsetDateTime creationDate = person.getCreationDate();
+    json.writeString(creationDate != null ? DateTimeFormatter.ISO_OFFSET_DATE_TIME.format(creationDate) : null);
+    json.writeFieldName(HEIGHT);
+    if (person.getHeight() == null) {
+      json.writeNull();
+    } else {
+      json.writeNumber(person.getHeight());
+    }
+    json.writeFieldName(EYE_COLOR);
+    writeEnum(json, person.getEyeColor());
+    json.writeFieldName(HAIR_COLOR);
+    writeEnum(json, person.getHairColor());
+    json.writeFieldName(NATIONALITY);
+    writeEnum(json, person.getNationality());
+    json.writeFieldName(LOCATION);
+    LocationDto location = person.getLocation();
+    if (location == null) {
+      json.writeNull();
+    } else {
+      json.writeStartObject();
+      json.writeFieldName(X);
+      writeNumber(json, location.getX());
+      json.writeFieldName(Y);
+      writeNumber(json, location.getY());
+      json.writeFieldName(Z);
+      writeNumber(json, location.getZ());
+      json.writeFieldName(NAME);
+      json.writeString(location.getName());
+      json.writeEndObject();
+    }
+    json.writeFieldName(VERSION);
+    writeNumber(json, person.getVersion());
+    json.writeEndObject();
+  }
+
+  private static void writeFacets(JsonGenerator json, Map<String, Map<String, Long>> facets) throws IOException {
+    if (facets == null) {
+      json.writeNull();
+      return;
+    }
+    json.writeStartObject();
+    for (Map.Entry<String, Map<String, Long>> facet : facets.entrySet()) {
+      json.writeFieldName(facet.getKey());
+      if (facet.getValue() == null) {
+        json.writeNull();
+        continue;
+      }
+      json.writeStartObject();
+      for (Map.Entry<String, Long> count : facet.getValue().entrySet()) {
+        json.writeFieldName(count.getKey());
+        writeNumber(json, count.getValue());
+      }
+      json.writeEndObject();
+    }
+    json.writeEndObject();
+  }
+
+  private static void writeEnum(JsonGenerator json, String name) throws IOException {
+    SerializableString encoded = name != null ? ENUM_NAMES.get(name) : null;
+    if (encoded != null) {
+      json.writeString(encoded);
+    } else {
+      json.writeString(name);
+    }
+  }
+
+  private static void writeNumber(JsonGenerator json, Integer value) throws IOException {
+    if (value == null) {
+      json.writeNull();
+    } else {
+      json.writeNumber(value);
+    }
+  }
+
+  private static void writeNumber(JsonGenerator json, Long value) throws IOException {
+    if (value == null) {
+      json.writeNull();
+    } else {
+      json.writeNumber(value);
+    }
+  }
+}
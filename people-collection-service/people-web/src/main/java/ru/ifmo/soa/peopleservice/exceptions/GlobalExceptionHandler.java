@@ -19,6 +19,10 @@ public class GlobalExceptionHandler implements ExceptionMapper<Exception> {
       return Response.status(405).entity(new ErrorResponseDto(405, exception.getMessage())).build();
     } else if (exception instanceof ConflictException) {
       return Response.status(409).entity(new ErrorResponseDto(409, exception.getMessage())).build();
+    } else if (exception instanceof GoneException) {
+      return Response.status(410).entity(new ErrorResponseDto(410, exception.getMessage())).build();
+    } else if (exception instanceof PreconditionFailedException) {
+      return Response.status(412).entity(new ErrorResponseDto(412, exception.getMessage())).build();
     } else if (exception instanceof ContentTooLargeException) {
       return Response.status(413).entity(new ErrorResponseDto(413, exception.getMessage())).build();
     } else if (exception instanceof UnsupportedMediaTypeException) {
@@ -27,6 +31,8 @@ public class GlobalExceptionHandler implements ExceptionMapper<Exception> {
       return Response.status(422).entity(new ErrorResponseDto(422, exception.getMessage())).build();
     } else if (exception instanceof TooManyRequestsException) {
       return Response.status(429).entity(new ErrorResponseDto(429, exception.getMessage())).build();
+    } else if (exception instanceof GatewayTimeoutException) {
+      return Response.status(504).entity(new ErrorResponseDto(504, exception.getMessage())).build();
     } else if (exception instanceof InsufficientStorageException) {
       return Response.status(507).entity(new ErrorResponseDto(507, exception.getMessage())).build();
     } else {
@@ -12,9 +12,10 @@ import java.io.IOException;
 public class CorsFilter implements ContainerResponseFilter {
   private static final String ALLOWED_ORIGINS = "*";
   private static final String ALLOWED_METHODS = "GET, POST, PUT, DELETE, PATCH, OPTIONS, HEAD";
-  private static final String ALLOWED_HEADERS = "origin, content-type, accept, authorization, X-Callback-URL, X-Requested-With, Content-Length";
+  private static final String ALLOWED_HEADERS = "origin, content-type, accept, authorization, X-Callback-URL, X-Request-Timeout, X-Requested-With, Content-Length, If-Match, If-None-Match";
   private static final String ALLOW_CREDENTIALS = "true";
   private static final String MAX_AGE = "1209600";
+  private static final String EXPOSED_HEADERS = "Location, Content-Disposition, Retry-After, RateLimit-Policy, RateLimit-Limit, RateLimit-Remaining, RateLimit-Reset, ETag";
 
   @Override
   public void filter(ContainerRequestContext requestContext,
@@ -24,7 +25,7 @@ public class CorsFilter implements ContainerResponseFilter {
     responseContext.getHeaders().add("Access-Control-Allow-Headers", ALLOWED_HEADERS);
     responseContext.getHeaders().add("Access-Control-Allow-Methods", ALLOWED_METHODS);
     responseContext.getHeaders().add("Access-Control-Max-Age", MAX_AGE);
-    responseContext.getHeaders().add("Access-Control-Expose-Headers", "Location, Content-Disposition");
+    responseContext.getHeaders().add("Access-Control-Expose-Headers", EXPOSED_HEADERS);
 
     if (isPreflightRequest(requestContext)) {
       responseContext.setStatus(Response.Status.OK.getStatusCode());
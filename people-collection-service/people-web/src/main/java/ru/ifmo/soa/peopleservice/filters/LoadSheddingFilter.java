@@ -0,0 +1,109 @@
+package ru.ifmo.soa.peopleservice.filters;
+
+import jakarta.annotation.Priority;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.servlet.ServletRequestEvent;
+import jakarta.servlet.ServletRequestListener;
+import jakarta.servlet.annotation.WebListener;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.ws.rs.Priorities;
+import jakarta.ws.rs.container.ContainerRequestContext;
+import jakarta.ws.rs.container.ContainerRequestFilter;
+import jakarta.ws.rs.container.ContainerResponseContext;
+import jakarta.ws.rs.container.ContainerResponseFilter;
+import jakarta.ws.rs.core.Context;
+import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.ext.Provider;
+import ru.ifmo.soa.peopleservice.concurrency.AdaptiveConcurrencyLimit;
+import ru.ifmo.soa.peopleservice.concurrency.RequestPriority;
+import ru.ifmo.soa.peopleservice.dto.ErrorResponseDto;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rejects requests with 503 once the adaptive concurrency limit is reached. Runs after the rate limiter,
+ * so throttled clients never occupy a slot.
+ * <p>
+ * A request's slot is released by {@link Release} once the servlet container is done with the request, so it
+ * is freed even when a later filter, the resource or the body writer throws, and the latency fed to the limit
+ * includes writing the body. The response filter only records the status.
+ */
+@Provider
+@ApplicationScoped
+@Priority(Priorities.USER + 100)
+public class LoadSheddingFilter implements ContainerRequestFilter, ContainerResponseFilter {
+  private static final boolean ENABLED = !Boolean.parseBoolean(System.getProperty("api.concurrency.limit.disabled", "false"));
+
+  private static final int INITIAL_LIMIT = Integer.getInteger("api.concurrency.limit.initial", 20);
+  private static final int MIN_LIMIT = Integer.getInteger("api.concurrency.limit.min", 4);
+  private static final int MAX_LIMIT = Integer.getInteger("api.concurrency.limit.max", 200);
+  private static final String SLOT_ATTRIBUTE = LoadSheddingFilter.class.getName() + ".slot";
+
+  private final AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(INITIAL_LIMIT, MIN_LIMIT, MAX_LIMIT);
+
+  @Context
+  private HttpServletRequest servletRequest;
+
+  @Override
+  public void filter(ContainerRequestContext requestContext) throws IOException {
+    String path = requestContext.getUriInfo().getPath();
+    // change streams stay open for as long as the client listens; PersonEventStream caps them itself
+    if (!ENABLED || "OPTIONS".equals(requestContext.getMethod()) || path.contains("health") || path.endsWith("people/stream")) {
+      return;
+    }
+
+    RequestPriority priority = RequestPriority.of(requestContext);
+    if (!limit.tryAcquire(priority.share())) {
+      requestContext.abortWith(Response.status(Response.Status.SERVICE_UNAVAILABLE)
+        .header("Retry-After", retryAfterSeconds())
+        .entity(new ErrorResponseDto(503, "Service is overloaded. Please try again later."))
+        .build());
+      return;
+    }
+    servletRequest.setAttribute(SLOT_ATTRIBUTE, new Slot(limit, System.nanoTime()));
+  }
+
+  @Override
+  public void filter(ContainerRequestContext requestContext, ContainerResponseContext responseContext) throws IOException {
+    if (servletRequest.getAttribute(SLOT_ATTRIBUTE) instanceof Slot slot) {
+      slot.status = responseContext.getStatus();
+    }
+  }
+
+  private long retryAfterSeconds() {
+    long rtt = limit.getLongRttNanos();
+    return Math.max(1, TimeUnit.NANOSECONDS.toSeconds(rtt) + 1);
+  }
+
+  private static final class Slot {
+    private final AdaptiveConcurrencyLimit limit;
+    private final long start;
+    /** Set by the response filter; a request that never got there failed outside JAX-RS and counts as dropped. */
+    private volatile int status = -1;
+
+    private Slot(AdaptiveConcurrencyLimit limit, long start) {
+      this.limit = limit;
+      this.start = start;
+    }
+
+    private void release() {
+      limit.release(System.nanoTime() - start, status < 0 || status == 503 || status == 504);
+    }
+  }
+
+  /**
+   * Releases the slot of a request when it leaves the web application, after its response has been written.
+   */
+  @WebListener
+  public static class Release implements ServletRequestListener {
+
+    @Override
+    public void requestDestroyed(ServletRequestEvent event) {
+      if (event.getServletRequest().getAttribute(SLOT_ATTRIBUTE) instanceof Slot slot) {
+        event.getServletRequest().removeAttribute(SLOT_ATTRIBUTE);
+        slot.release();
+      }
+    }
+  }
+}
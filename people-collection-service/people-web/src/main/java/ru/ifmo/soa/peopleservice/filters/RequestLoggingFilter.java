@@ -1,46 +1,58 @@
 package ru.ifmo.soa.peopleservice.filters;
 
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.ws.rs.container.ContainerRequestContext;
 import jakarta.ws.rs.container.ContainerRequestFilter;
 import jakarta.ws.rs.container.ContainerResponseContext;
 import jakarta.ws.rs.container.ContainerResponseFilter;
+import jakarta.ws.rs.core.Context;
+import jakarta.ws.rs.core.MultivaluedMap;
 import jakarta.ws.rs.core.Response;
 import jakarta.ws.rs.ext.Provider;
 
 import java.io.IOException;
-import java.time.Duration;
-import java.util.concurrent.ConcurrentHashMap;
 
-import io.github.bucket4j.Bandwidth;
-import io.github.bucket4j.Bucket;
-import io.github.bucket4j.Refill;
 import ru.ifmo.soa.peopleservice.dto.ErrorResponseDto;
+import ru.ifmo.soa.peopleservice.ratelimit.ClusterRateLimiter;
+import ru.ifmo.soa.peopleservice.ratelimit.LocalRateLimiter;
+import ru.ifmo.soa.peopleservice.ratelimit.RateLimitConfig;
+import ru.ifmo.soa.peopleservice.ratelimit.RateLimiter;
+import ru.ifmo.soa.peopleservice.ratelimit.RequestCostPolicy;
 
 @Provider
+@ApplicationScoped
 public class RequestLoggingFilter implements ContainerRequestFilter, ContainerResponseFilter {
-  private static final boolean RATE_LIMIT_ENABLED = !Boolean.parseBoolean(System.getProperty("api.rate.limit.disabled", "false"));
+  private static final int MAX_CLIENT_KEY_LENGTH = 64;
+  private static final String DECISION_PROPERTY = RequestLoggingFilter.class.getName() + ".decision";
 
-  private static final long MAX_REQUESTS_PER_MINUTE = 100;
-  private static final ConcurrentHashMap<String, Bucket> buckets = new ConcurrentHashMap<>();
+  private final RequestCostPolicy costPolicy = new RequestCostPolicy();
+  private final LocalRateLimiter localRateLimiter = new LocalRateLimiter();
 
-  private Bucket createNewBucket() {
-    Bandwidth limit = Bandwidth.classic(MAX_REQUESTS_PER_MINUTE, Refill.intervally(MAX_REQUESTS_PER_MINUTE, Duration.ofMinutes(1)));
-    return Bucket.builder().addLimit(limit).build();
-  }
+  @Inject
+  private ClusterRateLimiter clusterRateLimiter;
+
+  @Context
+  private HttpServletRequest servletRequest;
 
   @Override
   public void filter(ContainerRequestContext requestContext) throws IOException {
-    if (!RATE_LIMIT_ENABLED || "OPTIONS".equals(requestContext.getMethod())) {
+    if (!RateLimitConfig.ENABLED || "OPTIONS".equals(requestContext.getMethod())) {
       return;
     }
 
-    String clientIP = requestContext.getHeaderString("X-Forwarded-For");
-    if (clientIP == null || clientIP.isEmpty()) {
-      clientIP = requestContext.getUriInfo().getRequestUri().getHost();
+    long cost = Math.min(costPolicy.costOf(requestContext), RateLimitConfig.MAX_REQUESTS_PER_MINUTE);
+    if (cost <= 0) {
+      return;
     }
-    Bucket bucket = buckets.computeIfAbsent(clientIP, k -> createNewBucket());
-    if (!bucket.tryConsume(1)) {
+    RateLimiter limiter = RateLimitConfig.CLUSTER_ENABLED ? clusterRateLimiter : localRateLimiter;
+    String clientKey = clientKey(requestContext.getHeaderString("X-Forwarded-For"), servletRequest.getRemoteAddr());
+    RateLimiter.Decision decision = limiter.tryConsume(clientKey, cost);
+    requestContext.setProperty(DECISION_PROPERTY, decision);
+    if (!decision.allowed()) {
       requestContext.abortWith(Response.status(jakarta.ws.rs.core.Response.Status.TOO_MANY_REQUESTS)
+        .header("Retry-After", decision.retryAfterSeconds())
         .entity(new ErrorResponseDto(429, "Rate limit exceeded. Please try again later."))
         .build());
     }
@@ -48,5 +60,39 @@ public class RequestLoggingFilter implements ContainerRequestFilter, ContainerRe
 
   @Override
   public void filter(ContainerRequestContext requestContext, ContainerResponseContext responseContext) throws IOException {
+    if (!(requestContext.getProperty(DECISION_PROPERTY) instanceof RateLimiter.Decision decision)) {
+      return;
+    }
+    MultivaluedMap<String, Object> headers = responseContext.getHeaders();
+    headers.putSingle("RateLimit-Policy", RateLimitConfig.MAX_REQUESTS_PER_MINUTE + ";w=60");
+    headers.putSingle("RateLimit-Limit", RateLimitConfig.MAX_REQUESTS_PER_MINUTE);
+    headers.putSingle("RateLimit-Remaining", decision.remaining());
+    headers.putSingle("RateLimit-Reset", decision.resetSeconds());
+  }
+
+  /**
+   * @return the address of the client: the peer, or, when the peer is a trusted proxy
+   * ({@code api.rate.limit.trusted-proxies}), the right-most {@code X-Forwarded-For} hop that is not one.
+   * Hops to the left of it are written by the client and could be anything.
+   */
+  public static String clientKey(String forwardedFor, String peerAddress) {
+    String clientIP = peerAddress;
+    if (forwardedFor != null && RateLimitConfig.TRUSTED_PROXIES.contains(peerAddress)) {
+      String[] hops = forwardedFor.split(",");
+      for (int i = hops.length - 1; i >= 0; i--) {
+        String hop = hops[i].trim();
+        if (hop.isEmpty()) {
+          continue;
+        }
+        clientIP = hop;
+        if (!RateLimitConfig.TRUSTED_PROXIES.contains(hop)) {
+          break;
+        }
+      }
+    }
+    if (clientIP == null) {
+      clientIP = "";
+    }
+    return clientIP.length() > MAX_CLIENT_KEY_LENGTH ? clientIP.substring(0, MAX_CLIENT_KEY_LENGTH) : clientIP;
   }
 }
@@ -0,0 +1,279 @@
+package ru.ifmo.soa.peopleservice.filters;
+
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.ws.rs.HttpMethod;
+import jakarta.ws.rs.container.ContainerRequestContext;
+import jakarta.ws.rs.container.ContainerResponseContext;
+import jakarta.ws.rs.container.ContainerResponseFilter;
+import jakarta.ws.rs.core.EntityTag;
+import jakarta.ws.rs.core.HttpHeaders;
+import jakarta.ws.rs.core.MultivaluedMap;
+import jakarta.ws.rs.ext.Provider;
+import jakarta.ws.rs.ext.WriterInterceptor;
+import jakarta.ws.rs.ext.WriterInterceptorContext;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Compresses response bodies larger than {@code api.compression.threshold-bytes} with {@code gzip} or
+ * {@code deflate}, whichever {@code Accept-Encoding} prefers. The body is held back until it passes the
+ * threshold, so smaller ones go out as they are. Buffers and deflaters are pooled.
+ */
+@Provider
+@ApplicationScoped
+public class ResponseCompression implements ContainerResponseFilter, WriterInterceptor {
+  private static final boolean ENABLED = !Boolean.parseBoolean(System.getProperty("api.compression.disabled", "false"));
+
+  private static final int THRESHOLD = Integer.getInteger("api.compression.threshold-bytes", 8192);
+  private static final int LEVEL = Integer.getInteger("api.compression.level", Deflater.BEST_SPEED);
+  private static final int POOL_SIZE = Integer.getInteger("api.compression.pool-size", 64);
+  private static final int BUFFER_SIZE = Math.max(THRESHOLD, 8192);
+  private static final String ENCODING_PROPERTY = ResponseCompression.class.getName() + ".encoding";
+
+  private enum Encoding {
+    GZIP("gzip"), DEFLATE("deflate");
+
+    private final String token;
+
+    Encoding(String token) {
+      this.token = token;
+    }
+  }
+
+  private final BlockingQueue<byte[]> buffers = new ArrayBlockingQueue<>(POOL_SIZE);
+  private final BlockingQueue<Deflater> gzipDeflaters = new ArrayBlockingQueue<>(POOL_SIZE);
+  private final BlockingQueue<Deflater> deflateDeflaters = new ArrayBlockingQueue<>(POOL_SIZE);
+
+  @Override
+  public void filter(ContainerRequestContext requestContext, ContainerResponseContext responseContext) throws IOException {
+    if (!ENABLED || !responseContext.hasEntity() || HttpMethod.HEAD.equals(requestContext.getMethod())
+      || responseContext.getHeaders().containsKey(HttpHeaders.CONTENT_ENCODING)) {
+      return;
+    }
+    responseContext.getHeaders().add(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+    Encoding encoding = negotiate(requestContext.getHeaderString(HttpHeaders.ACCEPT_ENCODING));
+    if (encoding != null) {
+      requestContext.setProperty(ENCODING_PROPERTY, encoding);
+    }
+  }
+
+  @Override
+  public void aroundWriteTo(WriterInterceptorContext context) throws IOException {
+    if (!(context.getProperty(ENCODING_PROPERTY) instanceof Encoding encoding)) {
+      context.proceed();
+      return;
+    }
+    OutputStream original = context.getOutputStream();
+    CompressingStream compressing = new CompressingStream(original, context.getHeaders(), encoding);
+    context.setOutputStream(compressing);
+    try {
+      context.proceed();
+      compressing.finish();
+    } finally {
+      compressing.release();
+      context.setOutputStream(original);
+    }
+  }
+
+  /**
+   * @return the encoding with the highest {@code q} that is not {@code 0}, gzip on ties; {@code null} for
+   * identity
+   */
+  static Encoding negotiate(String acceptEncoding) {
+    if (acceptEncoding == null || acceptEncoding.isBlank()) {
+      return null;
+    }
+    float gzip = -1;
+    float deflate = -1;
+    float any = -1;
+    for (String part : acceptEncoding.split(",")) {
+      String[] params = part.split(";");
+      String token = params[0].strip().toLowerCase(Locale.ROOT);
+      float q = 1;
+      for (int i = 1; i < params.length; i++) {
+        String param = params[i].strip();
+        if (param.startsWith("q=")) {
+          try {
+            q = Float.parseFloat(param.substring(2));
+          } catch (NumberFormatException e) {
+            q = 0;
+          }
+        }
+      }
+      switch (token) {
+        case "gzip", "x-gzip" -> gzip = q;
+        case "deflate" -> deflate = q;
+        case "*" -> any = q;
+        default -> { }
+      }
+    }
+    gzip = gzip < 0 ? any : gzip;
+    deflate = deflate < 0 ? any : deflate;
+    if (gzip <= 0 && deflate <= 0) {
+      return null;
+    }
+    return gzip >= deflate ? Encoding.GZIP : Encoding.DEFLATE;
+  }
+
+  private byte[] acquireBuffer() {
+    byte[] buffer = buffers.poll();
+    return buffer != null ? buffer : new byte[BUFFER_SIZE];
+  }
+
+  private Deflater acquireDeflater(Encoding encoding) {
+    Deflater deflater = (encoding == Encoding.GZIP ? gzipDeflaters : deflateDeflaters).poll();
+    // gzip frames raw deflate data itself; "deflate" is the zlib format
+    return deflater != null ? deflater : new Deflater(LEVEL, encoding == Encoding.GZIP);
+  }
+
+  private void releaseDeflater(Encoding encoding, Deflater deflater) {
+    deflater.reset();
+    if (!(encoding == Encoding.GZIP ? gzipDeflaters : deflateDeflaters).offer(deflater)) {
+      deflater.end();
+    }
+  }
+
+  /**
+   * Buffers up to the threshold; past it, switches the response to the encoding and deflates everything
+   * from then on into a second pooled buffer.
+   */
+  private final class CompressingStream extends OutputStream {
+    private static final byte[] GZIP_HEADER = {0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff};
+
+    private final OutputStream out;
+    private final MultivaluedMap<String, Object> headers;
+    private final Encoding encoding;
+    private final CRC32 crc = new CRC32();
+    private byte[] buffer;
+    private byte[] output;
+    private int buffered;
+    private Deflater deflater;
+    private boolean finished;
+
+    CompressingStream(OutputStream out, MultivaluedMap<String, Object> headers, Encoding encoding) {
+      this.out = out;
+      this.headers = headers;
+      this.encoding = encoding;
+      this.buffer = acquireBuffer();
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+      write(new byte[]{(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+      if (finished) {
+        throw new IOException("Response body is already complete");
+      }
+      if (deflater == null && buffered + len <= THRESHOLD) {
+        System.arraycopy(b, off, buffer, buffered, len);
+        buffered += len;
+        return;
+      }
+      if (deflater == null) {
+        start();
+      }
+      deflate(b, off, len);
+    }
+
+    private void start() throws IOException {
+      headers.putSingle(HttpHeaders.CONTENT_ENCODING, encoding.token);
+      headers.remove(HttpHeaders.CONTENT_LENGTH);
+      // the compressed bytes are a different representation; a weak tag still serves If-None-Match
+      Object tag = headers.getFirst(HttpHeaders.ETAG);
+      if (tag instanceof EntityTag entityTag && !entityTag.isWeak()) {
+        headers.putSingle(HttpHeaders.ETAG, new EntityTag(entityTag.getValue(), true));
+      } else if (tag instanceof String value && value.startsWith("\"")) {
+        headers.putSingle(HttpHeaders.ETAG, "W/" + value);
+      }
+      deflater = acquireDeflater(encoding);
+      output = acquireBuffer();
+      if (encoding == Encoding.GZIP) {
+        out.write(GZIP_HEADER);
+      }
+      int pending = buffered;
+      buffered = 0;
+      deflate(buffer, 0, pending);
+    }
+
+    private void deflate(byte[] b, int off, int len) throws IOException {
+      if (encoding == Encoding.GZIP) {
+        crc.update(b, off, len);
+      }
+      deflater.setInput(b, off, len);
+      while (!deflater.needsInput()) {
+        drain();
+      }
+    }
+
+    private void drain() throws IOException {
+      int length = deflater.deflate(output, 0, output.length);
+      if (length > 0) {
+        out.write(output, 0, length);
+      }
+    }
+
+    void finish() throws IOException {
+      if (finished) {
+        return;
+      }
+      finished = true;
+      if (deflater == null) {
+        out.write(buffer, 0, buffered);
+        return;
+      }
+      deflater.finish();
+      while (!deflater.finished()) {
+        drain();
+      }
+      if (encoding == Encoding.GZIP) {
+        writeIntLE(crc.getValue());
+        writeIntLE(deflater.getBytesRead());
+      }
+    }
+
+    private void writeIntLE(long value) throws IOException {
+      out.write(new byte[]{(byte) value, (byte) (value >> 8), (byte) (value >> 16), (byte) (value >> 24)});
+    }
+
+    @Override
+    public void flush() throws IOException {
+      // a flush must not end the buffering phase or emit a partial deflate block
+      if (deflater == null) {
+        return;
+      }
+      out.flush();
+    }
+
+    /**
+     * Writers may close the stream; the container closes the real one.
+     */
+    @Override
+    public void close() throws IOException {
+      finish();
+    }
+
+    void release() {
+      if (deflater != null) {
+        releaseDeflater(encoding, deflater);
+        deflater = null;
+      }
+      if (output != null) {
+        buffers.offer(output);
+        output = null;
+      }
+      if (buffer != null) {
+        buffers.offer(buffer);
+        buffer = null;
+      }
+    }
+  }
+}
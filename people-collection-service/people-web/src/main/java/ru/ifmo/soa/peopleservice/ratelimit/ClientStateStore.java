@@ -0,0 +1,86 @@
+package ru.ifmo.soa.peopleservice.ratelimit;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+/**
+ * Bounded, expiring storage of per-client rate limit state.
+ * <p>
+ * Entries idle for longer than {@code idleTtlNanos} are dropped. Keep the TTL at least as long as the
+ * refill period: an idle bucket is full by then, so dropping it loses nothing. When the store is still
+ * over {@code maxEntries} after expiry, the least recently used entries are evicted.
+ */
+public class ClientStateStore<V> {
+
+  private final int maxEntries;
+  private final long idleTtlNanos;
+  private final Supplier<V> factory;
+  private final ConcurrentHashMap<String, Entry<V>> entries = new ConcurrentHashMap<>();
+  private final AtomicBoolean evicting = new AtomicBoolean();
+
+  public ClientStateStore(int maxEntries, long idleTtlNanos, Supplier<V> factory) {
+    this.maxEntries = maxEntries;
+    this.idleTtlNanos = idleTtlNanos;
+    this.factory = factory;
+  }
+
+  public V get(String clientKey) {
+    long now = System.nanoTime();
+    Entry<V> entry = entries.get(clientKey);
+    if (entry == null) {
+      entry = entries.computeIfAbsent(clientKey, k -> new Entry<>(factory.get(), now));
+      if (entries.size() > maxEntries) {
+        evict(now);
+      }
+    }
+    entry.lastAccessNanos = now;
+    return entry.value;
+  }
+
+  public int size() {
+    return entries.size();
+  }
+
+  private void evict(long now) {
+    if (!evicting.compareAndSet(false, true)) {
+      return;
+    }
+    try {
+      entries.entrySet().removeIf(e -> now - e.getValue().lastAccessNanos > idleTtlNanos);
+      int excess = entries.size() - maxEntries;
+      if (excess <= 0) {
+        return;
+      }
+      // Evict a little more than needed so a burst of new clients does not trigger a sort per request
+      int toRemove = Math.min(entries.size(), excess + maxEntries / 10);
+      List<Candidate<V>> snapshot = new ArrayList<>(entries.size());
+      for (Map.Entry<String, Entry<V>> e : entries.entrySet()) {
+        snapshot.add(new Candidate<>(e.getKey(), e.getValue(), e.getValue().lastAccessNanos));
+      }
+      snapshot.sort((a, b) -> Long.compare(a.lastAccessNanos(), b.lastAccessNanos()));
+      for (int i = 0; i < toRemove && i < snapshot.size(); i++) {
+        Candidate<V> victim = snapshot.get(i);
+        entries.remove(victim.key(), victim.entry());
+      }
+    } finally {
+      evicting.set(false);
+    }
+  }
+
+  private record Candidate<V>(String key, Entry<V> entry, long lastAccessNanos) {
+  }
+
+  private static final class Entry<V> {
+    private final V value;
+    private volatile long lastAccessNanos;
+
+    private Entry(V value, long lastAccessNanos) {
+      this.value = value;
+      this.lastAccessNanos = lastAccessNanos;
+    }
+  }
+}
@@ -0,0 +1,113 @@
+package ru.ifmo.soa.peopleservice.ratelimit;
+
+import jakarta.ejb.EJB;
+import jakarta.enterprise.context.ApplicationScoped;
+import ru.ifmo.soa.peopleservice.dto.RateLimitLeaseDto;
+import ru.ifmo.soa.peopleservice.ejb.remote.RateLimitLeaseRemote;
+import ru.ifmo.soa.peopleservice.util.Result;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+/**
+ * Cluster-wide limiter backed by the shared {@code rate_limit_buckets} table.
+ * <p>
+ * Each node leases a small batch of tokens per client and spends it in memory, so only one request in
+ * {@code api.rate.limit.cluster.lease-size} reaches the database. Rejections are also remembered until
+ * the shared bucket refills, so a throttled client cannot turn into database load. If the database is
+ * unreachable the node falls back to its own {@link LocalRateLimiter} for
+ * {@code api.rate.limit.cluster.retry-seconds} before trying again, so an outage costs one failed call and
+ * one warning per period rather than one per request.
+ */
+@ApplicationScoped
+public class ClusterRateLimiter implements RateLimiter {
+
+  private static final Logger LOG = Logger.getLogger(ClusterRateLimiter.class.getName());
+
+  @EJB(lookup = "java:global/people-ejb/RateLimitLeaseBean!ru.ifmo.soa.peopleservice.ejb.remote.RateLimitLeaseRemote")
+  private RateLimitLeaseRemote leaseService;
+
+  private final ClientStateStore<Lease> leases = new ClientStateStore<>(
+    RateLimitConfig.MAX_TRACKED_CLIENTS, RateLimitConfig.CLIENT_IDLE_TTL.toNanos(), Lease::new);
+  private final LocalRateLimiter fallback = new LocalRateLimiter();
+  /** {@link System#nanoTime} until which the shared bucket is not asked, or {@code 0} while it answers. */
+  private final AtomicLong unavailableUntilNanos = new AtomicLong();
+
+  @Override
+  public Decision tryConsume(String clientKey, long cost) {
+    Lease lease = leases.get(clientKey);
+    long now = System.nanoTime();
+    long missing;
+    synchronized (lease) {
+      if (lease.tokens >= cost) {
+        lease.tokens -= cost;
+        return new Decision(true, lease.tokens + lease.sharedRemaining, lease.resetSeconds, 0);
+      }
+      if (now < lease.deniedUntilNanos) {
+        return new Decision(false, lease.tokens, lease.resetSeconds, toSeconds(lease.deniedUntilNanos - now));
+      }
+      missing = cost - lease.tokens;
+    }
+
+    long unavailableUntil = unavailableUntilNanos.get();
+    if (unavailableUntil != 0 && now - unavailableUntil < 0) {
+      return fallback.tryConsume(clientKey, cost);
+    }
+
+    // outside the lock, so the client's other requests are not queued behind the database; those that run out
+    // meanwhile lease their own batch, and what is left over is spent later, having been taken from the
+    // shared bucket already
+    RateLimitLeaseDto granted;
+    try {
+      granted = acquire(clientKey, missing, Math.max(missing, RateLimitConfig.CLUSTER_LEASE_SIZE));
+    } catch (RuntimeException e) {
+      // of the calls that failed together, only the one that starts the period logs
+      if (unavailableUntilNanos.compareAndSet(unavailableUntil, now + RateLimitConfig.CLUSTER_RETRY_AFTER.toNanos())) {
+        LOG.warning("Shared rate limit unavailable, using node-local limit for "
+          + RateLimitConfig.CLUSTER_RETRY_AFTER.toSeconds() + " s: " + e.getMessage());
+      }
+      return fallback.tryConsume(clientKey, cost);
+    }
+    if (unavailableUntil != 0 && unavailableUntilNanos.compareAndSet(unavailableUntil, 0)) {
+      LOG.info("Shared rate limit available again");
+    }
+
+    synchronized (lease) {
+      lease.tokens += granted.getGranted();
+      lease.sharedRemaining = granted.getRemaining();
+      lease.resetSeconds = granted.getSecondsToReset();
+      if (lease.tokens >= cost) {
+        lease.tokens -= cost;
+        lease.deniedUntilNanos = 0;
+        return new Decision(true, lease.tokens + lease.sharedRemaining, lease.resetSeconds, 0);
+      }
+      long retryAfter = Math.max(1, granted.getSecondsToRefill());
+      lease.deniedUntilNanos = System.nanoTime() + TimeUnit.SECONDS.toNanos(retryAfter);
+      return new Decision(false, lease.tokens, lease.resetSeconds, retryAfter);
+    }
+  }
+
+  private RateLimitLeaseDto acquire(String clientKey, long minimum, long desired) {
+    Result<RateLimitLeaseDto> result = leaseService.acquire(
+      clientKey, minimum, desired, RateLimitConfig.MAX_REQUESTS_PER_MINUTE, RateLimitConfig.MAX_REQUESTS_PER_MINUTE);
+    if (result instanceof Result.Success<RateLimitLeaseDto> success) {
+      return success.value();
+    } else if (result instanceof Result.Error<RateLimitLeaseDto> error) {
+      Exception ex = error.exception();
+      throw ex instanceof RuntimeException re ? re : new RuntimeException(ex);
+    }
+    throw new IllegalStateException("Unexpected Result subtype: " + result.getClass());
+  }
+
+  private static long toSeconds(long nanos) {
+    return (nanos + TimeUnit.SECONDS.toNanos(1) - 1) / TimeUnit.SECONDS.toNanos(1);
+  }
+
+  private static final class Lease {
+    private long tokens;
+    private long sharedRemaining;
+    private long resetSeconds;
+    private long deniedUntilNanos;
+  }
+}
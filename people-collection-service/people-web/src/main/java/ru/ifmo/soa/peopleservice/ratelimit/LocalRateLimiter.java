@@ -0,0 +1,38 @@
+package ru.ifmo.soa.peopleservice.ratelimit;
+
+import io.github.bucket4j.Bandwidth;
+import io.github.bucket4j.Bucket;
+import io.github.bucket4j.ConsumptionProbe;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-node limiter: every people-web instance enforces the limit on its own.
+ */
+public class LocalRateLimiter implements RateLimiter {
+
+  private final ClientStateStore<Bucket> buckets = new ClientStateStore<>(
+    RateLimitConfig.MAX_TRACKED_CLIENTS, RateLimitConfig.CLIENT_IDLE_TTL.toNanos(), LocalRateLimiter::createNewBucket);
+
+  private static Bucket createNewBucket() {
+    long perMinute = RateLimitConfig.MAX_REQUESTS_PER_MINUTE;
+    Bandwidth limit = Bandwidth.builder().capacity(perMinute).refillIntervally(perMinute, Duration.ofMinutes(1)).build();
+    return Bucket.builder().addLimit(limit).build();
+  }
+
+  @Override
+  public Decision tryConsume(String clientKey, long cost) {
+    ConsumptionProbe probe = buckets.get(clientKey).tryConsumeAndReturnRemaining(cost);
+    return new Decision(
+      probe.isConsumed(),
+      probe.getRemainingTokens(),
+      toSeconds(probe.getNanosToWaitForReset()),
+      probe.isConsumed() ? 0 : toSeconds(probe.getNanosToWaitForRefill())
+    );
+  }
+
+  private static long toSeconds(long nanos) {
+    return (nanos + TimeUnit.SECONDS.toNanos(1) - 1) / TimeUnit.SECONDS.toNanos(1);
+  }
+}
@@ -0,0 +1,27 @@
+package ru.ifmo.soa.peopleservice.ratelimit;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+public final class RateLimitConfig {
+
+  public static final boolean ENABLED = !Boolean.parseBoolean(System.getProperty("api.rate.limit.disabled", "false"));
+  public static final boolean CLUSTER_ENABLED = Boolean.parseBoolean(System.getProperty("api.rate.limit.cluster.enabled", "false"));
+
+  public static final long MAX_REQUESTS_PER_MINUTE = Long.getLong("api.rate.limit.per-minute", 100);
+  public static final int MAX_TRACKED_CLIENTS = Integer.getInteger("api.rate.limit.max-clients", 10000);
+  public static final Duration CLIENT_IDLE_TTL = Duration.ofSeconds(Long.getLong("api.rate.limit.idle-ttl-seconds", 120));
+  public static final long CLUSTER_LEASE_SIZE = Math.max(1, Long.getLong("api.rate.limit.cluster.lease-size", 10));
+  public static final Duration CLUSTER_RETRY_AFTER = Duration.ofSeconds(
+    Math.max(1, Long.getLong("api.rate.limit.cluster.retry-seconds", 10)));
+  /** Peer addresses whose {@code X-Forwarded-For} is believed; without any the header is ignored. */
+  public static final Set<String> TRUSTED_PROXIES = Arrays.stream(System.getProperty("api.rate.limit.trusted-proxies", "").split(","))
+    .map(String::trim)
+    .filter(address -> !address.isEmpty())
+    .collect(Collectors.toUnmodifiableSet());
+
+  private RateLimitConfig() {
+  }
+}
@@ -0,0 +1,9 @@
+package ru.ifmo.soa.peopleservice.ratelimit;
+
+public interface RateLimiter {
+
+  Decision tryConsume(String clientKey, long cost);
+
+  record Decision(boolean allowed, long remaining, long resetSeconds, long retryAfterSeconds) {
+  }
+}
@@ -0,0 +1,56 @@
+package ru.ifmo.soa.peopleservice.ratelimit;
+
+import jakarta.ws.rs.container.ContainerRequestContext;
+
+/**
+ * Token cost of a request. Page reads are charged by requested page size, bulk operations by a flat
+ * configurable price, so a 10k-row search costs more than a single lookup.
+ */
+public class RequestCostPolicy {
+
+  private static final long HEALTH_COST = Long.getLong("api.rate.limit.cost.health", 0);
+  private static final long DEFAULT_COST = Long.getLong("api.rate.limit.cost.default", 1);
+  private static final long ROWS_PER_TOKEN = Math.max(1, Long.getLong("api.rate.limit.cost.rows-per-token", 100));
+  private static final long BULK_DELETE_COST = Long.getLong("api.rate.limit.cost.bulk-delete", 10);
+  private static final long UNBOUNDED_READ_COST = Long.getLong("api.rate.limit.cost.unbounded-read", 5);
+  private static final int DEFAULT_PAGE_SIZE = 10;
+
+  public long costOf(ContainerRequestContext request) {
+    String method = request.getMethod();
+    String path = normalize(request.getUriInfo().getPath());
+
+    if (path.startsWith("health")) {
+      return HEALTH_COST;
+    }
+    if ("DELETE".equals(method) && path.startsWith("people/nationality/")) {
+      return BULK_DELETE_COST;
+    }
+    if ("GET".equals(method) && path.equals("people/location/greater")) {
+      return UNBOUNDED_READ_COST;
+    }
+    if (("GET".equals(method) && path.equals("people")) || ("POST".equals(method) && path.equals("people/search"))) {
+      return DEFAULT_COST + pageSizeOf(request) / ROWS_PER_TOKEN;
+    }
+    return DEFAULT_COST;
+  }
+
+  private long pageSizeOf(ContainerRequestContext request) {
+    String pageSize = request.getUriInfo().getQueryParameters().getFirst("pageSize");
+    if (pageSize == null) {
+      return DEFAULT_PAGE_SIZE;
+    }
+    try {
+      return Math.max(0, Long.parseLong(pageSize.trim()));
+    } catch (NumberFormatException e) {
+      return DEFAULT_PAGE_SIZE;
+    }
+  }
+
+  private String normalize(String path) {
+    if (path == null) {
+      return "";
+    }
+    String result = path.startsWith("/") ? path.substring(1) : path;
+    return result.endsWith("/") ? result.substring(0, result.length() - 1) : result;
+  }
+}
@@ -1,18 +1,39 @@
 package ru.ifmo.soa.peopleservice.resources;
 
 import jakarta.inject.Inject;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import jakarta.validation.constraints.NotNull;
 import jakarta.ws.rs.*;
+import jakarta.ws.rs.core.Context;
+import jakarta.ws.rs.core.EntityTag;
+import jakarta.ws.rs.core.HttpHeaders;
 import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Request;
 import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.core.UriInfo;
+import jakarta.ws.rs.core.Variant;
+import jakarta.ws.rs.sse.Sse;
+import jakarta.ws.rs.sse.SseEventSink;
 import ru.ifmo.soa.peopleservice.dto.*;
 import ru.ifmo.soa.peopleservice.entities.Location;
 import ru.ifmo.soa.peopleservice.adapters.PersonServiceAdapter;
+import ru.ifmo.soa.peopleservice.caching.EntityTags;
+import ru.ifmo.soa.peopleservice.caching.PersonBytesCache;
+import ru.ifmo.soa.peopleservice.config.CborWriter;
+import ru.ifmo.soa.peopleservice.config.DeadlinePolicy;
+import ru.ifmo.soa.peopleservice.exceptions.TooManyRequestsException;
+import ru.ifmo.soa.peopleservice.filters.RequestLoggingFilter;
+import ru.ifmo.soa.peopleservice.streaming.PersonEventStream;
+import ru.ifmo.soa.peopleservice.util.CallContext;
+import ru.ifmo.soa.peopleservice.util.CountMode;
 
 import java.io.IOException;
 import java.net.URL;
+import java.time.Duration;
 import java.time.OffsetDateTime;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
@@ -20,9 +41,14 @@ import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 
 @Path("/people")
-@Produces(MediaType.APPLICATION_JSON)
+@Produces({MediaType.APPLICATION_JSON, CborWriter.APPLICATION_CBOR})
 public class PeopleResource {
 
+  private static final List<Variant> VARIANTS =
+    Variant.mediaTypes(MediaType.APPLICATION_JSON_TYPE, CborWriter.APPLICATION_CBOR_TYPE).build();
+  /** How long search results stay readable; the snapshot bean keeps them by the same property. */
+  private static final long SNAPSHOT_TTL_SECONDS = Long.getLong("people.search.snapshot.ttl-seconds", 300);
+
   private final ExecutorService executorService = Executors.newCachedThreadPool();
 
   @Inject
@@ -31,54 +57,133 @@ public class PeopleResource {
   @Inject
   private SearchCallbackResource callbackResource;
 
+  @Inject
+  private EntityTags tags;
+
+  @Inject
+  private PersonBytesCache personCache;
+
+  @Inject
+  private PersonEventStream eventStream;
+
+  @Context
+  private HttpHeaders httpHeaders;
+
+  @Context
+  private UriInfo uriInfo;
+
+  @Context
+  private Request request;
+
+  @Context
+  private HttpServletRequest servletRequest;
+
   @GET
   public Response getPeople(
     @QueryParam("sortBy") String sortBy,
     @QueryParam("sortOrder") @DefaultValue("asc") String sortOrder,
     @QueryParam("page") @DefaultValue("0") Integer page,
-    @QueryParam("pageSize") @DefaultValue("10") Integer pageSize) {
-    PeopleResponseDto response = personService.getAllPeople(sortBy, sortOrder, page, pageSize);
-    return Response.ok(response).build();
+    @QueryParam("pageSize") @DefaultValue("10") Integer pageSize,
+    @QueryParam("countMode") String countMode) {
+    EntityTag tag = tags.collection(tags.collection(), representation());
+    if (tags.matches(ifNoneMatch(), tag)) {
+      return Response.notModified(tag).build();
+    }
+    PeopleResponseDto response = personService.getAllPeople(
+      sortBy, sortOrder, page, pageSize, CountMode.parse(countMode), callContext(DeadlinePolicy.Endpoint.READ));
+    return Response.ok(response).tag(tag).build();
   }
 
   @POST
   public Response addPerson(@Valid PersonInputDto personInput) {
-    PersonDto dto = personService.addPerson(personInput);
+    PersonDto dto = personService.addPerson(personInput, callContext(DeadlinePolicy.Endpoint.WRITE));
     return Response.status(Response.Status.CREATED).entity(dto).build();
   }
 
+  @GET
+  @Path("/stats/counts")
+  public Response getEnumCounts() {
+    EnumCountsDto counts = personService.getEnumCounts(callContext(DeadlinePolicy.Endpoint.READ));
+    return Response.ok(counts).build();
+  }
+
+  @GET
+  @Path("/index-advice")
+  public Response getIndexAdvice() {
+    List<IndexAdviceDto> advice = personService.getIndexAdvice(callContext(DeadlinePolicy.Endpoint.READ));
+    return Response.ok(advice).build();
+  }
+
+  @GET
+  @Path("/changes")
+  public Response getChanges(
+    @QueryParam("since") String since,
+    @QueryParam("limit") @DefaultValue("100") Integer limit) {
+    PersonChangesDto changes = personService.getChanges(since, limit, callContext(DeadlinePolicy.Endpoint.READ));
+    return Response.ok(changes).build();
+  }
+
+  @GET
+  @Path("/stream")
+  @Produces(MediaType.SERVER_SENT_EVENTS)
+  public void stream(@Context SseEventSink sink, @Context Sse sse, @HeaderParam(HttpHeaders.LAST_EVENT_ID_HEADER) String lastEventId) {
+    if (!eventStream.subscribe(sink, sse, lastEventId)) {
+      throw new TooManyRequestsException("Too many open change streams, poll /people/changes instead");
+    }
+  }
+
   @GET
   @Path("/{id}")
   public Response getPerson(@PathParam("id") Long id) {
-    PersonDto dto = personService.getPersonById(id);
-    return Response.ok(dto).build();
+    MediaType type = representation();
+    String collection = tags.collection();
+    EntityTag unchanged = tags.unchangedPerson(ifNoneMatch(), collection, type);
+    if (unchanged != null) {
+      return Response.notModified(unchanged).build();
+    }
+    if (personCache.isEnabled() && MediaType.APPLICATION_JSON_TYPE.isCompatible(type)) {
+      PersonBytesCache.Entry cached = personCache.get(id,
+        () -> personService.getPersonById(id, callContext(DeadlinePolicy.Endpoint.READ).onPrimary()));
+      EntityTag tag = tags.person(collection, cached.version(), type);
+      if (tags.matchesPerson(ifNoneMatch(), cached.version(), type)) {
+        return Response.notModified(tag).build();
+      }
+      return Response.ok(cached.json(), MediaType.APPLICATION_JSON_TYPE).tag(tag).build();
+    }
+    PersonDto dto = personService.getPersonById(id, callContext(DeadlinePolicy.Endpoint.READ));
+    EntityTag tag = tags.person(collection, dto.getVersion(), type);
+    if (tags.matchesPerson(ifNoneMatch(), dto.getVersion(), type)) {
+      return Response.notModified(tag).build();
+    }
+    return Response.ok(dto).tag(tag).build();
   }
 
   @PATCH
   @Path("/{id}")
   public Response updatePerson(@PathParam("id") Long id, Map<String, Object> updates) {
-    PersonDto dto = personService.updatePerson(id, updates);
-    return Response.ok(dto).build();
+    Long expectedVersion = tags.expectedPersonVersion(httpHeaders.getHeaderString(HttpHeaders.IF_MATCH));
+    PersonDto dto = personService.updatePerson(id, updates, expectedVersion, callContext(DeadlinePolicy.Endpoint.WRITE));
+    return Response.ok(dto).tag(tags.person(tags.collection(), dto.getVersion(), representation())).build();
   }
 
   @DELETE
   @Path("/{id}")
   public Response deletePerson(@PathParam("id") Long id) {
-    personService.deletePerson(id);
+    personService.deletePerson(id, callContext(DeadlinePolicy.Endpoint.WRITE));
     return Response.status(Response.Status.NO_CONTENT).build();
   }
 
   @DELETE
   @Path("/nationality/{nationality}")
   public Response deletePeopleByNationality(@PathParam("nationality") String nationality) {
-    personService.deletePeopleByNationality(nationality);
+    personService.deletePeopleByNationality(nationality, callContext(DeadlinePolicy.Endpoint.BULK_DELETE));
     return Response.status(Response.Status.NO_CONTENT).build();
   }
 
   @DELETE
   @Path("/location")
   public Response deleteOnePersonByLocation(@Valid Location location) {
-    personService.deletePersonByLocation(location);
+    personService.deletePersonByLocation(location, callContext(DeadlinePolicy.Endpoint.WRITE));
     return Response.status(Response.Status.NO_CONTENT).build();
   }
 
@@ -88,8 +193,12 @@ public class PeopleResource {
     @QueryParam("x") @NotNull Integer x,
     @QueryParam("y") @NotNull Long y,
     @QueryParam("z") @NotNull Integer z) {
-    PeopleResponseDto response = personService.getPeopleWithLocationGreaterThan(x, y, z);
-    return Response.ok(response).build();
+    EntityTag tag = tags.collection(tags.collection(), representation());
+    if (tags.matches(ifNoneMatch(), tag)) {
+      return Response.notModified(tag).build();
+    }
+    PeopleResponseDto response = personService.getPeopleWithLocationGreaterThan(x, y, z, callContext(DeadlinePolicy.Endpoint.READ));
+    return Response.ok(response).tag(tag).build();
   }
 
   @POST
@@ -100,7 +209,16 @@ public class PeopleResource {
     @QueryParam("sortOrder") @DefaultValue("asc") String sortOrder,
     @QueryParam("page") @DefaultValue("0") Integer page,
     @QueryParam("pageSize") @DefaultValue("10") Integer pageSize,
+    @QueryParam("countMode") String countMode,
+    @QueryParam("facets") String facets,
     @HeaderParam("X-Callback-URL") String callbackUrl) {
+    CountMode mode = CountMode.parse(countMode);
+    List<String> facetFields = facets == null ? List.of() : Arrays.stream(facets.split(","))
+      .map(String::trim)
+      .filter(facet -> !facet.isEmpty())
+      .toList();
+    Duration timeout = DeadlinePolicy.resolve(DeadlinePolicy.Endpoint.SEARCH, httpHeaders.getHeaderString(DeadlinePolicy.HEADER));
+    CallContext context = CallContext.withTimeout(timeout).withClient(clientKey());
 
     if (callbackUrl != null) {
       try {
@@ -112,7 +230,9 @@ public class PeopleResource {
       String taskId = "task-" + System.currentTimeMillis() + "-" + UUID.randomUUID().toString().substring(0, 8);
       CompletableFuture.runAsync(() -> {
         try {
-          PeopleResponseDto result = personService.searchPeople(filterCriteria, sortBy, sortOrder, page, pageSize);
+          // the whole result is kept for GET /people/search/results/{taskId}; the callback gets the requested page
+          PeopleResponseDto result = personService.createSearchSnapshot(
+            taskId, filterCriteria, sortBy, sortOrder, page, pageSize, mode, facetFields, context);
           callbackResource.sendResult(taskId, callbackUrl, result, null);
         } catch (Exception e) {
           try {
@@ -126,12 +246,61 @@ public class PeopleResource {
       AsyncSearchResponseDto response = new AsyncSearchResponseDto(
         taskId,
         "Search task accepted. Results will be sent to your callback URL.",
-        OffsetDateTime.now().plusMinutes(5).toString()
+        OffsetDateTime.now().plusSeconds(SNAPSHOT_TTL_SECONDS).toString(),
+        uriInfo.getBaseUriBuilder().path(PeopleResource.class).path("search/results/{taskId}").build(taskId).toString()
       );
       return Response.status(Response.Status.ACCEPTED).entity(response).build();
     } else {
-      PeopleResponseDto response = personService.searchPeople(filterCriteria, sortBy, sortOrder, page, pageSize);
-      return Response.ok(response).build();
+      // a repeated search with the tag of its last result gets 304, although the method is POST
+      EntityTag tag = tags.search(tags.collection(),
+        searchKey(filterCriteria, sortBy, sortOrder, page, pageSize, mode, facetFields), representation());
+      if (tags.matches(ifNoneMatch(), tag)) {
+        return Response.notModified(tag).build();
+      }
+      PeopleResponseDto response = personService.searchPeople(
+        filterCriteria, sortBy, sortOrder, page, pageSize, mode, facetFields, context);
+      return Response.ok(response).tag(tag).build();
+    }
+  }
+
+  @GET
+  @Path("/search/results/{taskId}")
+  public Response getSearchResults(
+    @PathParam("taskId") String taskId,
+    @QueryParam("page") @DefaultValue("0") Integer page,
+    @QueryParam("pageSize") @DefaultValue("10") Integer pageSize) {
+    PeopleResponseDto response = personService.getSearchResults(taskId, page, pageSize, callContext(DeadlinePolicy.Endpoint.READ));
+    return Response.ok(response).build();
+  }
+
+  private static String searchKey(FilterCriteriaDto criteria, String sortBy, String sortOrder, Integer page,
+                                  Integer pageSize, CountMode mode, List<String> facets) {
+    StringBuilder key = new StringBuilder();
+    if (criteria != null && criteria.getFilters() != null) {
+      for (FilterRuleDto rule : criteria.getFilters()) {
+        key.append(rule.getField()).append('\u0000').append(rule.getOperator()).append('\u0000').append(rule.getValue()).append('\u0001');
+      }
     }
+    return key.append('\u0002').append(sortBy).append('\u0000').append(sortOrder)
+      .append('\u0000').append(page).append('\u0000').append(pageSize)
+      .append('\u0000').append(mode).append('\u0000').append(facets).toString();
+  }
+
+  private MediaType representation() {
+    Variant variant = request.selectVariant(VARIANTS);
+    return variant != null ? variant.getMediaType() : MediaType.APPLICATION_JSON_TYPE;
+  }
+
+  private String ifNoneMatch() {
+    return httpHeaders.getHeaderString(HttpHeaders.IF_NONE_MATCH);
+  }
+
+  private CallContext callContext(DeadlinePolicy.Endpoint endpoint) {
+    return CallContext.withTimeout(DeadlinePolicy.resolve(endpoint, httpHeaders.getHeaderString(DeadlinePolicy.HEADER)))
+      .withClient(clientKey());
+  }
+
+  private String clientKey() {
+    return RequestLoggingFilter.clientKey(httpHeaders.getHeaderString("X-Forwarded-For"), servletRequest.getRemoteAddr());
   }
 }
@@ -0,0 +1,365 @@
+package ru.ifmo.soa.peopleservice.streaming;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import jakarta.enterprise.concurrent.ManagedThreadFactory;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.sse.OutboundSseEvent;
+import jakarta.ws.rs.sse.Sse;
+import jakarta.ws.rs.sse.SseEventSink;
+import ru.ifmo.soa.peopleservice.adapters.PersonServiceAdapter;
+import ru.ifmo.soa.peopleservice.cluster.ClusterEvents;
+import ru.ifmo.soa.peopleservice.cluster.PersonChangeEvent;
+import ru.ifmo.soa.peopleservice.cluster.PersonChangeListener;
+import ru.ifmo.soa.peopleservice.dto.PersonChangeDto;
+import ru.ifmo.soa.peopleservice.dto.PersonChangesDto;
+import ru.ifmo.soa.peopleservice.exceptions.BadRequestException;
+import ru.ifmo.soa.peopleservice.exceptions.GoneException;
+import ru.ifmo.soa.peopleservice.util.CallContext;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Pushes collection changes to {@code GET /people/stream} subscribers as server-sent events. The events are the
+ * entries of the change log ({@code GET /people/changes}), each with its position as the event id, so they
+ * arrive from every node, once committed, in log order. {@link ClusterEvents} only wake the reader up; a
+ * heartbeat tick reads too, so a lost notification delays events but never loses them.
+ * <p>
+ * A client that reconnects with {@code Last-Event-ID} first gets the entries it missed, read from the log by
+ * the same reader before it goes on, then the live ones. If the log no longer goes back that far, or the id is
+ * not a position, it gets a {@code RESYNC} event instead and should read the collection again.
+ * <p>
+ * Each subscriber has a queue of {@code api.stream.buffer-events} events. The reader only enqueues; a subscriber
+ * whose queue is full is dropped and its connection closed. One that missed more than its queue holds gets it
+ * in several reconnects. Events are sent one at a time from a pool of {@code api.stream.sender-threads}
+ * container-managed threads, each send continuing from the completion of the previous one instead of waiting
+ * for it. A subscriber whose send has not completed within {@code api.stream.send-timeout-seconds} is dropped
+ * and its connection closed, which also frees a thread stuck writing to it.
+ */
+@ApplicationScoped
+public class PersonEventStream implements PersonChangeListener {
+
+  private static final Logger LOG = Logger.getLogger(PersonEventStream.class.getName());
+
+  private static final int BUFFER_EVENTS = Integer.getInteger("api.stream.buffer-events", 256);
+  private static final int MAX_SUBSCRIBERS = Integer.getInteger("api.stream.max-subscribers", 500);
+  private static final long HEARTBEAT_SECONDS = Long.getLong("api.stream.heartbeat-seconds", 15);
+  private static final int SENDER_THREADS = Integer.getInteger("api.stream.sender-threads", 8);
+  private static final long SEND_TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(Long.getLong("api.stream.send-timeout-seconds", 30));
+  private static final int READ_LIMIT = 500;
+  private static final String RESYNC = "RESYNC";
+
+  @Inject
+  private ObjectMapper mapper;
+
+  @Inject
+  private PersonServiceAdapter personService;
+
+  @Resource(lookup = "java:comp/DefaultManagedThreadFactory")
+  private ManagedThreadFactory threads;
+
+  private final List<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+  private final AtomicBoolean readRequested = new AtomicBoolean();
+  private ThreadPoolExecutor senders;
+  /** Closes dropped connections, apart from the senders: closing one that stopped reading may block. */
+  private ExecutorService closer;
+  private ExecutorService reader;
+  private ScheduledExecutorService heartbeat;
+  private volatile Sse sse;
+  /** Where the reader goes on in the log; {@code null} while nobody listens. Reader thread only. */
+  private String position;
+  private boolean readFailing;
+
+  @PostConstruct
+  void start() {
+    // at most one queued send per subscriber
+    senders = new ThreadPoolExecutor(SENDER_THREADS, SENDER_THREADS, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), threads);
+    senders.allowCoreThreadTimeOut(true);
+    closer = Executors.newSingleThreadExecutor(threads);
+    reader = Executors.newSingleThreadExecutor(threads);
+    heartbeat = Executors.newSingleThreadScheduledExecutor(threads);
+    heartbeat.scheduleAtFixedRate(this::heartbeat, HEARTBEAT_SECONDS, HEARTBEAT_SECONDS, TimeUnit.SECONDS);
+    heartbeat.scheduleAtFixedRate(this::dropStalled, 1, 1, TimeUnit.SECONDS);
+    ClusterEvents.subscribe(this);
+  }
+
+  @PreDestroy
+  void stop() {
+    ClusterEvents.unsubscribe(this);
+    heartbeat.shutdownNow();
+    reader.shutdownNow();
+    for (Subscriber subscriber : subscribers) {
+      subscriber.sink.close();
+    }
+    senders.shutdownNow();
+    closer.shutdownNow();
+  }
+
+  /**
+   * @param lastEventId the {@code Last-Event-ID} of a reconnecting client, or {@code null}
+   * @return {@code false} if there are {@code api.stream.max-subscribers} subscribers already
+   */
+  public boolean subscribe(SseEventSink sink, Sse sse, String lastEventId) {
+    if (subscribers.size() >= MAX_SUBSCRIBERS) {
+      return false;
+    }
+    this.sse = sse;
+    boolean resuming = lastEventId != null && !lastEventId.isBlank();
+    Subscriber subscriber = new Subscriber(sink, !resuming);
+    subscribers.add(subscriber);
+    if (resuming) {
+      reader.execute(() -> catchUp(subscriber, lastEventId.strip()));
+    } else {
+      requestRead();
+    }
+    return true;
+  }
+
+  @Override
+  public void onChange(PersonChangeEvent event) {
+    requestRead();
+  }
+
+  private void requestRead() {
+    if (readRequested.compareAndSet(false, true)) {
+      reader.execute(this::read);
+    }
+  }
+
+  /**
+   * Reads the log from {@link #position} to its end and hands the entries to every subscriber.
+   */
+  private void read() {
+    readRequested.set(false);
+    Sse current = sse;
+    if (current == null || subscribers.isEmpty()) {
+      position = null;
+      return;
+    }
+    try {
+      if (position == null) {
+        position = personService.getChanges("now", 1, CallContext.none()).getNext();
+      }
+      PersonChangesDto page;
+      do {
+        page = personService.getChanges(position, READ_LIMIT, CallContext.none());
+        for (PersonChangeDto change : page.getChanges()) {
+          OutboundSseEvent event = event(current, change);
+          for (Subscriber subscriber : subscribers) {
+            if (subscriber.live && (subscriber.caughtUpTo == null || after(change.getPosition(), subscriber.caughtUpTo))) {
+              subscriber.offer(event);
+            }
+          }
+        }
+        position = page.getNext();
+      } while (Boolean.TRUE.equals(page.getHasMore()));
+      readFailing = false;
+    } catch (GoneException e) {
+      // pruned past a reader that fell this far behind: nobody can be told what changed
+      OutboundSseEvent resync = resync(current);
+      for (Subscriber subscriber : subscribers) {
+        if (subscriber.live) {
+          subscriber.offer(resync);
+        }
+      }
+      position = null;
+    } catch (RuntimeException e) {
+      // tried again on the next change or heartbeat
+      LOG.log(readFailing ? Level.FINE : Level.WARNING, "Failed to read the change log for the change stream", e);
+      readFailing = true;
+    }
+  }
+
+  /**
+   * Queues the entries after {@code lastEventId} for a reconnecting subscriber and lets it take live entries
+   * from where they end. Runs on the reader thread, so no live entry is handed out meanwhile.
+   */
+  private void catchUp(Subscriber subscriber, String lastEventId) {
+    Sse current = sse;
+    try {
+      String since = lastEventId;
+      PersonChangesDto page;
+      do {
+        page = personService.getChanges(since, Math.min(BUFFER_EVENTS, READ_LIMIT), CallContext.none());
+        for (PersonChangeDto change : page.getChanges()) {
+          subscriber.offer(event(current, change));
+        }
+        since = page.getNext();
+      } while (Boolean.TRUE.equals(page.getHasMore()) && !subscriber.dropped.get());
+      // the reader has passed no further than the end of the log just read; without listeners it starts here
+      subscriber.caughtUpTo = since;
+      if (position == null) {
+        position = since;
+      }
+    } catch (GoneException | BadRequestException e) {
+      subscriber.offer(resync(current));
+    } catch (RuntimeException e) {
+      // the client reconnects with the same id and tries again
+      LOG.log(Level.FINE, "Failed to catch a change stream subscriber up", e);
+      subscriber.drop();
+      return;
+    }
+    subscriber.live = true;
+  }
+
+  private static OutboundSseEvent resync(Sse current) {
+    return current.newEventBuilder().name(RESYNC).data(String.class, "{}").build();
+  }
+
+  private OutboundSseEvent event(Sse current, PersonChangeDto change) {
+    Map<String, Object> data = new LinkedHashMap<>();
+    data.put("type", change.getType());
+    data.put("personId", change.getPersonId());
+    data.put("version", change.getVersion());
+    data.put("changedAt", change.getChangedAt());
+    try {
+      return current.newEventBuilder()
+        .id(change.getPosition())
+        .name(change.getType())
+        .mediaType(MediaType.APPLICATION_JSON_TYPE)
+        .data(String.class, mapper.writeValueAsString(data))
+        .build();
+    } catch (JsonProcessingException e) {
+      throw new IllegalStateException("Failed to encode change event " + change.getType(), e);
+    }
+  }
+
+  /**
+   * Keeps idle connections open through proxies, finds subscribers that went away, and reads the log in case
+   * a notification was lost.
+   */
+  private void heartbeat() {
+    Sse current = sse;
+    if (current == null) {
+      return;
+    }
+    OutboundSseEvent comment = current.newEventBuilder().comment("keep-alive").build();
+    for (Subscriber subscriber : subscribers) {
+      subscriber.offer(comment);
+    }
+    requestRead();
+  }
+
+  private void dropStalled() {
+    long now = System.nanoTime();
+    for (Subscriber subscriber : subscribers) {
+      long since = subscriber.sendingSince;
+      if (since != 0 && now - since > SEND_TIMEOUT_NANOS) {
+        LOG.fine("Dropping a change stream subscriber whose send has been pending for "
+          + TimeUnit.NANOSECONDS.toSeconds(now - since) + " s");
+        subscriber.drop();
+      }
+    }
+  }
+
+  /**
+   * @return whether log position {@code position} comes after {@code mark}; both are {@code <txid>-<seq>}
+   */
+  private static boolean after(String position, String mark) {
+    int positionDash = position.indexOf('-');
+    int markDash = mark.indexOf('-');
+    int byTxid = Long.compare(Long.parseLong(position.substring(0, positionDash)), Long.parseLong(mark.substring(0, markDash)));
+    return byTxid != 0
+      ? byTxid > 0
+      : Long.compare(Long.parseLong(position.substring(positionDash + 1)), Long.parseLong(mark.substring(markDash + 1))) > 0;
+  }
+
+  private final class Subscriber {
+    private final SseEventSink sink;
+    private final BlockingQueue<OutboundSseEvent> queue = new ArrayBlockingQueue<>(BUFFER_EVENTS);
+    private final AtomicBoolean sending = new AtomicBoolean();
+    private final AtomicBoolean dropped = new AtomicBoolean();
+    /** Takes live entries; a reconnecting subscriber does once it has caught up. */
+    private volatile boolean live;
+    /** Where catching up ended; live entries up to there are already queued. Reader thread only. */
+    private String caughtUpTo;
+    /** {@link System#nanoTime} when the pending send started, 0 while none is. */
+    private volatile long sendingSince;
+
+    Subscriber(SseEventSink sink, boolean live) {
+      this.sink = sink;
+      this.live = live;
+    }
+
+    void offer(OutboundSseEvent event) {
+      if (sink.isClosed()) {
+        drop();
+      } else if (!queue.offer(event)) {
+        LOG.fine("Dropping a change stream subscriber that fell " + BUFFER_EVENTS + " events behind");
+        drop();
+      } else if (sending.compareAndSet(false, true)) {
+        senders.execute(this::send);
+      }
+    }
+
+    /**
+     * Sends queued events until the queue is empty or a send does not complete right away; that one's
+     * completion sends the rest from a pool thread.
+     */
+    private void send() {
+      OutboundSseEvent event;
+      while (!dropped.get() && (event = queue.poll()) != null) {
+        sendingSince = System.nanoTime();
+        CompletableFuture<?> sent;
+        try {
+          sent = sink.send(event).toCompletableFuture();
+        } catch (RuntimeException e) {
+          drop();
+          return;
+        }
+        if (!sent.isDone()) {
+          sent.whenComplete((ignored, error) -> sent(error));
+          return;
+        }
+        if (sent.isCompletedExceptionally()) {
+          drop();
+          return;
+        }
+        sendingSince = 0;
+      }
+      sendingSince = 0;
+      sending.set(false);
+      if (!queue.isEmpty() && !dropped.get() && sending.compareAndSet(false, true)) {
+        senders.execute(this::send);
+      }
+    }
+
+    private void sent(Throwable error) {
+      sendingSince = 0;
+      if (error != null) {
+        drop();
+      } else {
+        senders.execute(this::send);
+      }
+    }
+
+    private void drop() {
+      if (dropped.compareAndSet(false, true)) {
+        subscribers.remove(this);
+        queue.clear();
+        sendingSince = 0;
+        closer.execute(sink::close);
+      }
+    }
+  }
+}